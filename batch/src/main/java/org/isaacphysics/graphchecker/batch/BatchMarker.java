@@ -0,0 +1,317 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.batch;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.isaacphysics.graphchecker.batch.dos.MarkVerdict;
+import org.isaacphysics.graphchecker.features.Features;
+import org.isaacphysics.graphchecker.features.MarkResult;
+import org.isaacphysics.graphchecker.geometry.LineSimplifier;
+import org.isaacphysics.graphchecker.metrics.MarkingBudget;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Mark newline-delimited JSON records offline, without starting a server.
+ *
+ * Each input line is a MarkRequest: a question id, either a specification or a reference to one, and an answer in
+ * the GraphAnswer format.
+ * Each output line is the MarkVerdict for the corresponding input line, in the same order. A record that cannot be
+ * read or marked gets a verdict with an error rather than stopping the run. Each record can be given a MarkingBudget,
+ * and a record whose budget runs out gets an undetermined verdict, with neither a match nor failing specs.
+ *
+ * Records are marked on a worker pool, but only a bounded number are in flight at once: once that many are waiting,
+ * reading stops until the oldest has been written. So memory use does not depend on the size of the input, and a slow
+ * consumer of the output slows down the reading of the input.
+ */
+public class BatchMarker {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchMarker.class);
+
+    private static final ObjectMapper om = new ObjectMapper();
+
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    private static final String USAGE = "Usage: BatchMarker [--threads N] [--in-flight N] [--specs specs.json]"
+        + " [--simplify tolerance] [--timeout millis] [input]\n"
+        + "  Reads NDJSON mark requests from input (or stdin) and writes NDJSON verdicts to stdout.\n"
+        + "  specs.json is a JSON object from specification references to specifications.\n"
+        + "  Lines are simplified to within tolerance times the axis slop; by default they are not simplified.\n"
+        + "  Records that take longer than the timeout to mark are undetermined; by default there is no timeout.";
+
+    private final Features features;
+    private final AnswerJsonToInput answerJsonToInput;
+    private final Map<String, String> specifications;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final Supplier<MarkingBudget> budgets;
+
+    /**
+     * Create a batch marker with no limit on how long each record takes to mark.
+     *
+     * @param settings The settings to read and mark with.
+     * @param specifications The specifications that records can refer to by name.
+     * @param executor The worker pool to mark records on.
+     * @param maxInFlight The most records to have read but not yet written at any one time.
+     */
+    public BatchMarker(SettingsWrapper settings, Map<String, String> specifications, ExecutorService executor,
+                       int maxInFlight) {
+        this(settings, specifications, executor, maxInFlight, () -> MarkingBudget.UNLIMITED);
+    }
+
+    /**
+     * Create a batch marker.
+     *
+     * @param settings The settings to read and mark with.
+     * @param specifications The specifications that records can refer to by name.
+     * @param executor The worker pool to mark records on.
+     * @param maxInFlight The most records to have read but not yet written at any one time.
+     * @param budgets Makes a new budget for marking each record, just before it is marked.
+     */
+    public BatchMarker(SettingsWrapper settings, Map<String, String> specifications, ExecutorService executor,
+                       int maxInFlight, Supplier<MarkingBudget> budgets) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("At least one record must be allowed in flight");
+        }
+        this.features = new Features(settings);
+        this.answerJsonToInput = new AnswerJsonToInput(settings);
+        this.specifications = ImmutableMap.copyOf(specifications);
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.budgets = budgets;
+    }
+
+    /**
+     * Mark every record from a reader, writing a verdict for each to a writer.
+     *
+     * Blank lines are skipped, but are still counted when numbering records, so a verdict's record number is the line
+     * number of its request.
+     *
+     * @param in The NDJSON mark requests.
+     * @param out Where to write the NDJSON verdicts.
+     * @return The number of records marked.
+     * @throws IOException If reading or writing fails.
+     */
+    public long mark(BufferedReader in, Writer out) throws IOException {
+        Queue<Future<String>> pending = new ArrayDeque<>(maxInFlight);
+        long lineNumber = 0;
+        long marked = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            if (pending.size() == maxInFlight) {
+                write(pending.remove(), out);
+            }
+            final long record = lineNumber;
+            final String json = line;
+            pending.add(executor.submit(() -> markRecord(record, json)));
+            marked++;
+        }
+        while (!pending.isEmpty()) {
+            write(pending.remove(), out);
+        }
+        out.flush();
+        return marked;
+    }
+
+    /**
+     * Mark a single record, turning any failure into a verdict with an error.
+     *
+     * @param record The line number of the record.
+     * @param json The mark request.
+     * @return The verdict, as a line of JSON.
+     */
+    private String markRecord(long record, String json) {
+        MarkVerdict verdict;
+        String questionId = null;
+        try {
+            MarkRequest request = MarkRequest.read(json, answerJsonToInput);
+            questionId = request.getQuestionId();
+            String specification = specificationOf(request);
+            if (request.getAnswer() == null) {
+                throw new IllegalArgumentException("Record has no answer");
+            }
+
+            MarkResult result = features.matcher(specification).mark(request.getAnswer(), budgets.get());
+
+            if (result.isUndetermined()) {
+                verdict = new MarkVerdict(record, questionId, null, null, true, null);
+            } else {
+                verdict = new MarkVerdict(record, questionId, result.isMatch(), result.getFailingSpecs(), null);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Failed to mark record " + record, e);
+            verdict = new MarkVerdict(record, questionId, null, null, String.valueOf(e.getMessage()));
+        }
+        try {
+            return om.writeValueAsString(verdict);
+        } catch (IOException e) {
+            throw new IllegalStateException("Verdicts are always serialisable", e);
+        }
+    }
+
+    /**
+     * Find the specification a request should be marked against.
+     *
+     * @param request The mark request.
+     * @return Its specification, either given directly or looked up by reference.
+     */
+    private String specificationOf(MarkRequest request) {
+        if (request.getSpecification() != null) {
+            return request.getSpecification();
+        }
+        if (request.getSpecificationRef() == null) {
+            throw new IllegalArgumentException("Record has neither a specification nor a specificationRef");
+        }
+        String specification = specifications.get(request.getSpecificationRef());
+        if (specification == null) {
+            throw new IllegalArgumentException("Unknown specificationRef: " + request.getSpecificationRef());
+        }
+        return specification;
+    }
+
+    /**
+     * Wait for a verdict and write it out as a line.
+     *
+     * @param verdict The pending verdict.
+     * @param out Where to write it.
+     * @throws IOException If writing fails, or we are interrupted while waiting.
+     */
+    private static void write(Future<String> verdict, Writer out) throws IOException {
+        try {
+            out.write(verdict.get());
+            out.write('\n');
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a verdict");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Marking failed unexpectedly", e.getCause());
+        }
+    }
+
+    /**
+     * Run the batch marker from the command line.
+     *
+     * @param args The command-line arguments; see USAGE.
+     * @throws IOException If the input, output or specifications cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Integer inFlight = null;
+        Map<String, String> specifications = ImmutableMap.of();
+        double simplify = 0;
+        long timeout = 0;
+        String inputPath = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    case "--in-flight":
+                        inFlight = Integer.parseInt(args[++i]);
+                        break;
+                    case "--specs":
+                        specifications = om.readValue(new File(args[++i]), new TypeReference<Map<String, String>>() {
+                        });
+                        break;
+                    case "--simplify":
+                        simplify = Double.parseDouble(args[++i]);
+                        break;
+                    case "--timeout":
+                        timeout = Long.parseLong(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--") || inputPath != null) {
+                            throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                        }
+                        inputPath = args[i];
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println("Missing value for " + args[args.length - 1]);
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        final double simplificationTolerance = simplify;
+        SettingsWrapper settings = new SettingsWrapper() {
+            @Override
+            public double getSimplificationTolerance() {
+                return simplificationTolerance;
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (BufferedReader in = inputPath == null
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(inputPath), StandardCharsets.UTF_8);
+             Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+            final long timeoutMillis = timeout;
+            Supplier<MarkingBudget> budgets = () -> timeoutMillis > 0
+                ? MarkingBudget.withTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                : MarkingBudget.UNLIMITED;
+            BatchMarker marker = new BatchMarker(settings, specifications, executor,
+                inFlight != null ? inFlight : threads * IN_FLIGHT_PER_THREAD, budgets);
+            long marked = marker.mark(in, out);
+            log.info("Marked " + marked + " records");
+
+            LineSimplifier simplifier = settings.getLineSimplifier();
+            if (simplifier.isEnabled()) {
+                log.info(String.format("Simplified %d points to %d (%.1fx fewer); %d lines kept to preserve sectors",
+                    simplifier.getPointsIn(), simplifier.getPointsOut(), simplifier.getReductionRatio(),
+                    simplifier.getLinesKept()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
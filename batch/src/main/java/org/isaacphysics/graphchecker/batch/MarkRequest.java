@@ -0,0 +1,105 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.batch;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+
+import java.io.IOException;
+
+/**
+ * One line of batch input: a question id, either a specification or a reference to one, and an answer.
+ *
+ * The answer is read straight into Input by AnswerJsonToInput, so no GraphAnswer is built for it.
+ */
+final class MarkRequest {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private String questionId;
+    private String specification;
+    private String specificationRef;
+    private Input answer;
+
+    /**
+     * Use read to create a request.
+     */
+    private MarkRequest() {
+    }
+
+    /**
+     * Read a request from a line of JSON.
+     *
+     * Any fields are allowed to be missing, and unknown fields are ignored.
+     *
+     * @param json The request.
+     * @param answerJsonToInput The reader for the answer.
+     * @return The request.
+     * @throws IOException If the JSON is malformed or is not a request.
+     */
+    static MarkRequest read(String json, AnswerJsonToInput answerJsonToInput) throws IOException {
+        MarkRequest request = new MarkRequest();
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a mark request but got " + parser.getCurrentToken());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "questionId":
+                        request.questionId = parser.getValueAsString();
+                        break;
+                    case "specification":
+                        request.specification = parser.getValueAsString();
+                        break;
+                    case "specificationRef":
+                        request.specificationRef = parser.getValueAsString();
+                        break;
+                    case "answer":
+                        request.answer = answerJsonToInput.read(parser);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        return request;
+    }
+
+    String getQuestionId() {
+        return questionId;
+    }
+
+    String getSpecification() {
+        return specification;
+    }
+
+    String getSpecificationRef() {
+        return specificationRef;
+    }
+
+    Input getAnswer() {
+        return answer;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.batch.dos;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MarkVerdict {
+
+    private final long record;
+    private final String questionId;
+
+    private final Boolean match;
+    private final List<String> failingSpecs;
+
+    private final Boolean undetermined;
+
+    private final String error;
+
+    public MarkVerdict(long record, String questionId, Boolean match, List<String> failingSpecs, String error) {
+        this(record, questionId, match, failingSpecs, null, error);
+    }
+
+    @JsonCreator
+    public MarkVerdict(@JsonProperty("record") long record,
+                       @JsonProperty("questionId") String questionId,
+                       @JsonProperty("match") Boolean match,
+                       @JsonProperty("failingSpecs") List<String> failingSpecs,
+                       @JsonProperty("undetermined") Boolean undetermined,
+                       @JsonProperty("error") String error) {
+        this.record = record;
+        this.questionId = questionId;
+        this.match = match;
+        this.failingSpecs = failingSpecs;
+        this.undetermined = undetermined;
+        this.error = error;
+    }
+
+    public long getRecord() {
+        return record;
+    }
+
+    public String getQuestionId() {
+        return questionId;
+    }
+
+    public Boolean getMatch() {
+        return match;
+    }
+
+    public List<String> getFailingSpecs() {
+        return failingSpecs;
+    }
+
+    public Boolean getUndetermined() {
+        return undetermined;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.isaacphysics.graphchecker.batch.dos.MarkVerdict;
+import org.isaacphysics.graphchecker.dos.Curve;
+import org.isaacphysics.graphchecker.dos.GraphAnswer;
+import org.isaacphysics.graphchecker.dos.Point;
+import org.isaacphysics.graphchecker.metrics.MarkingBudget;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchMarkerTest {
+
+    private static final ObjectMapper om = new ObjectMapper();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    private static String answerOf(DoubleUnaryOperator f) throws IOException {
+        List<Point> pts = IntStream.rangeClosed(-100, 100)
+            .mapToDouble(i -> i / 100.0)
+            .mapToObj(x -> new Point(x, f.applyAsDouble(x)))
+            .collect(Collectors.toList());
+        Curve curve = new Curve(pts, -1, 1, -1, 1, Collections.emptyList(), Collections.emptyList(),
+            Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), 0);
+        return om.writeValueAsString(new GraphAnswer(1000, 1000, Collections.singletonList(curve),
+            Collections.emptyList()));
+    }
+
+    private List<MarkVerdict> mark(String input, int maxInFlight) throws IOException {
+        return mark(input, maxInFlight, () -> MarkingBudget.UNLIMITED);
+    }
+
+    private List<MarkVerdict> mark(String input, int maxInFlight, Supplier<MarkingBudget> budgets)
+        throws IOException {
+        BatchMarker marker = new BatchMarker(SettingsWrapper.DEFAULT,
+            ImmutableMap.of("line", "through:bottomLeft,origin,topRight"), executor, maxInFlight, budgets);
+        StringWriter out = new StringWriter();
+        marker.mark(new BufferedReader(new StringReader(input)), out);
+
+        List<MarkVerdict> verdicts = new ArrayList<>();
+        for (String line : out.toString().split("\n")) {
+            verdicts.add(om.readValue(line, MarkVerdict.class));
+        }
+        return verdicts;
+    }
+
+    @Test
+    public void testRecordsAreMarkedInOrder() throws IOException {
+        String line = answerOf(x -> x / 2);
+        String cubic = answerOf(x -> x * x * x / 2 + 0.1);
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            String answer = i % 2 == 0 ? line : cubic;
+            input.append("{\"questionId\":\"q").append(i).append("\",\"specificationRef\":\"line\",\"answer\":")
+                .append(answer).append("}\n");
+        }
+
+        List<MarkVerdict> verdicts = mark(input.toString(), 3);
+
+        assertEquals(50, verdicts.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i + 1, verdicts.get(i).getRecord());
+            assertEquals("q" + i, verdicts.get(i).getQuestionId());
+            assertEquals(i % 2 == 0, verdicts.get(i).getMatch());
+        }
+    }
+
+    @Test
+    public void testInlineSpecificationAndFailingSpecs() throws IOException {
+        String input = "{\"questionId\":\"q\",\"specification\":\"through:topLeft,bottomRight\",\"answer\":"
+            + answerOf(x -> x / 2) + "}\n";
+
+        MarkVerdict verdict = mark(input, 1).get(0);
+
+        assertFalse(verdict.getMatch());
+        assertEquals(Collections.singletonList("through: topLeft,bottomRight"), verdict.getFailingSpecs());
+        assertNull(verdict.getError());
+    }
+
+    @Test
+    public void testRecordsThatRunOutOfBudgetAreUndetermined() throws IOException {
+        String input = "{\"questionId\":\"q\",\"specificationRef\":\"line\",\"answer\":" + answerOf(x -> x) + "}\n";
+
+        MarkVerdict verdict = mark(input, 1, () -> MarkingBudget.withSteps(10)).get(0);
+
+        assertTrue(verdict.getUndetermined());
+        assertNull(verdict.getMatch());
+        assertNull(verdict.getFailingSpecs());
+        assertNull(verdict.getError());
+
+        assertNull(mark(input, 1).get(0).getUndetermined());
+    }
+
+    @Test
+    public void testBadRecordsGetErrorsAndBlankLinesAreSkipped() throws IOException {
+        String input = "not json\n"
+            + "\n"
+            + "{\"questionId\":\"q\",\"specificationRef\":\"missing\",\"answer\":" + answerOf(x -> x) + "}\n"
+            + "{\"questionId\":\"q\",\"specificationRef\":\"line\",\"answer\":" + answerOf(x -> x) + "}\n";
+
+        List<MarkVerdict> verdicts = mark(input, 2);
+
+        assertEquals(3, verdicts.size());
+        assertEquals(1, verdicts.get(0).getRecord());
+        assertNotNull(verdicts.get(0).getError());
+        assertNull(verdicts.get(0).getMatch());
+        assertEquals(3, verdicts.get(1).getRecord());
+        assertTrue(verdicts.get(1).getError().contains("missing"));
+        assertEquals(4, verdicts.get(2).getRecord());
+        assertTrue(verdicts.get(2).getMatch());
+    }
+
+    @Test
+    public void testNoMoreThanMaxInFlightRecordsAreOutstanding() throws IOException {
+        String record = "{\"questionId\":\"q\",\"specificationRef\":\"line\",\"answer\":" + answerOf(x -> x) + "}\n";
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            input.append(record);
+        }
+
+        AtomicInteger submitted = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger mostOutstanding = new AtomicInteger();
+        // Marks much more slowly than records are read, so without a bound every record would be outstanding at once.
+        ExecutorService slowExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>()) {
+            @Override
+            public void execute(Runnable command) {
+                mostOutstanding.accumulateAndGet(submitted.incrementAndGet() - written.get(), Math::max);
+                super.execute(command);
+            }
+
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        StringWriter out = new StringWriter() {
+            @Override
+            public void write(int c) {
+                if (c == '\n') {
+                    written.incrementAndGet();
+                }
+                super.write(c);
+            }
+        };
+
+        try {
+            BatchMarker marker = new BatchMarker(SettingsWrapper.DEFAULT,
+                ImmutableMap.of("line", "through:bottomLeft,origin,topRight"), slowExecutor, 3);
+            assertEquals(20, marker.mark(new BufferedReader(new StringReader(input.toString())), out));
+        } finally {
+            slowExecutor.shutdown();
+        }
+
+        assertEquals(20, written.get());
+        assertEquals(3, mostOutstanding.get());
+    }
+}
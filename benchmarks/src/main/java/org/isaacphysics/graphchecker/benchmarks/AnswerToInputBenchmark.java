@@ -0,0 +1,140 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.benchmarks;
+
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.dos.GraphAnswer;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+import org.isaacphysics.graphchecker.translation.AnswerToInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of turning answers into Input, both from a bound GraphAnswer and straight from JSON.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnswerToInputBenchmark {
+
+    private final AnswerToInput answerToInput = new AnswerToInput();
+    private final AnswerJsonToInput answerJsonToInput = new AnswerJsonToInput();
+
+    /**
+     * Every answer in the samples corpus.
+     */
+    @State(Scope.Benchmark)
+    public static class Samples {
+        private List<GraphAnswer> answers;
+        private List<String> json;
+
+        /**
+         * Load the samples.
+         */
+        @Setup
+        public void setUp() {
+            answers = Fixtures.sampleAnswers();
+            json = Fixtures.sampleAnswerJson();
+        }
+    }
+
+    /**
+     * A synthetic answer.
+     */
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+        @Param({"10", "100", "1000", "10000"})
+        private int points;
+
+        @Param({"1", "2", "4", "8"})
+        private int curves;
+
+        private GraphAnswer answer;
+        private String json;
+
+        /**
+         * Make the answer.
+         */
+        @Setup
+        public void setUp() {
+            answer = Fixtures.syntheticAnswer(curves, points);
+            json = Fixtures.toJson(answer);
+        }
+    }
+
+    /**
+     * Translate every sample answer.
+     * @param samples The samples.
+     * @param blackhole Somewhere to put the inputs.
+     */
+    @Benchmark
+    public void applySamples(Samples samples, Blackhole blackhole) {
+        for (GraphAnswer answer : samples.answers) {
+            blackhole.consume(answerToInput.apply(answer));
+        }
+    }
+
+    /**
+     * Translate a synthetic answer.
+     * @param synthetic The answer.
+     * @return The input.
+     */
+    @Benchmark
+    public Input applySynthetic(Synthetic synthetic) {
+        return answerToInput.apply(synthetic.answer);
+    }
+
+    /**
+     * Read every sample answer straight from JSON.
+     * @param samples The samples.
+     * @param blackhole Somewhere to put the inputs.
+     * @throws IOException If an answer cannot be read.
+     */
+    @Benchmark
+    public void readSamples(Samples samples, Blackhole blackhole) throws IOException {
+        for (String json : samples.json) {
+            blackhole.consume(answerJsonToInput.read(json));
+        }
+    }
+
+    /**
+     * Read a synthetic answer straight from JSON.
+     * @param synthetic The answer.
+     * @return The input.
+     * @throws IOException If the answer cannot be read.
+     */
+    @Benchmark
+    public Input readSynthetic(Synthetic synthetic) throws IOException {
+        return answerJsonToInput.read(synthetic.json);
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.dos.GraphAnswer;
+import org.isaacphysics.graphchecker.features.Features;
+import org.isaacphysics.graphchecker.metrics.Histogram;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+import org.isaacphysics.graphchecker.translation.AnswerToInput;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the samples corpus through the whole marking pipeline, and reports throughput, latency, allocation and
+ * whether the verdicts agree with the labels in the corpus.
+ *
+ * The corpus is loaded as bluefin loads it: each directory of samples has a specification.json, and answers labelled
+ * correct, incorrect or unknown in subdirectories of those names. Each mark starts from the answer's JSON text, so it
+ * includes reading the answer, translating it to Input and testing it against the question's specification.
+ *
+ * Each question's matcher is compiled once and then reused, as it is when marking for real. The corpus is small, so
+ * after the first pass most features are answered from the matchers' verdict caches; the throughput and latency are
+ * of marking answers the matchers have seen before, not of the tracing and classification done for a new one. The
+ * cold benchmarks in MatcherBenchmark measure that.
+ *
+ * Usage: CorpusReplay [--samples dir] [--threads N] [--warmup seconds] [--duration seconds] [--streaming]
+ */
+public final class CorpusReplay {
+
+    private static final ObjectMapper om = new ObjectMapper();
+
+    private static final String[] LABELS = {"correct", "incorrect", "unknown"};
+
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * One answer to replay.
+     */
+    private static final class Sample {
+        private final String questionId;
+        private final String specification;
+        private final String json;
+        private final String label;
+
+        /**
+         * Create a sample.
+         * @param questionId The directory of the question.
+         * @param specification The specification of the question.
+         * @param json The answer.
+         * @param label Which directory the answer was in.
+         */
+        private Sample(String questionId, String specification, String json, String label) {
+            this.questionId = questionId;
+            this.specification = specification;
+            this.json = json;
+            this.label = label;
+        }
+    }
+
+    private final List<Sample> samples;
+    private final List<String> questionIds;
+    private final Features features = new Features();
+    private final AnswerToInput answerToInput = new AnswerToInput();
+    private final AnswerJsonToInput answerJsonToInput = new AnswerJsonToInput();
+    private final boolean streaming;
+
+    /**
+     * Create a replay of a samples corpus.
+     * @param samplesDirectory The samples directory.
+     * @param streaming Whether to read answers with AnswerJsonToInput rather than binding them to GraphAnswer first.
+     * @throws IOException If the corpus cannot be read.
+     */
+    CorpusReplay(File samplesDirectory, boolean streaming) throws IOException {
+        this.streaming = streaming;
+        this.samples = new ArrayList<>();
+        this.questionIds = new ArrayList<>();
+
+        File[] directories = samplesDirectory.listFiles(File::isDirectory);
+        if (directories == null) {
+            throw new IOException("No samples directory at " + samplesDirectory.getAbsolutePath());
+        }
+        Arrays.sort(directories, Comparator.comparing(File::getName));
+        for (File directory : directories) {
+            String specification = om.readTree(new File(directory, "specification.json"))
+                .get("specification").asText();
+            questionIds.add(directory.getName());
+            for (String label : LABELS) {
+                File[] files = new File(directory, label).listFiles();
+                if (files == null) {
+                    continue;
+                }
+                Arrays.sort(files, Comparator.comparing(File::getName));
+                for (File file : files) {
+                    String json = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+                    samples.add(new Sample(directory.getName(), specification, json, label));
+                }
+            }
+        }
+        if (samples.isEmpty()) {
+            throw new IOException("No sample answers under " + samplesDirectory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Mark a sample through the whole pipeline.
+     * @param sample The sample.
+     * @return Whether the answer matched the specification.
+     */
+    private boolean mark(Sample sample) {
+        try {
+            Input input;
+            if (streaming) {
+                input = answerJsonToInput.read(sample.json);
+            } else {
+                input = answerToInput.apply(om.readValue(sample.json, GraphAnswer.class));
+            }
+            return features.matcher(sample.specification).test(input);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The results of one worker thread.
+     */
+    private final class Worker extends Thread {
+        private final int start;
+        private final long deadline;
+        private final Map<String, Histogram> latencies = new LinkedHashMap<>();
+        private long marks;
+        private long allocatedBytes = -1;
+
+        /**
+         * Create a worker.
+         * @param start The index of the first sample to mark, so workers are not all marking the same answer.
+         * @param deadline The System.nanoTime to stop at.
+         */
+        private Worker(int start, long deadline) {
+            this.start = start;
+            this.deadline = deadline;
+            for (String questionId : questionIds) {
+                latencies.put(questionId, new Histogram());
+            }
+        }
+
+        @Override
+        public void run() {
+            long allocatedBefore = allocatedBytes();
+            int index = start;
+            long now = System.nanoTime();
+            while (now < deadline) {
+                Sample sample = samples.get(index);
+                mark(sample);
+                long end = System.nanoTime();
+                latencies.get(sample.questionId).record(end - now);
+                marks++;
+                now = end;
+                index = (index + 1) % samples.size();
+            }
+            long allocatedAfter = allocatedBytes();
+            if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+                allocatedBytes = allocatedAfter - allocatedBefore;
+            }
+        }
+    }
+
+    /**
+     * @return The bytes allocated by the current thread so far, or -1 if the JVM cannot say.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspotThreads = (com.sun.management.ThreadMXBean) threads;
+            if (hotspotThreads.isThreadAllocatedMemorySupported() && hotspotThreads.isThreadAllocatedMemoryEnabled()) {
+                return hotspotThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Mark the corpus on several threads for a while.
+     * @param threads The number of threads.
+     * @param nanos How long to mark for.
+     * @return The workers, once they have finished.
+     * @throws InterruptedException If interrupted while waiting for the workers.
+     */
+    private List<Worker> run(int threads, long nanos) throws InterruptedException {
+        long deadline = System.nanoTime() + nanos;
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(i * samples.size() / threads, deadline);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        return workers;
+    }
+
+    /**
+     * Mark every sample once, and report how often the verdict agrees with the label.
+     * @param out Where to write the report.
+     */
+    private void reportAgreement(PrintStream out) {
+        out.println("Verdict agreement with labels:");
+        out.printf("  %-40s %9s %9s %9s%n", "question", "correct", "incorrect", "unknown");
+        int totalAgreed = 0;
+        int totalLabelled = 0;
+        for (String questionId : questionIds) {
+            int[] agreed = new int[LABELS.length];
+            int[] counts = new int[LABELS.length];
+            for (Sample sample : samples) {
+                if (!sample.questionId.equals(questionId)) {
+                    continue;
+                }
+                int label = Arrays.asList(LABELS).indexOf(sample.label);
+                boolean verdict = mark(sample);
+                counts[label]++;
+                // Unknown answers have no expected verdict, so count how many matched instead.
+                if (verdict == !"incorrect".equals(sample.label)) {
+                    agreed[label]++;
+                }
+            }
+            out.printf("  %-40s %4d/%-4d %4d/%-4d %4d/%-4d%n", questionId,
+                agreed[0], counts[0], agreed[1], counts[1], agreed[2], counts[2]);
+            totalAgreed += agreed[0] + agreed[1];
+            totalLabelled += counts[0] + counts[1];
+        }
+        out.printf("  %d of %d labelled answers agree (%.1f%%); unknown columns count matches%n", totalAgreed,
+            totalLabelled, totalLabelled == 0 ? 0.0 : 100.0 * totalAgreed / totalLabelled);
+    }
+
+    /**
+     * Report the throughput, latency and allocation of a timed run.
+     * @param workers The workers of the run.
+     * @param nanos How long the run was.
+     * @param out Where to write the report.
+     */
+    private void reportRun(List<Worker> workers, long nanos, PrintStream out) {
+        long marks = 0;
+        long allocated = 0;
+        boolean allocationKnown = true;
+        Map<String, Histogram> latencies = new LinkedHashMap<>();
+        Histogram overall = new Histogram();
+        for (String questionId : questionIds) {
+            latencies.put(questionId, new Histogram());
+        }
+        for (Worker worker : workers) {
+            marks += worker.marks;
+            allocationKnown &= worker.allocatedBytes >= 0;
+            allocated += worker.allocatedBytes;
+            worker.latencies.forEach((questionId, histogram) -> {
+                latencies.get(questionId).add(histogram);
+                overall.add(histogram);
+            });
+        }
+
+        out.println("Note: matchers are reused, so repeated answers are mostly served from their verdict caches");
+        out.printf("Throughput: %d marks in %.1fs on %d threads = %.1f answers/sec%n", marks,
+            nanos / (double) TimeUnit.SECONDS.toNanos(1), workers.size(),
+            marks / (nanos / (double) TimeUnit.SECONDS.toNanos(1)));
+        if (allocationKnown && marks > 0) {
+            out.printf("Allocation: %.1f KiB per mark%n", allocated / (double) marks / 1024);
+        } else {
+            out.println("Allocation: not available on this JVM");
+        }
+        out.println("Latency (microseconds):");
+        out.printf("  %-40s %9s %9s %9s %9s%n", "question", "marks", "p50", "p99", "p99.9");
+        latencies.forEach((questionId, histogram) -> printLatency(out, questionId, histogram));
+        printLatency(out, "all", overall);
+    }
+
+    /**
+     * Write one line of the latency report.
+     * @param out Where to write it.
+     * @param name The name of the line.
+     * @param histogram The latencies.
+     */
+    private static void printLatency(PrintStream out, String name, Histogram histogram) {
+        out.printf("  %-40s %9d", name, histogram.getCount());
+        for (double percentile : PERCENTILES) {
+            out.printf(" %9.1f", histogram.getPercentile(percentile) / NANOS_PER_MICRO);
+        }
+        out.println();
+    }
+
+    /**
+     * Run the replay from the command line.
+     * @param args The command-line arguments; see the class comment.
+     * @throws Exception If the corpus cannot be read or the run is interrupted.
+     */
+    public static void main(String[] args) throws Exception {
+        File samplesDirectory = new File(System.getProperty(Fixtures.SAMPLES_DIR_PROPERTY, "samples"));
+        int threads = Runtime.getRuntime().availableProcessors();
+        long warmupSeconds = 10;
+        long durationSeconds = 30;
+        boolean streaming = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--samples":
+                    samplesDirectory = new File(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--warmup":
+                    warmupSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "--duration":
+                    durationSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "--streaming":
+                    streaming = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+        }
+
+        CorpusReplay replay = new CorpusReplay(samplesDirectory, streaming);
+        PrintStream out = System.out;
+        out.printf("Replaying %d answers to %d questions from %s%s%n", replay.samples.size(),
+            replay.questionIds.size(), samplesDirectory, streaming ? ", reading answers with AnswerJsonToInput" : "");
+
+        replay.reportAgreement(out);
+
+        replay.run(threads, TimeUnit.SECONDS.toNanos(warmupSeconds));
+        long nanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        replay.reportRun(replay.run(threads, nanos), nanos, out);
+    }
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.PackedPoints;
+import org.isaacphysics.graphchecker.data.PointOfInterest;
+import org.isaacphysics.graphchecker.data.PointType;
+import org.isaacphysics.graphchecker.dos.Curve;
+import org.isaacphysics.graphchecker.dos.GraphAnswer;
+import org.isaacphysics.graphchecker.dos.Point;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Inputs shared by the benchmarks: the answers in the samples corpus, and synthetic curves of any size.
+ *
+ * The samples are read from the directory in the samples.dir system property, or from samples in the working
+ * directory, so run the benchmarks from the top of the project or set the property.
+ */
+public final class Fixtures {
+
+    /**
+     * The system property giving the samples directory.
+     */
+    public static final String SAMPLES_DIR_PROPERTY = "samples.dir";
+
+    private static final ObjectMapper om = new ObjectMapper();
+
+    private static final String SPECIFICATION_FILE = "specification.json";
+
+    /**
+     * Utility class.
+     */
+    private Fixtures() {
+    }
+
+    /**
+     * @return The path of every sample file, in a stable order.
+     */
+    private static List<Path> sampleFiles() {
+        Path samples = Paths.get(System.getProperty(SAMPLES_DIR_PROPERTY, "samples"));
+        if (!Files.isDirectory(samples)) {
+            throw new IllegalStateException("No samples at " + samples.toAbsolutePath() + "; set -D"
+                + SAMPLES_DIR_PROPERTY + " to the samples directory");
+        }
+        try (Stream<Path> files = Files.walk(samples)) {
+            return files
+                .filter(path -> path.toString().endsWith(".json"))
+                .sorted()
+                .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read a sample file, finding the answer in it.
+     * @param path The sample file.
+     * @return The answer in that file, as a JSON tree.
+     */
+    private static JsonNode readAnswer(Path path) {
+        try {
+            JsonNode node = om.readTree(path.toFile());
+            if (path.getFileName().toString().equals(SPECIFICATION_FILE)) {
+                node = node.get("canonical");
+            }
+            return node;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return Every answer in the samples corpus, including the canonical answer of each question, as JSON text.
+     */
+    public static List<String> sampleAnswerJson() {
+        return sampleFiles().stream()
+            .map(Fixtures::readAnswer)
+            .map(JsonNode::toString)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return Every answer in the samples corpus, including the canonical answer of each question.
+     */
+    public static List<GraphAnswer> sampleAnswers() {
+        return sampleFiles().stream()
+            .map(Fixtures::readAnswer)
+            .map(node -> {
+                try {
+                    return om.treeToValue(node, GraphAnswer.class);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The specification of every question in the samples corpus.
+     */
+    public static List<String> sampleSpecifications() {
+        return sampleFiles().stream()
+            .filter(path -> path.getFileName().toString().equals(SPECIFICATION_FILE))
+            .map(path -> {
+                try {
+                    return om.readTree(path.toFile()).get("specification").asText();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * The y co-ordinate of a synthetic curve, a sine wave with a phase and offset that depend on the curve.
+     * @param curve The number of the curve.
+     * @param x The x co-ordinate.
+     * @return The y co-ordinate.
+     */
+    @SuppressWarnings("magicNumber")
+    private static double syntheticY(int curve, double x) {
+        return 0.6 * Math.sin(3 * x + curve) + 0.1 * (curve % 3 - 1);
+    }
+
+    /**
+     * Make a synthetic line, a sine wave across the whole graph with its turning points as points of interest.
+     *
+     * Different curves have different phases, so they cross each other and the axes.
+     *
+     * @param curve The number of the curve.
+     * @param points The number of points on the line.
+     * @return The line.
+     */
+    public static Line syntheticLine(int curve, int points) {
+        double[] xs = new double[points];
+        double[] ys = new double[points];
+        for (int i = 0; i < points; i++) {
+            xs[i] = -1 + 2.0 * i / Math.max(points - 1, 1);
+            ys[i] = syntheticY(curve, xs[i]);
+        }
+
+        List<PointOfInterest> pointsOfInterest = new ArrayList<>();
+        for (int i = 1; i < points - 1; i++) {
+            if (ys[i - 1] < ys[i] && ys[i] >= ys[i + 1]) {
+                pointsOfInterest.add(new PointOfInterest(xs[i], ys[i], PointType.MAXIMA));
+            } else if (ys[i - 1] > ys[i] && ys[i] <= ys[i + 1]) {
+                pointsOfInterest.add(new PointOfInterest(xs[i], ys[i], PointType.MINIMA));
+            }
+        }
+        return new Line(PackedPoints.wrap(xs, ys, points), pointsOfInterest);
+    }
+
+    /**
+     * @param curves The number of curves.
+     * @param points The number of points on each curve.
+     * @return An input of synthetic lines.
+     */
+    public static Input syntheticInput(int curves, int points) {
+        return new Input(IntStream.range(0, curves)
+            .mapToObj(curve -> syntheticLine(curve, points))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * Copy an input into new lines, so that nothing derived from the original lines is remembered by the copy.
+     * @param input The input.
+     * @return The copy.
+     */
+    public static Input freshCopy(Input input) {
+        return new Input(input.getLines().stream()
+            .map(line -> new Line(line.getPoints(), line.getPointsOfInterest()))
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * @param curves The number of curves.
+     * @param points The number of points on each curve.
+     * @return An answer of synthetic curves, which translates to the same lines as syntheticInput.
+     */
+    public static GraphAnswer syntheticAnswer(int curves, int points) {
+        List<Curve> answerCurves = new ArrayList<>();
+        for (int curve = 0; curve < curves; curve++) {
+            Line line = syntheticLine(curve, points);
+            List<Point> pts = IntStream.range(0, points)
+                .mapToObj(i -> new Point(line.getX(i), line.getY(i)))
+                .collect(Collectors.toList());
+            List<Point> maxima = new ArrayList<>();
+            List<Point> minima = new ArrayList<>();
+            for (PointOfInterest point : line.getPointsOfInterest()) {
+                Point answerPoint = new Point(point.getX(), point.getY());
+                if (point.getPointType() == PointType.MAXIMA) {
+                    maxima.add(answerPoint);
+                } else {
+                    minima.add(answerPoint);
+                }
+            }
+            answerCurves.add(new Curve(pts, -1, 1, -1, 1, Collections.emptyList(), Collections.emptyList(),
+                Collections.emptyList(), maxima, minima, curve));
+        }
+        return new GraphAnswer(1000, 1000, answerCurves, Collections.emptyList());
+    }
+
+    /**
+     * @param answer An answer.
+     * @return The answer as JSON text.
+     */
+    public static String toJson(GraphAnswer answer) {
+        try {
+            return om.writeValueAsString(answer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
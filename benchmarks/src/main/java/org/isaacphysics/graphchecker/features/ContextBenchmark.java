@@ -0,0 +1,89 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.features;
+
+import org.isaacphysics.graphchecker.benchmarks.Fixtures;
+import org.isaacphysics.graphchecker.data.Input;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of adding names to a Context, which every named feature does before adding its constraint.
+ *
+ * This is in the features package because contexts are only created by matchers.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContextBenchmark {
+
+    private static final int POINTS = 100;
+
+    @Param({"1", "2", "4", "8"})
+    private int curves;
+
+    private Context empty;
+    private Context named;
+
+    /**
+     * Make an empty context, and one with a name for every curve already in it.
+     */
+    @Setup
+    public void setUp() {
+        Input input = Fixtures.syntheticInput(curves, POINTS);
+        empty = new Context(input);
+        named = empty;
+        for (int i = 0; i < curves; i++) {
+            named = named.putIfAbsent(Context.standardLineName(i));
+        }
+    }
+
+    /**
+     * Add a name for every curve to an empty context.
+     * @return The context with the names.
+     */
+    @Benchmark
+    public Context putNewNames() {
+        Context context = empty;
+        for (int i = 0; i < curves; i++) {
+            context = context.putIfAbsent(Context.standardLineName(i));
+        }
+        return context;
+    }
+
+    /**
+     * Add a name that is already in the context.
+     * @return The same context.
+     */
+    @Benchmark
+    public Context putExistingName() {
+        return named.putIfAbsent(Context.standardLineName(0));
+    }
+}
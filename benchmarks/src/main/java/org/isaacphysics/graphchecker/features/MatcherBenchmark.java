@@ -0,0 +1,363 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.features;
+
+import com.google.common.collect.ImmutableMap;
+import org.isaacphysics.graphchecker.benchmarks.Fixtures;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.dos.GraphAnswer;
+import org.isaacphysics.graphchecker.translation.AnswerToInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks of compiling specifications and of marking with them, for each type of feature.
+ *
+ * Marking is measured both cold and warm. The cold benchmarks mark fresh copies of the lines with freshly compiled
+ * matchers, so they measure the tracing, classification and searching done for a new answer. The warm benchmarks mark
+ * the same lines with the same matchers every time, so after the first call most features are answered from what the
+ * lines have memoised and from the matchers' verdict caches.
+ *
+ * This is in the features package so it can compile specifications without going through the matcher cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatcherBenchmark {
+
+    /**
+     * A typical specification for each type of feature.
+     */
+    private static final Map<String, String> SPECIFICATIONS = ImmutableMap.<String, String>builder()
+        .put("through", "through:bottomLeft,-Xaxis,topLeft,+Yaxis,topRight")
+        .put("slope", "slope: start=flat, end=up")
+        .put("symmetry", "symmetry:symmetric")
+        .put("points", "points:maxima in topRight, minima in bottomRight")
+        .put("curves", "curves:2")
+        .put("line", "line: 1; through: bottomLeft")
+        .put("match", "match: a; through: bottomLeft\nmatch: b; through: topRight")
+        .put("intersects", "match: a; through: bottomLeft\nmatch: b; through: topRight\nintersects: a to b nowhere")
+        .build();
+
+    private final Features features = new Features();
+
+    /**
+     * The specification of one type of feature.
+     */
+    @State(Scope.Benchmark)
+    public static class Feature {
+        @Param({"through", "slope", "symmetry", "points", "curves", "line", "match", "intersects"})
+        private String feature;
+
+        private String specification;
+        private Features.Matcher matcher;
+
+        /**
+         * Compile the specification.
+         */
+        @Setup
+        public void setUp() {
+            specification = SPECIFICATIONS.get(feature);
+            matcher = new Features().matcher(specification);
+        }
+    }
+
+    /**
+     * A synthetic input.
+     */
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+        @Param({"10", "100", "1000", "10000"})
+        private int points;
+
+        @Param({"1", "2", "4", "8"})
+        private int curves;
+
+        private Input input;
+
+        /**
+         * Make the input.
+         */
+        @Setup
+        public void setUp() {
+            input = Fixtures.syntheticInput(curves, points);
+        }
+    }
+
+    /**
+     * The features of one type that a synthetic input has, so marking the input against them succeeds.
+     *
+     * These are the lines of the specification generated from the input for that type of feature. Nothing generates
+     * line selectors, and a single curve has no intersections, so those fall back to the typical specification.
+     */
+    @State(Scope.Benchmark)
+    public static class Generated {
+        @Param({"through", "slope", "symmetry", "points", "curves", "line", "match", "intersects"})
+        private String feature;
+
+        private String specification;
+        private Features.Matcher matcher;
+
+        /**
+         * Generate the specification from the input and compile it.
+         * @param synthetic The input.
+         */
+        @Setup
+        public void setUp(Synthetic synthetic) {
+            Features features = new Features();
+            specification = Arrays.stream(features.generate(synthetic.input).split("\r?\n"))
+                .filter(line -> "match".equals(feature) ? line.startsWith("match:") : tagOf(line).equals(feature))
+                .collect(Collectors.joining("\n"));
+            if (specification.isEmpty()) {
+                specification = SPECIFICATIONS.get(feature);
+            }
+            matcher = features.matcher(specification);
+        }
+
+        /**
+         * @param line A line of a specification.
+         * @return The tag of the feature on that line, ignoring any line selector.
+         */
+        private static String tagOf(String line) {
+            String feature = line.substring(line.lastIndexOf(';') + 1).trim();
+            return feature.substring(0, Math.max(feature.indexOf(':'), 0));
+        }
+    }
+
+    /**
+     * A fresh copy of a synthetic input, with a freshly compiled typical specification, for each invocation.
+     */
+    @State(Scope.Thread)
+    public static class ColdFeature {
+        private Features.Matcher matcher;
+        private Input input;
+
+        /**
+         * Copy the input and compile the specification.
+         * @param feature The specification.
+         * @param synthetic The input.
+         */
+        @Setup(Level.Invocation)
+        public void setUp(Feature feature, Synthetic synthetic) {
+            matcher = new Features().compile(feature.specification);
+            input = Fixtures.freshCopy(synthetic.input);
+        }
+    }
+
+    /**
+     * A fresh copy of a synthetic input, with a freshly compiled specification generated from it, for each invocation.
+     */
+    @State(Scope.Thread)
+    public static class ColdGenerated {
+        private Features.Matcher matcher;
+        private Input input;
+
+        /**
+         * Copy the input and compile the specification.
+         * @param generated The specification.
+         * @param synthetic The input.
+         */
+        @Setup(Level.Invocation)
+        public void setUp(Generated generated, Synthetic synthetic) {
+            matcher = new Features().compile(generated.specification);
+            input = Fixtures.freshCopy(synthetic.input);
+        }
+    }
+
+    /**
+     * Every question and answer in the samples corpus.
+     */
+    @State(Scope.Benchmark)
+    public static class Samples {
+        private List<String> specifications;
+        private List<Features.Matcher> matchers;
+        private List<Input> inputs;
+
+        /**
+         * Load the samples and compile their specifications.
+         */
+        @Setup
+        public void setUp() {
+            Features features = new Features();
+            AnswerToInput answerToInput = new AnswerToInput();
+            specifications = Fixtures.sampleSpecifications();
+            matchers = specifications.stream()
+                .map(features::matcher)
+                .collect(Collectors.toList());
+            List<GraphAnswer> answers = Fixtures.sampleAnswers();
+            inputs = answers.stream()
+                .map(answerToInput)
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Fresh copies of the samples, with freshly compiled specifications, for each invocation.
+     */
+    @State(Scope.Thread)
+    public static class ColdSamples {
+        private List<Features.Matcher> matchers;
+        private List<Input> inputs;
+
+        /**
+         * Copy the answers and compile the specifications.
+         * @param samples The samples.
+         */
+        @Setup(Level.Invocation)
+        public void setUp(Samples samples) {
+            Features features = new Features();
+            matchers = samples.specifications.stream()
+                .map(features::compile)
+                .collect(Collectors.toList());
+            inputs = samples.inputs.stream()
+                .map(Fixtures::freshCopy)
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Compile a specification, as happens the first time a question is marked.
+     * @param feature The specification.
+     * @return The matcher.
+     */
+    @Benchmark
+    public Features.Matcher compile(Feature feature) {
+        return features.compile(feature.specification);
+    }
+
+    /**
+     * Compile the specification of every sample question.
+     * @param samples The samples.
+     * @param blackhole Somewhere to put the matchers.
+     */
+    @Benchmark
+    public void compileSamples(Samples samples, Blackhole blackhole) {
+        for (String specification : samples.specifications) {
+            blackhole.consume(features.compile(specification));
+        }
+    }
+
+    /**
+     * Mark a new synthetic input against a typical specification, stopping at the first failure.
+     * @param cold The specification and input.
+     * @return Whether the input matched.
+     */
+    @Benchmark
+    public boolean testCold(ColdFeature cold) {
+        return cold.matcher.test(cold.input);
+    }
+
+    /**
+     * Mark a synthetic input against a typical specification again, stopping at the first failure.
+     * @param feature The specification.
+     * @param synthetic The input.
+     * @return Whether the input matched.
+     */
+    @Benchmark
+    public boolean testWarm(Feature feature, Synthetic synthetic) {
+        return feature.matcher.test(synthetic.input);
+    }
+
+    /**
+     * Mark a new synthetic input against a typical specification, finding every failure.
+     * @param cold The specification and input.
+     * @return The failing specifications.
+     */
+    @Benchmark
+    public List<String> getFailingSpecsCold(ColdFeature cold) {
+        return cold.matcher.getFailingSpecs(cold.input);
+    }
+
+    /**
+     * Mark a synthetic input against a typical specification again, finding every failure.
+     * @param feature The specification.
+     * @param synthetic The input.
+     * @return The failing specifications.
+     */
+    @Benchmark
+    public List<String> getFailingSpecsWarm(Feature feature, Synthetic synthetic) {
+        return feature.matcher.getFailingSpecs(synthetic.input);
+    }
+
+    /**
+     * Mark a new synthetic input against features it has, so every feature is tested.
+     * @param cold The specification and input.
+     * @return Whether the input matched.
+     */
+    @Benchmark
+    public boolean testGeneratedCold(ColdGenerated cold) {
+        return cold.matcher.test(cold.input);
+    }
+
+    /**
+     * Mark a synthetic input against features it has again, so every feature is tested.
+     * @param generated The specification.
+     * @param synthetic The input.
+     * @return Whether the input matched.
+     */
+    @Benchmark
+    public boolean testGeneratedWarm(Generated generated, Synthetic synthetic) {
+        return generated.matcher.test(synthetic.input);
+    }
+
+    /**
+     * Mark new copies of every sample answer against every sample question.
+     * @param cold The samples.
+     * @param blackhole Somewhere to put the results.
+     */
+    @Benchmark
+    public void testSamplesCold(ColdSamples cold, Blackhole blackhole) {
+        for (Features.Matcher matcher : cold.matchers) {
+            for (Input input : cold.inputs) {
+                blackhole.consume(matcher.test(input));
+            }
+        }
+    }
+
+    /**
+     * Mark every sample answer against every sample question again.
+     * @param samples The samples.
+     * @param blackhole Somewhere to put the results.
+     */
+    @Benchmark
+    public void testSamplesWarm(Samples samples, Blackhole blackhole) {
+        for (Features.Matcher matcher : samples.matchers) {
+            for (Input input : samples.inputs) {
+                blackhole.consume(matcher.test(input));
+            }
+        }
+    }
+}
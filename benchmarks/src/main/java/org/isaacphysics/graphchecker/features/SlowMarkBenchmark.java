@@ -0,0 +1,102 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.features;
+
+import org.isaacphysics.graphchecker.benchmarks.Fixtures;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.metrics.SlowMarkLog;
+import org.isaacphysics.graphchecker.settings.SettingsSnapshot;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of marking an answer captured by a SlowMarkLog, with the settings it was captured with.
+ *
+ * Each invocation marks a fresh copy of the answer with a freshly compiled specification, so it is not answered from
+ * the memos on its lines or the verdict caches of its matcher. This is in the features package so it can compile
+ * specifications without going through the matcher cache.
+ *
+ * There is no default capture, so give one or more on the command line, for example
+ * {@code java -jar benchmarks/target/benchmarks.jar SlowMarkBenchmark -p capture=slow-marks/slow-mark-0001.json}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SlowMarkBenchmark {
+
+    @Param({""})
+    private String capture;
+
+    private Features features;
+    private String specification;
+    private Input captured;
+
+    private Features.Matcher matcher;
+    private Input input;
+
+    /**
+     * Read the capture.
+     * @throws IOException If the capture cannot be read.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        if (capture.isEmpty()) {
+            throw new IllegalArgumentException("Give a capture file with -p capture=<file>");
+        }
+        SlowMarkLog.Capture slowMark = SlowMarkLog.read(Paths.get(capture));
+        SettingsSnapshot settings = slowMark.getSettings();
+        features = new Features(settings);
+        specification = slowMark.getSpecification();
+        captured = new AnswerJsonToInput(settings).read(slowMark.getAnswerJson());
+    }
+
+    /**
+     * Copy the captured answer, and compile its specification with its settings.
+     */
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        matcher = features.compile(specification);
+        input = Fixtures.freshCopy(captured);
+    }
+
+    /**
+     * Find every specification the captured answer fails.
+     * @return The failing specifications.
+     */
+    @Benchmark
+    public List<String> getFailingSpecs() {
+        return matcher.getFailingSpecs(input);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.features;
+
+import org.isaacphysics.graphchecker.benchmarks.Fixtures;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.metrics.SlowMarkLog;
+import org.isaacphysics.graphchecker.settings.SettingsSnapshot;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Marks the answers captured by a SlowMarkLog again, with the settings they were captured with, and reports how long
+ * they take now and whether they still fail the same specifications.
+ *
+ * Each capture is marked repeatedly, so the JIT has warmed up by the time the best and median times are taken. Every
+ * mark is of a fresh copy of the answer with a freshly compiled specification, so none of them is answered from the
+ * memos on its lines or the verdict caches of its matcher. To see where the time goes, run this under a profiler, or
+ * use SlowMarkBenchmark to measure one capture under JMH. Captures whose MarkingBudget ran out are marked without a
+ * budget, to see how long they really take.
+ *
+ * This is in the features package so it can compile specifications without going through the matcher cache.
+ *
+ * Usage: SlowMarkReplay [--iterations N] capture.json...
+ */
+public final class SlowMarkReplay {
+
+    private static final double NANOS_PER_MICRO = 1e3;
+
+    /**
+     * Utility class.
+     */
+    private SlowMarkReplay() {
+    }
+
+    /**
+     * Replay one capture.
+     * @param file The capture file.
+     * @param iterations How many times to mark it.
+     * @param out Where to write the report.
+     * @return True if the replayed mark fails the same specifications as the captured one.
+     * @throws Exception If the capture cannot be read.
+     */
+    private static boolean replay(Path file, int iterations, PrintStream out) throws Exception {
+        SlowMarkLog.Capture capture = SlowMarkLog.read(file);
+        SettingsSnapshot settings = capture.getSettings();
+        Input input = new AnswerJsonToInput(settings).read(capture.getAnswerJson());
+        Features features = new Features(settings);
+
+        long[] nanos = new long[iterations];
+        List<String> failingSpecs = null;
+        for (int i = 0; i < iterations; i++) {
+            Features.Matcher matcher = features.compile(capture.getSpecification());
+            Input fresh = Fixtures.freshCopy(input);
+            long start = System.nanoTime();
+            failingSpecs = matcher.getFailingSpecs(fresh);
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        // A capture that ran out of budget has nothing to agree with
+        boolean agrees = capture.isUndetermined() || capture.getFailingSpecs().equals(failingSpecs);
+
+        out.printf("%s, captured %s%n", file, capture.getCapturedAt());
+        out.printf("  captured %10.1f us%n", capture.getTotalNanos() / NANOS_PER_MICRO);
+        out.printf("  replayed %10.1f us best, %10.1f us median over %d marks%n",
+            nanos[0] / NANOS_PER_MICRO, nanos[iterations / 2] / NANOS_PER_MICRO, iterations);
+        for (String timing : capture.getFeatureTimings()) {
+            out.printf("    %s%n", timing);
+        }
+        if (capture.isUndetermined()) {
+            out.printf("  captured mark ran out of budget; replayed failing specs: %s%n", failingSpecs);
+        } else if (agrees) {
+            out.printf("  failing specs agree: %s%n", failingSpecs);
+        } else {
+            out.printf("  failing specs DIFFER: captured %s, replayed %s%n", capture.getFailingSpecs(), failingSpecs);
+        }
+        return agrees;
+    }
+
+    /**
+     * Run the replay from the command line.
+     * @param args The command-line arguments; see the class comment.
+     * @throws Exception If a capture cannot be read.
+     */
+    public static void main(String[] args) throws Exception {
+        int iterations = 100;
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--iterations".equals(args[i])) {
+                iterations = Integer.parseInt(args[++i]);
+            } else {
+                files.add(Paths.get(args[i]));
+            }
+        }
+        if (files.isEmpty() || iterations < 1) {
+            throw new IllegalArgumentException("Usage: SlowMarkReplay [--iterations N] capture.json...");
+        }
+
+        int differ = 0;
+        for (Path file : files) {
+            if (!replay(file, iterations, System.out)) {
+                differ++;
+            }
+        }
+        if (differ > 0) {
+            System.out.printf("%d of %d captures failed different specifications when replayed%n", differ,
+                files.size());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.benchmarks.Fixtures;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the geometry primitives that features are built from.
+ *
+ * This is in the geometry package so it can build segments the same way the sector builder does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeometryBenchmark {
+
+    private static final int CLASSIFIED_POINTS = 1024;
+
+    private Point[] randomPoints;
+    private SectorClassifier classifier;
+    private Segment xAxis;
+
+    /**
+     * A pair of synthetic lines.
+     */
+    @State(Scope.Benchmark)
+    public static class Curves {
+        @Param({"10", "100", "1000", "10000"})
+        private int points;
+
+        private Line lineA;
+        private Line lineB;
+
+        /**
+         * Make the lines.
+         */
+        @Setup
+        public void setUp() {
+            lineA = Fixtures.syntheticLine(0, points);
+            lineB = Fixtures.syntheticLine(1, points);
+        }
+    }
+
+    /**
+     * Make the points and the x-axis.
+     */
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        randomPoints = new Point[CLASSIFIED_POINTS];
+        for (int i = 0; i < randomPoints.length; i++) {
+            randomPoints[i] = new Point(random.nextDouble() * 2 - 1, random.nextDouble() * 2 - 1);
+        }
+
+        classifier = SettingsWrapper.DEFAULT.getSectorClassifier();
+        xAxis = Segment.openBothEnds(new Point(0, 0), new Point(1, 0), Side.LEFT);
+    }
+
+    /**
+     * Intersect two lines.
+     * @param curves The lines.
+     * @return The intersections.
+     */
+    @Benchmark
+    public List<Point> findIntersections(Curves curves) {
+        return Lines.findIntersections(curves.lineA, curves.lineB);
+    }
+
+    /**
+     * Classify a batch of points into every sector they are in.
+     * @param blackhole Somewhere to put the sectors.
+     */
+    @Benchmark
+    public void classifyAll(Blackhole blackhole) {
+        for (Point point : randomPoints) {
+            blackhole.consume(classifier.classifyAll(point));
+        }
+    }
+
+    /**
+     * Classify a batch of points into a mask of every sector they are in, without building a set.
+     * @param blackhole Somewhere to put the masks.
+     */
+    @Benchmark
+    public void classifyAllMask(Blackhole blackhole) {
+        for (Point point : randomPoints) {
+            blackhole.consume(classifier.classifyAllMask(point.getX(), point.getY()));
+        }
+    }
+
+    /**
+     * Clip a line against the x-axis.
+     * @param curves The line to clip.
+     * @return The clipped line.
+     */
+    @Benchmark
+    public Line clip(Curves curves) {
+        return xAxis.clip(curves.lineA);
+    }
+}
@@ -20,6 +20,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import uk.ac.cam.cl.dtg.isaac.graphmarker.data.Input;
 import uk.ac.cam.cl.dtg.isaac.graphmarker.dos.GraphAnswer;
 import uk.ac.cam.cl.dtg.isaac.graphmarker.features.Features;
+import uk.ac.cam.cl.dtg.isaac.graphmarker.features.MarkResult;
 import uk.ac.cam.cl.dtg.isaac.graphmarker.settings.SettingsWrapper;
 import uk.ac.cam.cl.dtg.isaac.graphmarker.translation.AnswerToInput;
 
@@ -46,16 +47,17 @@ public class Marker {
         }
 
         public Marks mark(ExampleSet examples) {
-            Map<String, List<String>> failedSpecs = examples.getAnswers().entrySet().stream()
-                .map(entry -> {
-                    Input input = answerToInput.apply(entry.getValue());
+            List<Pair<String, Input>> inputs = examples.getAnswers().entrySet().stream()
+                .map(entry -> Pair.of(entry.getKey(), answerToInput.apply(entry.getValue())))
+                .collect(Collectors.toList());
 
-                    Features.Matcher matcher = features.matcher(examples.getSpecification());
+            List<MarkResult> results = features.markAll(examples.getSpecification(),
+                inputs.stream().map(Pair::getRight).collect(Collectors.toList()));
 
-                    List<String> failures = matcher.getFailingSpecs(input);
-                    return Pair.of(entry.getKey(), failures);
-                })
-                .collect(Collectors.toMap(Pair::getLeft, Pair::getRight));
+            Map<String, List<String>> failedSpecs = new HashMap<>();
+            for (int i = 0; i < inputs.size(); i++) {
+                failedSpecs.put(inputs.get(i).getLeft(), results.get(i).getFailingSpecs());
+            }
 
             failedFeatures.putAll(failedSpecs);
 
@@ -23,12 +23,17 @@ import standalone.dos.IsaacAnswerResponse;
 import org.isaacphysics.graphchecker.features.Features;
 import org.isaacphysics.graphchecker.translation.AnswerToInput;
 
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.stream.Collectors;
+
 /**
  * Wrapper of Features to take input in the Isaac JSON format and return it in an acceptable format.
  */
 public class Marker {
 
     private final AnswerToInput answerToInput = new AnswerToInput();
+    private final Features features = new Features();
 
     /**
      * Mark an answer against a list of solutions.
@@ -40,11 +45,16 @@ public class Marker {
 
         Input input = answerToInput.apply(graphAnswer);
 
-        return question.getAnswers().stream()
-            .filter(solution -> new Features().matcher(solution.getGraphDefinition()).test(input))
-            .findFirst()
-            .map(GraphSolutionItem::getResponse)
-            .orElse(question.getUnmatchedResponse());
+        List<GraphSolutionItem> solutions = question.getAnswers();
+        OptionalInt match = features.solutionsMatcher(solutions.stream()
+                .map(GraphSolutionItem::getGraphDefinition)
+                .collect(Collectors.toList()))
+            .firstMatch(input);
+
+        if (match.isPresent()) {
+            return solutions.get(match.getAsInt()).getResponse();
+        }
+        return question.getUnmatchedResponse();
     }
 
     /**
@@ -55,6 +65,6 @@ public class Marker {
     public String generate(GraphAnswer graphAnswer) {
         Input input = answerToInput.apply(graphAnswer);
 
-        return new Features().generate(input);
+        return features.generate(input);
     }
 }
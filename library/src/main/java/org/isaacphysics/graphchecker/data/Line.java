@@ -16,36 +16,77 @@
 package org.isaacphysics.graphchecker.data;
 
 import javax.annotation.Nonnull;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
  * Represents a series of Points. When drawn, connect with cubic Bezier curves, but in here, assume straight segments.
  */
 public class Line implements Iterable<Point> {
-    private final List<Point> points;
+    private final PackedPoints points;
 
     private final List<PointOfInterest> pointsOfInterest;
 
+    private int hash;
+
+    private volatile ConcurrentMap<Function<? super Line, ?>, Object> derived;
+
     /**
      * Create a line.
      * @param points The points on this line.
      * @param pointsOfInterest Any points of interest on this line.
      */
     public Line(List<Point> points, List<PointOfInterest> pointsOfInterest) {
-        this.points = points;
+        this.points = PackedPoints.copyOf(points);
         this.pointsOfInterest = pointsOfInterest;
     }
 
     /**
-     * @return Get the points on this line.
+     * @return Get the points on this line. These must not be modified once the line has been hashed or analysed.
      */
     public List<Point> getPoints() {
         return points;
     }
 
+    /**
+     * @return The number of points on this line.
+     */
+    public int size() {
+        return points.size();
+    }
+
+    /**
+     * @param index The index of a point on this line.
+     * @return The X co-ordinate of that point.
+     */
+    public double getX(int index) {
+        return points.getX(index);
+    }
+
+    /**
+     * @param index The index of a point on this line.
+     * @return The Y co-ordinate of that point.
+     */
+    public double getY(int index) {
+        return points.getY(index);
+    }
+
+    /**
+     * Get part of this line without copying its points. The result has no points of interest.
+     * @param fromIndex The index of the first point, inclusive.
+     * @param toIndex The index of the last point, exclusive.
+     * @return A line sharing this line's points.
+     */
+    public Line subLine(int fromIndex, int toIndex) {
+        return new Line(points.subList(fromIndex, toIndex), Collections.emptyList());
+    }
+
     /**
      * @return Get the points of interest on this line.
      */
@@ -53,6 +94,39 @@ public class Line implements Iterable<Point> {
         return pointsOfInterest;
     }
 
+    /**
+     * Get some data derived from this line, calculating it the first time it is asked for.
+     *
+     * The derivation is the key under which the data is remembered, so it should be a long-lived object such as a field
+     * of a feature, rather than a lambda created on each call.
+     *
+     * @param derivation Calculates the data from this line; it must be a pure function of the line.
+     * @param <T> The type of the data.
+     * @return The derived data.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T derive(Function<? super Line, ? extends T> derivation) {
+        ConcurrentMap<Function<? super Line, ?>, Object> memo = derived;
+        if (memo == null) {
+            synchronized (this) {
+                memo = derived;
+                if (memo == null) {
+                    memo = new ConcurrentHashMap<>();
+                    derived = memo;
+                }
+            }
+        }
+        Object value = memo.get(derivation);
+        if (value == null) {
+            value = derivation.apply(this);
+            Object previous = memo.putIfAbsent(derivation, value);
+            if (previous != null) {
+                value = previous;
+            }
+        }
+        return (T) value;
+    }
+
     @Override
     @Nonnull
     public Iterator<Point> iterator() {
@@ -80,7 +154,13 @@ public class Line implements Iterable<Point> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(points);
+        // Lines are hashed each time the set of lines in a context is built, so only hash the points once.
+        int h = hash;
+        if (h == 0) {
+            h = Objects.hash(points);
+            hash = h;
+        }
+        return h;
     }
 
 }
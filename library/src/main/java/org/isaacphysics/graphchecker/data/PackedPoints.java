@@ -0,0 +1,171 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.data;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A list of Points stored as parallel arrays of primitive co-ordinates.
+ *
+ * Points are only boxed when they are asked for through the List interface, so code that walks a line by index with
+ * getX and getY never allocates. Sub-lists are views onto the same arrays.
+ */
+public final class PackedPoints extends AbstractList<Point> implements RandomAccess {
+    private final double[] xs;
+    private final double[] ys;
+    private final int offset;
+    private final int size;
+
+    /**
+     * Create a view onto a range of a pair of co-ordinate arrays.
+     * @param xs The X co-ordinates.
+     * @param ys The Y co-ordinates.
+     * @param offset The index of the first point in the arrays.
+     * @param size The number of points.
+     */
+    private PackedPoints(double[] xs, double[] ys, int offset, int size) {
+        this.xs = xs;
+        this.ys = ys;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    /**
+     * Wrap a pair of co-ordinate arrays without copying them; the caller must not modify them afterwards.
+     * @param xs The X co-ordinates.
+     * @param ys The Y co-ordinates.
+     * @param size The number of points, taken from the start of the arrays.
+     * @return The packed points.
+     */
+    public static PackedPoints wrap(double[] xs, double[] ys, int size) {
+        if (size < 0 || size > xs.length || size > ys.length) {
+            throw new IllegalArgumentException("Size " + size + " is out of range for the co-ordinate arrays");
+        }
+        return new PackedPoints(xs, ys, 0, size);
+    }
+
+    /**
+     * Pack a list of points, unless they are already packed.
+     * @param points The points.
+     * @return The packed points.
+     */
+    public static PackedPoints copyOf(List<Point> points) {
+        if (points instanceof PackedPoints) {
+            return (PackedPoints) points;
+        }
+        int size = points.size();
+        double[] xs = new double[size];
+        double[] ys = new double[size];
+        int i = 0;
+        for (Point point : points) {
+            xs[i] = point.getX();
+            ys[i] = point.getY();
+            i++;
+        }
+        return new PackedPoints(xs, ys, 0, size);
+    }
+
+    /**
+     * @param index The index of a point.
+     * @return The X co-ordinate of that point.
+     */
+    public double getX(int index) {
+        return xs[offset + checkIndex(index)];
+    }
+
+    /**
+     * @param index The index of a point.
+     * @return The Y co-ordinate of that point.
+     */
+    public double getY(int index) {
+        return ys[offset + checkIndex(index)];
+    }
+
+    @Override
+    public Point get(int index) {
+        int i = offset + checkIndex(index);
+        return new Point(xs[i], ys[i]);
+    }
+
+    @Override
+    public Point set(int index, Point point) {
+        int i = offset + checkIndex(index);
+        Point previous = new Point(xs[i], ys[i]);
+        xs[i] = point.getX();
+        ys[i] = point.getY();
+        return previous;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public PackedPoints subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex + ") of " + size);
+        }
+        return new PackedPoints(xs, ys, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedPoints)) {
+            return super.equals(o);
+        }
+        PackedPoints other = (PackedPoints) o;
+        if (size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (Double.compare(xs[offset + i], other.xs[other.offset + i]) != 0
+                || Double.compare(ys[offset + i], other.ys[other.offset + i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("magicNumber")
+    public int hashCode() {
+        // The same as List.hashCode over Point.hashCode, without boxing each point.
+        int hash = 1;
+        for (int i = offset; i < offset + size; i++) {
+            int pointHash = 31 * (31 + Double.hashCode(xs[i])) + Double.hashCode(ys[i]);
+            hash = 31 * hash + pointHash;
+        }
+        return hash;
+    }
+
+    /**
+     * Check an index is inside this list.
+     * @param index The index.
+     * @return The index.
+     */
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+        }
+        return index;
+    }
+}
@@ -17,20 +17,40 @@ package org.isaacphysics.graphchecker.features;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableBiMap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.isaacphysics.graphchecker.data.Input;
 import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.geometry.IntersectionTable;
+import org.isaacphysics.graphchecker.geometry.SectorClassifier;
+import org.isaacphysics.graphchecker.metrics.DecisionTrace;
+import org.isaacphysics.graphchecker.metrics.MarkingBudget;
+import org.isaacphysics.graphchecker.metrics.MarkingEvents;
+import org.isaacphysics.graphchecker.metrics.MarkingMetrics;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 /**
  * An immutable set of possible mappings from names to lines.
  *
  * The idea of a context is keep making new contexts as we try and match each feature, and if we have a Context left at
  * the end, then there is one or more valid mappings between names and lines.
+ *
+ * The mappings are never enumerated up front. Instead, each name has a domain of lines it could still be mapped to, and
+ * each feature adds a constraint over the names it mentions. A context is only created if a backtracking search can
+ * find at least one mapping that satisfies every constraint, so the cost is usually that of finding a single mapping
+ * rather than of building all n!/(n-k)! of them.
  */
 public class Context {
 
@@ -43,9 +63,28 @@ public class Context {
         return Character.toString((char) (index + 'A'));
     }
 
-    private ImmutableSet<ImmutableBiMap<String, Line>> assignments;
-    private final ImmutableSet<String> names;
-    private final ImmutableSet<Line> lines;
+    private final ImmutableList<Line> lines;
+    private final ImmutableList<String> names;
+    private final ImmutableList<BitSet> domains;
+    private final ImmutableList<Constraint> constraints;
+
+    /**
+     * A mapping known to satisfy all of the constraints, as line indices in the same order as names.
+     *
+     * This is tried first when searching, so adding a constraint that the previous mapping already satisfies is cheap.
+     */
+    @Nullable
+    private final int[] witness;
+
+    /**
+     * Intersection tables for the lines of the input, shared by every context derived from the same input.
+     */
+    private final Map<SectorClassifier, IntersectionTable> intersectionTables;
+
+    /**
+     * Where to report the work done by searches and the use of the intersection tables.
+     */
+    private final MarkingMetrics metrics;
 
     /**
      * Create an empty assignment context.
@@ -53,27 +92,68 @@ public class Context {
      * @param input The input for this context.
      */
     Context(Input input) {
-        assignments = ImmutableSet.of(ImmutableBiMap.of());
-        names = ImmutableSet.of();
-        this.lines = ImmutableSet.copyOf(input.getLines());
+        this(input, MarkingMetrics.NONE);
+    }
+
+    /**
+     * Create an empty assignment context which reports to some marking metrics.
+     *
+     * @param input The input for this context.
+     * @param metrics The marking metrics, which are shared by every context derived from this one.
+     */
+    Context(Input input, MarkingMetrics metrics) {
+        // Equal lines are merged, as each line may only be given one name.
+        this(ImmutableSet.copyOf(input.getLines()).asList(), ImmutableList.of(), ImmutableList.of(),
+            ImmutableList.of(), new int[0], new HashMap<>(), metrics);
     }
 
     /**
      * Create a new Context.
-     * @param names The names in this context.
      * @param lines The lines in this context.
-     * @param assignments The assignments in this context.
+     * @param names The names in this context.
+     * @param domains The indices of the lines each name could be mapped to, in the same order as names.
+     * @param constraints The constraints that any mapping must satisfy.
+     * @param witness A mapping known to satisfy the constraints, or null if one is not known.
+     * @param intersectionTables The intersection tables for the lines.
+     * @param metrics The marking metrics.
      */
-    private Context(ImmutableSet<String> names, ImmutableSet<Line> lines,
-                    ImmutableSet<ImmutableBiMap<String, Line>> assignments) {
-        this.names = names;
+    private Context(ImmutableList<Line> lines, ImmutableList<String> names, ImmutableList<BitSet> domains,
+                    ImmutableList<Constraint> constraints, @Nullable int[] witness,
+                    Map<SectorClassifier, IntersectionTable> intersectionTables, MarkingMetrics metrics) {
         this.lines = lines;
-        this.assignments = assignments;
+        this.names = names;
+        this.domains = domains;
+        this.constraints = constraints;
+        this.witness = witness;
+        this.intersectionTables = intersectionTables;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the table of intersections between the lines of the input, classified by a particular classifier.
+     *
+     * The table is shared with every context derived from the same input, so each pair of lines is only intersected
+     * once per marking.
+     *
+     * @param classifier The sector classifier.
+     * @return The intersection table.
+     */
+    IntersectionTable getIntersectionTable(SectorClassifier classifier) {
+        IntersectionTable table = intersectionTables.get(classifier);
+        metrics.recordCacheAccess(MarkingMetrics.INTERSECTION_TABLE_CACHE, table != null);
+        if (table == null) {
+            table = new IntersectionTable(lines, classifier);
+            intersectionTables.put(classifier, table);
+        }
+        return table;
     }
 
     /**
      * Try to create a new Context based on an existing context and a predicate if a mapping is valid.
      *
+     * The predicate is given a mapping containing just the names passed to this method, so it must not look at any
+     * other names.
+     *
      * @param isValidAssignment Returns true if this is a valid mapping of names to lines.
      * @param names Any new names to add.
      * @return A new context if the predicate returns true for any mapping, or null if no mappings are valid.
@@ -85,22 +165,29 @@ public class Context {
             context = context.putIfAbsent(name);
         }
 
-        Set<ImmutableBiMap<String, Line>> assignments = context.getAssignmentsCopy();
-
-        assignments.removeIf(isValidAssignment.negate());
+        int[] scope = Arrays.stream(names)
+            .distinct()
+            .mapToInt(context.names::indexOf)
+            .toArray();
+        context = context.withConstraint(context.new Constraint(scope, isValidAssignment));
 
-        if (assignments.isEmpty()) {
+        int[] solution = context.solve();
+        if (solution == null) {
             return null;
-        } else {
-            return context.withFulfilledAssignments(assignments);
         }
+        return context.withPrunedDomains(solution);
     }
 
     /**
      * @return A copy of the possible assignments from names to lines.
      */
     Set<ImmutableBiMap<String, Line>> getAssignmentsCopy() {
-        return new HashSet<>(assignments);
+        Set<ImmutableBiMap<String, Line>> assignments = new HashSet<>();
+        new Search(this).run(assignment -> {
+            assignments.add(toMapping(assignment, IntStream.range(0, names.size()).toArray()));
+            return false;
+        });
+        return assignments;
     }
 
     /**
@@ -119,7 +206,8 @@ public class Context {
                 !names.contains(entry.getKey()) || !lines.contains(entry.getValue())))) {
             throw new IllegalArgumentException("Fulfilled assignments must only contain known names and lines.");
         }
-        return new Context(names, lines, ImmutableSet.copyOf(fulfilledAssignments));
+        ImmutableSet<ImmutableBiMap<String, Line>> allowed = ImmutableSet.copyOf(fulfilledAssignments);
+        return withConstraint(new Constraint(IntStream.range(0, names.size()).toArray(), allowed::contains));
     }
 
     /**
@@ -130,22 +218,280 @@ public class Context {
     @VisibleForTesting
     Context putIfAbsent(String name) {
         if (!names.contains(name)) {
-            // Spread all possible assignments for name
-            ImmutableSet<ImmutableBiMap<String, Line>> newAssignments = assignments.stream()
-                .flatMap(assignment -> {
-                    ImmutableSet<Line> usedLines = assignment.values();
-                    return lines.stream()
-                        .filter(line -> !usedLines.contains(line))
-                        .map(line -> ImmutableBiMap.<String, Line>builder().putAll(assignment).put(name, line).build());
-                })
-                .collect(ImmutableSet.toImmutableSet());
+            BitSet domain = new BitSet(lines.size());
+            domain.set(0, lines.size());
+
+            int[] newWitness = null;
+            if (witness != null) {
+                newWitness = Arrays.copyOf(witness, witness.length + 1);
+                newWitness[witness.length] = -1;
+            }
 
             return new Context(
-                ImmutableSet.<String>builder().addAll(names).add(name).build(),
                 lines,
-                newAssignments
+                ImmutableList.<String>builder().addAll(names).add(name).build(),
+                ImmutableList.<BitSet>builder().addAll(domains).add(domain).build(),
+                constraints,
+                newWitness,
+                intersectionTables,
+                metrics
             );
         }
         return this;
     }
+
+    /**
+     * Create a context with a known solution, and with any lines that single-name constraints are known to reject
+     * removed from the domain of that name.
+     *
+     * @param solution A mapping that satisfies all of the constraints.
+     * @return The new context.
+     */
+    private Context withPrunedDomains(int[] solution) {
+        List<BitSet> newDomains = new ArrayList<>(domains);
+        for (Constraint constraint : constraints) {
+            if (constraint.scope.length == 1) {
+                int variable = constraint.scope[0];
+                BitSet domain = (BitSet) newDomains.get(variable).clone();
+                constraint.results.forEach((line, valid) -> {
+                    if (!valid) {
+                        domain.clear(line.intValue());
+                    }
+                });
+                newDomains.set(variable, domain);
+            }
+        }
+        return new Context(lines, names, ImmutableList.copyOf(newDomains), constraints, solution, intersectionTables,
+            metrics);
+    }
+
+    /**
+     * Add a constraint to this context without checking it can be satisfied.
+     * @param constraint The constraint.
+     * @return The new context.
+     */
+    private Context withConstraint(Constraint constraint) {
+        return new Context(lines, names, domains,
+            ImmutableList.<Constraint>builder().addAll(constraints).add(constraint).build(),
+            witness, intersectionTables, metrics);
+    }
+
+    /**
+     * Find a single mapping that satisfies all of the constraints in this context.
+     * @return The line index for each name, or null if there is no such mapping.
+     */
+    @Nullable
+    private int[] solve() {
+        Object event = MarkingEvents.beginSolve();
+        int[][] solution = new int[1][];
+        Search search = new Search(this);
+        search.run(assignment -> {
+            solution[0] = assignment.clone();
+            return true;
+        });
+        metrics.recordAssignments(search.assignments);
+        MarkingEvents.commitSolve(event, lines.size(), names.size(), search.assignments, solution[0] != null);
+        if (DecisionTrace.isEnabled()) {
+            DecisionTrace.current().assignments(search.assignments, solution[0] != null);
+        }
+        return solution[0];
+    }
+
+    /**
+     * Convert an assignment of line indices to a mapping from names to lines.
+     * @param assignment The line index for each name.
+     * @param variables The names to include in the mapping.
+     * @return The mapping.
+     */
+    private ImmutableBiMap<String, Line> toMapping(int[] assignment, int[] variables) {
+        ImmutableBiMap.Builder<String, Line> builder = ImmutableBiMap.builder();
+        for (int variable : variables) {
+            builder.put(names.get(variable), lines.get(assignment[variable]));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Something that is told about each complete assignment found by a search.
+     */
+    @FunctionalInterface
+    private interface SolutionVisitor {
+        /**
+         * Receive a complete assignment.
+         * @param assignment The line index for each name. This array is reused, so copy it to keep it.
+         * @return True to stop searching.
+         */
+        boolean visit(int[] assignment);
+    }
+
+    /**
+     * A constraint on the lines that some names can be mapped to.
+     *
+     * The results of the predicate are remembered, so each combination of lines is only tested once, however many
+     * times the search (or later searches with more constraints) visits it.
+     */
+    private final class Constraint {
+        private final int[] scope;
+        private final Predicate<ImmutableBiMap<String, Line>> predicate;
+        private final Map<Long, Boolean> results = new HashMap<>();
+        private final boolean remembered;
+
+        /**
+         * Create a constraint.
+         * @param scope The indices of the names this constraint looks at.
+         * @param predicate Returns true if a mapping of those names to lines is valid.
+         */
+        private Constraint(int[] scope, Predicate<ImmutableBiMap<String, Line>> predicate) {
+            this.scope = scope;
+            this.predicate = predicate;
+            // Only remember results if every combination of lines has its own key.
+            this.remembered = scope.length * Math.log(lines.size() + 1) < Math.log(Long.MAX_VALUE);
+        }
+
+        /**
+         * Test whether an assignment satisfies this constraint.
+         * @param assignment The line index for each name; only the names in scope are looked at.
+         * @return True if the constraint is satisfied.
+         */
+        private boolean test(int[] assignment) {
+            if (!remembered) {
+                return predicate.test(toMapping(assignment, scope));
+            }
+            long key = 0;
+            for (int variable : scope) {
+                key = key * (lines.size() + 1) + assignment[variable];
+            }
+            return results.computeIfAbsent(key, k -> predicate.test(toMapping(assignment, scope)));
+        }
+    }
+
+    /**
+     * A backtracking search over the assignments of a context.
+     *
+     * Names are assigned in order of increasing domain size, each line can be used by at most one name, and each
+     * constraint is checked as soon as all of the names it looks at have been assigned. Each tentative assignment is a
+     * step of the current MarkingBudget, as the number of them can grow factorially with the number of lines.
+     */
+    private static final class Search {
+        private final Context context;
+        private final int[] order;
+        private final List<List<Constraint>> constraintsByDepth;
+        private final int[] assignment;
+        private final boolean[] used;
+        private final MarkingBudget budget = MarkingBudget.current();
+
+        /**
+         * The number of times a name has been tentatively assigned to a line so far.
+         */
+        private int assignments;
+
+        /**
+         * Prepare to search a context.
+         * @param context The context to search.
+         */
+        private Search(Context context) {
+            this.context = context;
+            int size = context.names.size();
+
+            order = IntStream.range(0, size).boxed()
+                .sorted(Comparator.comparingInt(variable -> context.domains.get(variable).cardinality()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+            int[] depthOfVariable = new int[size];
+            for (int depth = 0; depth < size; depth++) {
+                depthOfVariable[order[depth]] = depth;
+            }
+
+            constraintsByDepth = new ArrayList<>(size + 1);
+            for (int depth = 0; depth <= size; depth++) {
+                constraintsByDepth.add(new ArrayList<>());
+            }
+            for (Constraint constraint : context.constraints) {
+                int lastDepth = -1;
+                for (int variable : constraint.scope) {
+                    lastDepth = Math.max(lastDepth, depthOfVariable[variable]);
+                }
+                constraintsByDepth.get(lastDepth + 1).add(constraint);
+            }
+
+            assignment = new int[size];
+            Arrays.fill(assignment, -1);
+            used = new boolean[context.lines.size()];
+        }
+
+        /**
+         * Run the search.
+         * @param visitor Told about every complete assignment until it asks to stop.
+         */
+        private void run(SolutionVisitor visitor) {
+            if (checkConstraints(0)) {
+                search(0, visitor);
+            }
+        }
+
+        /**
+         * Assign the name at this depth and recurse.
+         * @param depth The number of names already assigned.
+         * @param visitor Told about complete assignments.
+         * @return True if the visitor asked to stop.
+         */
+        private boolean search(int depth, SolutionVisitor visitor) {
+            if (depth == order.length) {
+                return visitor.visit(assignment);
+            }
+            int variable = order[depth];
+            BitSet domain = context.domains.get(variable);
+
+            int hint = -1;
+            if (context.witness != null && context.witness[variable] != -1 && domain.get(context.witness[variable])) {
+                hint = context.witness[variable];
+                if (tryLine(depth, variable, hint, visitor)) {
+                    return true;
+                }
+            }
+            for (int line = domain.nextSetBit(0); line >= 0; line = domain.nextSetBit(line + 1)) {
+                if (line != hint && tryLine(depth, variable, line, visitor)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Try mapping a name to a line, and carry on searching if that is consistent.
+         * @param depth The number of names already assigned.
+         * @param variable The index of the name being assigned.
+         * @param line The index of the line to try.
+         * @param visitor Told about complete assignments.
+         * @return True if the visitor asked to stop.
+         */
+        private boolean tryLine(int depth, int variable, int line, SolutionVisitor visitor) {
+            if (used[line]) {
+                return false;
+            }
+            budget.check();
+            assignment[variable] = line;
+            used[line] = true;
+            assignments++;
+            boolean stop = checkConstraints(depth + 1) && search(depth + 1, visitor);
+            used[line] = false;
+            assignment[variable] = -1;
+            return stop;
+        }
+
+        /**
+         * Check the constraints which have just had all of their names assigned.
+         * @param depth The number of names now assigned.
+         * @return True if all of those constraints are satisfied.
+         */
+        private boolean checkConstraints(int depth) {
+            for (Constraint constraint : constraintsByDepth.get(depth)) {
+                if (!constraint.test(assignment)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
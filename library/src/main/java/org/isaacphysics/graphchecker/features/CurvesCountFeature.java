@@ -15,6 +15,7 @@
  */
 package org.isaacphysics.graphchecker.features;
 
+import org.isaacphysics.graphchecker.features.internals.Cost;
 import org.isaacphysics.graphchecker.features.internals.InputFeature;
 import org.isaacphysics.graphchecker.data.Input;
 import org.isaacphysics.graphchecker.settings.SettingsInterface;
@@ -64,6 +65,11 @@ public class CurvesCountFeature extends InputFeature<CurvesCountFeature.Instance
             this.count = 1;
         }
 
+        @Override
+        public Cost getCost() {
+            return Cost.TRIVIAL;
+        }
+
         @Override
         protected boolean test(Input input) {
             return input.getLines().size() == count;
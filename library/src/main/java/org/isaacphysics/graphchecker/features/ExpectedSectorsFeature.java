@@ -16,28 +16,27 @@
 package org.isaacphysics.graphchecker.features;
 
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Streams;
-import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.features.internals.Cost;
 import org.isaacphysics.graphchecker.features.internals.LineFeature;
 import org.isaacphysics.graphchecker.geometry.SectorBuilder;
 import org.isaacphysics.graphchecker.geometry.SectorClassifier;
-import org.isaacphysics.graphchecker.data.IntersectionParams;
 import org.isaacphysics.graphchecker.data.Line;
 import org.isaacphysics.graphchecker.geometry.Sector;
-import org.isaacphysics.graphchecker.geometry.Segment;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.isaacphysics.graphchecker.geometry.SectorPattern;
+import org.isaacphysics.graphchecker.geometry.SectorTracer;
+import org.isaacphysics.graphchecker.metrics.DecisionTrace;
+import org.isaacphysics.graphchecker.metrics.MarkingMetrics;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Function;
+import java.util.function.LongFunction;
 
 /**
  * A line feature which requires the line to pass exactly through a list of sectors.
@@ -49,23 +48,44 @@ import java.util.stream.Collectors;
  * at least touched that axis (this is what invalidSectorSets ensures.)
  */
 public class ExpectedSectorsFeature extends LineFeature<ExpectedSectorsFeature.Instance, SectorClassifier.Settings> {
-    private static final Logger log = LoggerFactory.getLogger(ExpectedSectorsFeature.class);
+    private final SectorTracer tracer;
+
+    private final Function<Line, long[]> shapeOfLine;
+
+    private final LongFunction<Set<Sector>> sectorNames;
+
+    private final MarkingMetrics metrics;
 
     /**
      * Create a expected sectors feature with specified settings.
      * @param settings The settings.
      */
     ExpectedSectorsFeature(SectorClassifier.Settings settings) {
+        this(settings, MarkingMetrics.NONE);
+    }
+
+    /**
+     * Create a expected sectors feature with specified settings, which reports its verdict caches to some metrics.
+     * @param settings The settings.
+     * @param metrics The marking metrics.
+     */
+    ExpectedSectorsFeature(SectorClassifier.Settings settings, MarkingMetrics metrics) {
         super(settings);
+        this.metrics = metrics;
         SectorBuilder sectorBuilder = settings.getSectorBuilder();
-        invalidSectorSets = ImmutableList.of(
+        long[] invalidSectorSets = ImmutableList.of(
             ImmutableSet.of(sectorBuilder.byName(SectorBuilder.TOP_RIGHT), sectorBuilder.byName(SectorBuilder.BOTTOM_RIGHT)),
             ImmutableSet.of(sectorBuilder.byName(SectorBuilder.TOP_LEFT), sectorBuilder.byName(SectorBuilder.BOTTOM_LEFT)),
             ImmutableSet.of(sectorBuilder.byName(SectorBuilder.TOP_RIGHT), sectorBuilder.byName(SectorBuilder.TOP_LEFT)),
             ImmutableSet.of(sectorBuilder.byName(SectorBuilder.BOTTOM_RIGHT), sectorBuilder.byName(SectorBuilder.BOTTOM_LEFT)),
             ImmutableSet.of(sectorBuilder.byName(SectorBuilder.POSITIVE_X_AXIS), sectorBuilder.byName(SectorBuilder.NEGATIVE_X_AXIS)),
             ImmutableSet.of(sectorBuilder.byName(SectorBuilder.POSITIVE_Y_AXIS), sectorBuilder.byName(SectorBuilder.NEGATIVE_Y_AXIS))
-        );
+        ).stream()
+            .mapToLong(sectorBuilder::toMask)
+            .toArray();
+        tracer = new SectorTracer(settings.getSectorClassifier(), invalidSectorSets);
+        shapeOfLine = line -> tracer.trace(line).toArray();
+        sectorNames = settings.getSectorClassifier()::fromMask;
     }
 
     @Override
@@ -77,7 +97,8 @@ public class ExpectedSectorsFeature extends LineFeature<ExpectedSectorsFeature.I
      * An instance of the ExpectedSectors feature.
      */
     protected class Instance extends LineFeature<?, ?>.Instance {
-        private final List<Sector> expectedSectors;
+        private final SectorPattern expectedSectors;
+        private final VerdictCache verdicts = new VerdictCache(metrics);
 
         /**
          * Create an instance which passes through these sectors.
@@ -86,63 +107,29 @@ public class ExpectedSectorsFeature extends LineFeature<ExpectedSectorsFeature.I
          */
         Instance(String featureData, List<Sector> expectedSectors) {
             super(featureData);
-            this.expectedSectors = expectedSectors;
+            this.expectedSectors = new SectorPattern(settings().getSectorBuilder(), expectedSectors);
+        }
+
+        @Override
+        public Cost getCost() {
+            return Cost.MODERATE;
         }
 
         @Override
         public boolean test(Line line) {
-            List<Set<Sector>> actualSectors = convertLineToSectorSetList(line);
-            log.debug("User line passed through sectors: " + actualSectors);
-            return match(actualSectors);
+            // The sector masks the line passes through, which are both the verdict's key and what is matched
+            long[] shape = line.derive(shapeOfLine);
+            if (DecisionTrace.isEnabled()) {
+                DecisionTrace.current().sectors(tag(), shape, sectorNames);
+            }
+            return verdicts.test(shape, () -> expectedSectors.matches(shape));
         }
 
         /**
-         * Check if a list of actual possible sectors matches a list of expected sectors.
-         *
-         * This method uses dynamic programming to match the sectors. Imagine first a grid of matches between actual
-         * sector sets and expected sectors:
-         *
-         * e   actual
-         * x   0 1 2 3 4
-         * p 0 x     x
-         * e 1 x   x
-         * c 2   x x x
-         * t 3 x   x x x
-         *
-         * We need to find a path that connects the top left to the bottom right, either straight or diagonally, without
-         * doubling back to the left. That is, a path that only moves down, right, or diagonally down and right.
-         * In this case, actual sector set 0 matches expected sectors 0 and 1, then actual 1 and 2 could match expected
-         * 2, and finally actual sets 3 and 4 could match expected 3.
-         *
-         * In order to find the path, we could imagine building the grid above, and then replacing each true with a true
-         * if and only if there is a true above or left of it (working downwards).
-         *
-         * And finally, we can make the standard dynamic programming optimisation and keep just the last row and the row
-         * we're building up from the top.
-         *
-         * @param actual The sectors we possibly pass through, in order.
-         * @return True if there is a match.
+         * @return Statistics on the verdicts answered from previously seen sector traces.
          */
-        private boolean match(List<Set<Sector>> actual) {
-
-            // This has a phantom left-half column to avoid a test in the loop below
-            // The phantom column will always be false except above the first row to anchor the beginning.
-            int matchArraySize = actual.size() + 1;
-
-            boolean[] matches = new boolean[matchArraySize];
-            matches[0] = true; // This is the fake match to anchor things to the beginning.
-
-            for (Sector expectedSector : expectedSectors) {
-                boolean[] nextMatches = new boolean[matchArraySize];
-                for (int j = 0; j < actual.size(); j++) {
-                    if (actual.get(j).contains(expectedSector)) {
-                        nextMatches[j + 1] = matches[j] || matches[j + 1] || nextMatches[j];
-                    }
-                }
-                matches = nextMatches;
-            }
-
-            return matches[matchArraySize - 1];
+        CacheStats getVerdictCacheStats() {
+            return verdicts.stats();
         }
     }
 
@@ -172,11 +159,12 @@ public class ExpectedSectorsFeature extends LineFeature<ExpectedSectorsFeature.I
      * @return The list of sectors the line passes through.
      */
     List<Sector> convertLineToSectorList(Line line) {
-        List<Set<Sector>> sectors = convertLineToSectorSetList(line);
+        long[] sectors = line.derive(shapeOfLine);
+        SectorClassifier classifier = settings().getSectorClassifier();
 
         List<Sector> output = new ArrayList<>();
-        sectors.stream()
-            .map(set -> settings().getOrderedSectors().stream().filter(set::contains).findFirst().orElse(null))
+        Arrays.stream(sectors)
+            .mapToObj(classifier::highestPriority)
             .forEach(sector -> {
                 if (output.isEmpty() || !output.get(output.size() - 1).equals(sector)) {
                     output.add(sector);
@@ -185,122 +173,4 @@ public class ExpectedSectorsFeature extends LineFeature<ExpectedSectorsFeature.I
 
         return output;
     }
-
-    /**
-     * Convert a line into a list of sets of sectors that it passes through.
-     *
-     * For example, a line passing near an axis might return a list like: [topRight], [topRight, +Xaxis], [topRight]
-     *
-     * @param line The line.
-     * @return The list of sets of sectors that the line passes through.
-     */
-    private List<Set<Sector>> convertLineToSectorSetList(Line line) {
-        List<Set<Sector>> output = new ArrayList<>();
-
-        Point lastPoint = null;
-        for (Point point : line) {
-            if (lastPoint != null) {
-                classifyLineSegment(output, Segment.closed(lastPoint, point));
-            }
-
-            Set<Sector> pointSector = classifyPoint(point);
-
-            addSector(output, pointSector);
-
-            lastPoint = point;
-        }
-
-        return output;
-    }
-
-    private final List<Set<Sector>> invalidSectorSets;
-
-    /**
-     * Add a set of sectors to a list of sets of sectors, removing illegal combinations and de-duplicating.
-     * @param output The list to add this sector set to.
-     * @param sectors The set of sectors.
-     */
-    private void addSector(List<Set<Sector>> output, Set<Sector> sectors) {
-        Objects.requireNonNull(sectors);
-
-        // If you are in an area that contains both sides of an axis say, remove both sides.
-        List<Set<Sector>> sectorsToRemove = invalidSectorSets.stream()
-            .filter(sectors::containsAll)
-            .collect(Collectors.toList());
-        sectorsToRemove.forEach(sectors::removeAll);
-
-        if (output.size() == 0 || !output.get(output.size() - 1).equals(sectors) && !sectors.isEmpty()) {
-            output.add(sectors);
-        }
-    }
-
-    /**
-     * Identify which sector this point is in.
-     * @param point The point to be classified.
-     * @return The highest-priority Sector that point is in.
-     */
-    private Set<Sector> classifyPoint(Point point) {
-        return settings().getSectorClassifier().classifyAll(point);
-    }
-
-    /**
-     * Add any sector sets this Segment passes through onto a list of sector sets.
-     * @param output The current list of sets of sectors.
-     * @param lineSegment The segment to be added.
-     */
-    private void classifyLineSegment(List<Set<Sector>> output, Segment lineSegment) {
-        // Calculate when we enter and leave the line segment
-        IntersectionParams[] intersectionParams = settings().getOrderedSectors().stream()
-            .map(sector -> sector.intersectionParams(lineSegment))
-            .toArray(IntersectionParams[]::new);
-
-        Boolean[] inside = settings().getOrderedSectors().stream()
-            .map(sector -> sector.contains(lineSegment.getStart()))
-            .toArray(Boolean[]::new);
-
-        int index = lowestIndex(intersectionParams);
-        while (index != -1) {
-            IntersectionParams.IntersectionParam intersection = intersectionParams[index].remove(0);
-            inside[index] = intersection.isInside();
-
-            index = lowestIndex(intersectionParams);
-            while (index != -1 && intersection.getT() == intersectionParams[index].get(0).getT()) {
-                intersection = intersectionParams[index].remove(0);
-                inside[index] = intersection.isInside();
-
-                index = lowestIndex(intersectionParams);
-            }
-
-            // Record all of the sectors we are currently in
-            @SuppressWarnings("checkstyle:avoidInlineConditionals")
-            Set<Sector> internalSectors = Streams.zip(
-                settings().getOrderedSectors().stream(),
-                Arrays.stream(inside),
-                (sector, in) -> in ? sector : null)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
-            addSector(output, internalSectors);
-        }
-    }
-
-    /**
-     * From an array of IntersectionParams, return the index of the one with the earliest T value, or -1 if empty.
-     * @param intersectionParams The array of IntersectionParams to consider.
-     * @return The index of the param with the lowest T value, or -1 if the array is empty.
-     */
-    private int lowestIndex(IntersectionParams[] intersectionParams) {
-        int index = -1;
-        double minParam = Double.MAX_VALUE;
-        for (int i = 0; i < intersectionParams.length; i++) {
-            if (intersectionParams[i].size() > 0) {
-                double param = intersectionParams[i].get(0).getT();
-                if (param < minParam) {
-                    index = i;
-                    minParam = param;
-                }
-            }
-        }
-        return index;
-    }
 }
@@ -15,31 +15,75 @@
  */
 package org.isaacphysics.graphchecker.features;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.common.collect.ImmutableList;
 import org.isaacphysics.graphchecker.data.Input;
 import org.isaacphysics.graphchecker.features.internals.InputFeature;
 import org.isaacphysics.graphchecker.features.internals.LineFeature;
 import org.isaacphysics.graphchecker.features.internals.LineSelector;
+import org.isaacphysics.graphchecker.metrics.DecisionTrace;
+import org.isaacphysics.graphchecker.metrics.MarkingBudget;
+import org.isaacphysics.graphchecker.metrics.MarkingEvents;
+import org.isaacphysics.graphchecker.metrics.MarkingMetrics;
+import org.isaacphysics.graphchecker.metrics.SlowMarkLog;
 import org.isaacphysics.graphchecker.settings.SettingsWrapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.isaacphysics.graphchecker.data.Line;
 
+import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * Class for matching Input to a list of features, and generating a list of features from an input.
+ *
+ * Marking is reported to the MarkingMetrics in the settings: how long each mark and each feature instance takes,
+ * whether they pass, and how often the matcher and verdict caches are hit. When DecisionTrace is enabled, each mark and
+ * feature decision is also traced, and compiling and testing are timed by MarkingEvents when those are enabled in a
+ * JFR recording. Calls to getFailingSpecs that take too long are captured by the SlowMarkLog in the settings.
+ *
+ * Matcher.mark can be given a MarkingBudget, to stop marking an answer that takes too long and give an undetermined
+ * result instead.
  */
 public class Features {
 
     private static final Logger log = LoggerFactory.getLogger(Features.class);
 
+    /**
+     * The maximum number of compiled matchers kept in the matcher cache.
+     */
+    public static final int MATCHER_CACHE_SIZE = 1000;
+
+    /**
+     * Compiled matchers, shared between all Features objects with the same settings.
+     *
+     * Matchers are immutable once compiled, so a matcher compiled by one Features object can be safely used by another.
+     */
+    private static final Cache<MatcherKey, Matcher> MATCHER_CACHE = CacheBuilder.newBuilder()
+        .maximumSize(MATCHER_CACHE_SIZE)
+        .recordStats()
+        .build();
+
+    private final SettingsWrapper settings;
+    private final MarkingMetrics metrics;
+    private final SlowMarkLog slowMarkLog;
     private final List<LineFeature<?, ?>> lineFeatures;
     private final List<InputFeature<?, ?>> inputFeatures;
     private final List<LineSelector<?, ?>> lineSelectors;
@@ -57,11 +101,14 @@ public class Features {
      * @param settings The settings to use.
      */
     public Features(SettingsWrapper settings) {
+        this.settings = settings;
+        this.metrics = settings.getMarkingMetrics();
+        this.slowMarkLog = settings.getSlowMarkLog();
         lineFeatures = ImmutableList.of(
-            new ExpectedSectorsFeature(settings),
+            new ExpectedSectorsFeature(settings, metrics),
             new SlopeFeature(settings),
             new SymmetryFeature(settings),
-            new PointsFeature(settings)
+            new PointsFeature(settings, metrics)
         );
         curvesCountFeature = new CurvesCountFeature(settings);
         inputFeatures = ImmutableList.of(
@@ -77,10 +124,115 @@ public class Features {
     /**
      * Given a feature specification, return a predicate which matches Input to that specification.
      *
+     * Compiled matchers are cached, so asking for the same specification again with the same settings is cheap.
+     *
      * @param feature The feature specification.
      * @return A predicate on Input.
      */
     public Matcher matcher(String feature) {
+        MatcherKey key = new MatcherKey(settings, normalise(feature));
+        Matcher matcher = MATCHER_CACHE.getIfPresent(key);
+        metrics.recordCacheAccess(MarkingMetrics.MATCHER_CACHE, matcher != null);
+        if (matcher == null) {
+            matcher = compile(key.specification);
+            MATCHER_CACHE.put(key, matcher);
+        }
+        return matcher;
+    }
+
+    /**
+     * Mark many inputs against one specification, in parallel on the common fork-join pool.
+     *
+     * @param feature The feature specification.
+     * @param inputs The inputs to mark.
+     * @return The result for each input, in the same order as the inputs.
+     * @see #markAll(String, Collection, Executor)
+     */
+    public List<MarkResult> markAll(String feature, Collection<Input> inputs) {
+        return markAll(feature, inputs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Mark many inputs against one specification, in parallel.
+     *
+     * The specification is compiled once, and each input is marked as a separate task on the executor. Every line of
+     * the specification is tested, so each result says everything the input failed, as getFailingSpecs would.
+     *
+     * @param feature The feature specification.
+     * @param inputs The inputs to mark.
+     * @param executor The executor to mark the inputs on.
+     * @return The result for each input, in the same order as the inputs.
+     */
+    public List<MarkResult> markAll(String feature, Collection<Input> inputs, Executor executor) {
+        Matcher matcher = matcher(feature);
+        List<CompletableFuture<MarkResult>> results = inputs.stream()
+            .map(input -> CompletableFuture.supplyAsync(() -> matcher.mark(input), executor))
+            .collect(Collectors.toList());
+        try {
+            return results.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Given the feature specifications of several alternative solutions, return a matcher which finds the first
+     * solution an Input matches.
+     *
+     * @param features The feature specifications, in order of preference.
+     * @return A matcher for all of the specifications together.
+     */
+    public SolutionsMatcher solutionsMatcher(List<String> features) {
+        return new SolutionsMatcher(features.stream()
+            .map(this::matcher)
+            .collect(Collectors.toList()));
+    }
+
+    /**
+     * @return Hit and miss statistics for the compiled matcher cache.
+     */
+    public static CacheStats getMatcherCacheStats() {
+        return MATCHER_CACHE.stats();
+    }
+
+    /**
+     * Discard all compiled matchers from the cache.
+     */
+    public static void clearMatcherCache() {
+        MATCHER_CACHE.invalidateAll();
+    }
+
+    /**
+     * Normalise a feature specification so that trivially different specifications share a cache entry.
+     *
+     * Each line is trimmed, and the lines are re-joined with a plain newline, so CRLF and LF specifications match.
+     *
+     * @param feature The feature specification.
+     * @return The normalised feature specification.
+     */
+    private static String normalise(String feature) {
+        return Arrays.stream(feature.split("\n"))
+            .map(String::trim)
+            .collect(Collectors.joining("\n"));
+    }
+
+    /**
+     * Compile a feature specification into a matcher, without looking in the cache of compiled matchers.
+     *
+     * @param feature The normalised feature specification.
+     * @return A predicate on Input.
+     */
+    @VisibleForTesting
+    Matcher compile(String feature) {
+        Object event = MarkingEvents.beginCompile();
         String[] features = feature.split("\n");
         List<InputFeature<?, ?>.Instance> matchers = Arrays.stream(features)
                 .map(item -> itemToFeatureInstance(item.trim()))
@@ -91,7 +243,38 @@ public class Features {
             matchers.add(instance);
         }
 
-        return new Matcher(matchers);
+        MarkingEvents.commitCompile(event, feature, matchers.size());
+        return new Matcher(feature, matchers);
+    }
+
+    /**
+     * Test a feature instance, reporting how long it took and whether it passed to some marking metrics and to
+     * MarkingEvents, and tracing the decision.
+     *
+     * @param metrics The marking metrics.
+     * @param specificationHash The hash code of the specification the instance is part of, to identify it in events.
+     * @param instance The feature instance.
+     * @param input The input to test.
+     * @param context The context of the input.
+     * @return The existing or new context if there is a match, null if there is no match.
+     */
+    @Nullable
+    private static Context test(MarkingMetrics metrics, int specificationHash, InputFeature<?, ?>.Instance instance,
+                                Input input, Context context) {
+        Object event = MarkingEvents.beginFeature();
+        Context result;
+        if (metrics.isEnabled()) {
+            long start = System.nanoTime();
+            result = instance.test(input, context);
+            metrics.recordFeature(instance.getTag(), System.nanoTime() - start, result != null);
+        } else {
+            result = instance.test(input, context);
+        }
+        MarkingEvents.commitFeature(event, specificationHash, instance.getTag(), input, result != null);
+        if (DecisionTrace.isEnabled()) {
+            DecisionTrace.current().feature(instance.getTag(), result != null);
+        }
+        return result;
     }
 
     /**
@@ -145,17 +328,31 @@ public class Features {
 
     /**
      * A predicate for matching an input against a particular specification.
+     *
+     * Testing an input stops at the first feature instance that fails, trying the cheapest instances first, so most
+     * wrong answers are rejected without looking at every point of every line. getFailingSpecs still tests every
+     * instance, in specification order, to report everything that is wrong with an input.
      */
     public class Matcher implements Predicate<Input> {
+        private final String specification;
+        private final int specificationHash;
         private final List<InputFeature<?, ?>.Instance> matchers;
+        private final List<InputFeature<?, ?>.Instance> cheapestFirst;
 
         /**
          * Create a matcher that requires all of the input feature instances to pass.
          *
+         * @param specification The normalised specification.
          * @param matchers A list of input feature instances.
          */
-        private Matcher(List<InputFeature<?, ?>.Instance> matchers) {
+        private Matcher(String specification, List<InputFeature<?, ?>.Instance> matchers) {
+            this.specification = specification;
+            this.specificationHash = specification.hashCode();
             this.matchers = matchers;
+            // The sort is stable, so instances of the same cost are still tested in specification order
+            this.cheapestFirst = matchers.stream()
+                .sorted(Comparator.comparing(InputFeature.Instance::getCost))
+                .collect(ImmutableList.toImmutableList());
         }
 
         /**
@@ -165,26 +362,323 @@ public class Features {
          * @return A list of lines of specification that this input violates.
          */
         public List<String> getFailingSpecs(Input input) {
+            // An unlimited budget never runs out, so this is never null
+            return getFailingSpecs(input, MarkingBudget.UNLIMITED);
+        }
+
+        /**
+         * Get a list of any specifications that an input fails against within a budget, and capture the mark in the
+         * slow mark log if it takes too long.
+         *
+         * @param input The input to test.
+         * @param budget The budget for marking the input.
+         * @return A list of lines of specification that this input violates, or null if the budget ran out first.
+         */
+        @Nullable
+        private List<String> getFailingSpecs(Input input, MarkingBudget budget) {
+            long[] featureNanos = null;
+            long start = 0;
+            if (slowMarkLog.isEnabled()) {
+                featureNanos = new long[matchers.size()];
+                start = System.nanoTime();
+            }
+
+            List<String> failingSpecs;
+            if (budget == MarkingBudget.UNLIMITED) {
+                failingSpecs = getFailingSpecs(input, metrics, featureNanos);
+            } else {
+                long[] nanos = featureNanos;
+                try {
+                    failingSpecs = budget.run(() -> getFailingSpecs(input, metrics, nanos));
+                } catch (MarkingBudget.Exhausted e) {
+                    log.debug("Marking stopped: {}", e.getMessage());
+                    failingSpecs = null;
+                }
+            }
+
+            if (featureNanos != null) {
+                long totalNanos = System.nanoTime() - start;
+                if (slowMarkLog.isSlow(totalNanos)) {
+                    List<String> features = matchers.stream()
+                        .map(InputFeature.Instance::getTaggedFeatureData)
+                        .collect(Collectors.toList());
+                    slowMarkLog.offer(specification, input, settings, features, featureNanos, failingSpecs,
+                        totalNanos);
+                }
+            }
+            return failingSpecs;
+        }
+
+        /**
+         * Get a list of any specifications that an input fails against, reporting to some marking metrics.
+         *
+         * @param input The input to test.
+         * @param markingMetrics The marking metrics.
+         * @param featureNanos If not null, how long each feature instance takes is put in here.
+         * @return A list of lines of specification that this input violates.
+         */
+        private List<String> getFailingSpecs(Input input, MarkingMetrics markingMetrics,
+                                             @Nullable long[] featureNanos) {
+            startTrace();
             List<String> failedPredicates = new ArrayList<>();
-            Context context = new Context(input);
-            for (InputFeature<?, ?>.Instance inputPredicate: matchers) {
-                Context newContext = inputPredicate.test(input, context);
+            Context context = new Context(input, markingMetrics);
+            for (int i = 0; i < matchers.size(); i++) {
+                InputFeature<?, ?>.Instance inputPredicate = matchers.get(i);
+                Context newContext;
+                if (featureNanos != null) {
+                    long start = System.nanoTime();
+                    newContext = Features.test(markingMetrics, specificationHash, inputPredicate, input, context);
+                    featureNanos[i] = System.nanoTime() - start;
+                } else {
+                    newContext = Features.test(markingMetrics, specificationHash, inputPredicate, input, context);
+                }
                 if (newContext == null) {
                     failedPredicates.add(inputPredicate.getTaggedFeatureData());
                 } else {
                     context = newContext;
                 }
             }
+            endTrace(failedPredicates.isEmpty());
             return failedPredicates;
         }
 
+        /**
+         * @return The specifications of the feature instances, in the order test tries them.
+         */
+        @VisibleForTesting
+        List<String> getTestOrder() {
+            return cheapestFirst.stream()
+                .map(InputFeature.Instance::getTaggedFeatureData)
+                .collect(Collectors.toList());
+        }
+
+        /**
+         * Mark an input, finding every specification it fails against and timing how long that takes.
+         *
+         * @param input The input to mark.
+         * @return The result of marking the input.
+         */
+        public MarkResult mark(Input input) {
+            return mark(input, MarkingBudget.UNLIMITED);
+        }
+
+        /**
+         * Mark an input within a budget, finding every specification it fails against and timing how long that takes.
+         *
+         * The budget is checked as marking goes, so marking stops soon after the budget runs out, and the result is
+         * undetermined.
+         *
+         * @param input The input to mark.
+         * @param budget The budget for marking the input, which must not be used for anything else.
+         * @return The result of marking the input.
+         */
+        public MarkResult mark(Input input, MarkingBudget budget) {
+            long start = System.nanoTime();
+            List<String> failingSpecs = getFailingSpecs(input, budget);
+            long elapsedNanos = System.nanoTime() - start;
+            if (failingSpecs == null) {
+                metrics.recordUndetermined(elapsedNanos);
+                return MarkResult.undetermined(elapsedNanos);
+            }
+            MarkResult result = new MarkResult(failingSpecs, elapsedNanos);
+            metrics.recordMark(result.getElapsedNanos(), result.isMatch());
+            return result;
+        }
+
         @Override
         public boolean test(Input input) {
-            List<String> failingSpecs = getFailingSpecs(input);
-            if (!failingSpecs.isEmpty()) {
-                log.debug("Failed specs: " + String.join("\r\n\t\t", failingSpecs));
+            boolean match;
+            if (metrics.isEnabled()) {
+                long start = System.nanoTime();
+                match = testCheapestFirst(input);
+                metrics.recordMark(System.nanoTime() - start, match);
+            } else {
+                match = testCheapestFirst(input);
+            }
+            if (!match && log.isDebugEnabled()) {
+                // Finding the failing specs tests the input again, so don't report that to the metrics
+                log.debug("Failed specs: {}",
+                    String.join("\r\n\t\t", getFailingSpecs(input, MarkingMetrics.NONE, null)));
+            }
+            return match;
+        }
+
+        /**
+         * Test an input, stopping at the first feature instance that fails.
+         *
+         * @param input The input to test.
+         * @return True if the input passes every feature instance.
+         */
+        private boolean testCheapestFirst(Input input) {
+            startTrace();
+            // Every instance has to pass, and a context can be found for a set of instances in any order, so the
+            // order they are tested in does not change the answer.
+            Context context = new Context(input, metrics);
+            for (InputFeature<?, ?>.Instance inputPredicate: cheapestFirst) {
+                context = Features.test(metrics, specificationHash, inputPredicate, input, context);
+                if (context == null) {
+                    endTrace(false);
+                    return false;
+                }
+            }
+            endTrace(true);
+            return true;
+        }
+
+        /**
+         * Start tracing a mark, if decisions are being traced.
+         */
+        private void startTrace() {
+            if (DecisionTrace.isEnabled()) {
+                DecisionTrace.current().startMark();
+            }
+        }
+
+        /**
+         * Finish tracing a mark, if decisions are being traced.
+         * @param match Whether the input matched.
+         */
+        private void endTrace(boolean match) {
+            if (DecisionTrace.isEnabled()) {
+                DecisionTrace.current().mark(match);
+            }
+        }
+    }
+
+    /**
+     * A matcher for the specifications of several alternative solutions to a question, such as a correct answer and
+     * some responses to common mistakes.
+     *
+     * Alternative specifications often share lines, such as a curve count. A feature instance which only depends on the
+     * input is tested at most once per input, however many of the specifications contain it, and the result is shared
+     * with the rest. Instances that depend on the names given to lines are tested within each specification.
+     */
+    public class SolutionsMatcher {
+        private final List<List<InputFeature<?, ?>.Instance>> solutions;
+        private final List<int[]> sharedIndices;
+        private final int[] specificationHashes;
+        private final int sharedCount;
+
+        /**
+         * Create a matcher for some alternative solutions.
+         * @param matchers The matcher of each solution, in order of preference.
+         */
+        private SolutionsMatcher(List<Matcher> matchers) {
+            Map<String, Integer> shared = new HashMap<>();
+            ImmutableList.Builder<List<InputFeature<?, ?>.Instance>> solutionsBuilder = ImmutableList.builder();
+            ImmutableList.Builder<int[]> sharedIndicesBuilder = ImmutableList.builder();
+            this.specificationHashes = matchers.stream().mapToInt(matcher -> matcher.specificationHash).toArray();
+            for (Matcher matcher : matchers) {
+                List<InputFeature<?, ?>.Instance> instances = matcher.cheapestFirst;
+                int[] indices = new int[instances.size()];
+                for (int i = 0; i < instances.size(); i++) {
+                    InputFeature<?, ?>.Instance instance = instances.get(i);
+                    if (instance.dependsOnContext()) {
+                        indices[i] = -1;
+                    } else {
+                        indices[i] = shared.computeIfAbsent(instance.getTaggedFeatureData(), spec -> shared.size());
+                    }
+                }
+                solutionsBuilder.add(instances);
+                sharedIndicesBuilder.add(indices);
+            }
+            this.solutions = solutionsBuilder.build();
+            this.sharedIndices = sharedIndicesBuilder.build();
+            this.sharedCount = shared.size();
+        }
+
+        /**
+         * Find the first solution that an input matches.
+         *
+         * @param input The input to test.
+         * @return The index of the first matching solution, or empty if none match.
+         */
+        public OptionalInt firstMatch(Input input) {
+            // The result of each shared instance: unknown (null), passed or failed
+            Boolean[] results = new Boolean[sharedCount];
+            // Contexts derived from the same context share the intersections of the input's lines
+            Context root = new Context(input, metrics);
+            for (int solution = 0; solution < solutions.size(); solution++) {
+                if (matches(solution, input, root, results)) {
+                    return OptionalInt.of(solution);
+                }
+            }
+            return OptionalInt.empty();
+        }
+
+        /**
+         * Test an input against one of the solutions, stopping at the first failure.
+         * @param solution The index of the solution.
+         * @param input The input to test.
+         * @param root An empty context for the input.
+         * @param results The results of the shared instances tested so far, which is updated.
+         * @return True if the input matches this solution.
+         */
+        private boolean matches(int solution, Input input, Context root, Boolean[] results) {
+            List<InputFeature<?, ?>.Instance> instances = solutions.get(solution);
+            int[] indices = sharedIndices.get(solution);
+            Context context = root;
+            for (int i = 0; i < instances.size(); i++) {
+                int index = indices[i];
+                if (index < 0) {
+                    context = test(metrics, specificationHashes[solution], instances.get(i), input, context);
+                    if (context == null) {
+                        return false;
+                    }
+                } else {
+                    if (results[index] == null) {
+                        results[index] = test(metrics, specificationHashes[solution], instances.get(i), input, root)
+                            != null;
+                    }
+                    if (!results[index]) {
+                        return false;
+                    }
+                }
             }
-            return failingSpecs.isEmpty();
+            return true;
+        }
+
+        /**
+         * @return The number of distinct feature instances which are shared between the solutions.
+         */
+        @VisibleForTesting
+        int getSharedCount() {
+            return sharedCount;
+        }
+    }
+
+    /**
+     * The key of a compiled matcher in the cache: a normalised specification and the identity of the settings.
+     */
+    private static final class MatcherKey {
+        private final SettingsWrapper settings;
+        private final String specification;
+
+        /**
+         * Create a key for the matcher cache.
+         * @param settings The settings the matcher is compiled with.
+         * @param specification The normalised feature specification.
+         */
+        private MatcherKey(SettingsWrapper settings, String specification) {
+            this.settings = settings;
+            this.specification = specification;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            MatcherKey that = (MatcherKey) o;
+            return settings == that.settings && specification.equals(that.specification);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(settings), specification);
         }
     }
 
@@ -17,10 +17,11 @@ package org.isaacphysics.graphchecker.features;
 
 import com.google.common.base.Joiner;
 import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.features.internals.Cost;
 import org.isaacphysics.graphchecker.features.internals.InputFeature;
 import org.isaacphysics.graphchecker.geometry.SectorClassifier;
 import org.isaacphysics.graphchecker.data.Line;
-import org.isaacphysics.graphchecker.geometry.Lines;
+import org.isaacphysics.graphchecker.geometry.IntersectionTable;
 import org.isaacphysics.graphchecker.geometry.Sector;
 
 import java.util.ArrayList;
@@ -28,7 +29,6 @@ import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * An input feature which matches an intersection between two lines.
@@ -75,12 +75,23 @@ public class IntersectionPointsFeature extends InputFeature<IntersectionPointsFe
             this.sectors = sectors;
         }
 
+        @Override
+        public Cost getCost() {
+            return Cost.EXPENSIVE;
+        }
+
+        @Override
+        public boolean dependsOnContext() {
+            return true;
+        }
+
         @Override
         public Context test(Input input, Context context) {
+            IntersectionTable intersections = context.getIntersectionTable(settings().getSectorClassifier());
             return context.makeNewContext(mapping -> {
                 Line theLineA = mapping.get(lineA);
                 Line theLineB = mapping.get(lineB);
-                List<Sector> matches = getIntersectionSectors(theLineA, theLineB);
+                List<Sector> matches = intersections.getIntersectionSectors(theLineA, theLineB);
 
                 return matches.equals(sectors);
             }, lineA, lineB);
@@ -126,6 +137,7 @@ public class IntersectionPointsFeature extends InputFeature<IntersectionPointsFe
     @Override
     public List<String> generate(Input expectedInput) {
         List<Line> lines = expectedInput.getLines();
+        IntersectionTable intersections = new IntersectionTable(lines, settings().getSectorClassifier());
 
         List<String> output = new ArrayList<>();
 
@@ -134,26 +146,12 @@ public class IntersectionPointsFeature extends InputFeature<IntersectionPointsFe
             for (int j = i + 1; j < lines.size(); j++) {
                 Line lineB = lines.get(j);
 
-                List<Sector> intersections = getIntersectionSectors(lineA, lineB);
                 output.add(serialize(Context.standardLineName(i),
                     Context.standardLineName(j),
-                    intersections));
+                    intersections.getIntersectionSectors(lineA, lineB)));
             }
         }
 
         return output;
     }
-
-    /**
-     * Get a list of the sectors of intersections between two lines.
-     *
-     * @param lineA The first line.
-     * @param lineB The second line.
-     * @return The list of sectors where an intersection occurs.
-     */
-    private List<Sector> getIntersectionSectors(Line lineA, Line lineB) {
-        return Lines.findIntersections(lineA, lineB).stream()
-            .map(p -> settings().getSectorClassifier().classify(p))
-            .collect(Collectors.toList());
-    }
 }
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.features;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+/**
+ * The result of marking one input against a specification: which lines of the specification it failed, and how long
+ * marking it took.
+ *
+ * If the MarkingBudget for the mark ran out first, the result is undetermined: it is neither a match nor a list of
+ * failures, as some lines of the specification were not tested.
+ */
+public final class MarkResult {
+    private final List<String> failingSpecs;
+    private final long elapsedNanos;
+    private final boolean undetermined;
+
+    /**
+     * Create a mark result.
+     * @param failingSpecs The lines of the specification the input failed.
+     * @param elapsedNanos How long marking took, in nanoseconds.
+     */
+    MarkResult(List<String> failingSpecs, long elapsedNanos) {
+        this(failingSpecs, elapsedNanos, false);
+    }
+
+    /**
+     * Create a mark result.
+     * @param failingSpecs The lines of the specification the input failed.
+     * @param elapsedNanos How long marking took, in nanoseconds.
+     * @param undetermined Whether the budget ran out before the input was marked.
+     */
+    private MarkResult(List<String> failingSpecs, long elapsedNanos, boolean undetermined) {
+        this.failingSpecs = ImmutableList.copyOf(failingSpecs);
+        this.elapsedNanos = elapsedNanos;
+        this.undetermined = undetermined;
+    }
+
+    /**
+     * Create the result of a mark that ran out of budget.
+     * @param elapsedNanos How long it took to run out, in nanoseconds.
+     * @return An undetermined mark result.
+     */
+    static MarkResult undetermined(long elapsedNanos) {
+        return new MarkResult(ImmutableList.of(), elapsedNanos, true);
+    }
+
+    /**
+     * @return True if the input matched the specification.
+     */
+    public boolean isMatch() {
+        return !undetermined && failingSpecs.isEmpty();
+    }
+
+    /**
+     * @return True if the budget ran out before the input was marked, so it is not known whether it matched.
+     */
+    public boolean isUndetermined() {
+        return undetermined;
+    }
+
+    /**
+     * @return The lines of the specification the input failed, in specification order; empty if it matched or the
+     *         result is undetermined.
+     */
+    public List<String> getFailingSpecs() {
+        return failingSpecs;
+    }
+
+    /**
+     * @return How long marking the input took, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
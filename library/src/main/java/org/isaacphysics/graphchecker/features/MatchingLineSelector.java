@@ -16,6 +16,7 @@
 package org.isaacphysics.graphchecker.features;
 
 import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.features.internals.Cost;
 import org.isaacphysics.graphchecker.features.internals.LineFeature;
 import org.isaacphysics.graphchecker.features.internals.LineSelector;
 import org.isaacphysics.graphchecker.settings.SettingsInterface;
@@ -65,6 +66,16 @@ public class MatchingLineSelector extends LineSelector<MatchingLineSelector.Inst
             this.name = name;
         }
 
+        @Override
+        public Cost getCost() {
+            return Cost.EXPENSIVE;
+        }
+
+        @Override
+        public boolean dependsOnContext() {
+            return true;
+        }
+
         @Override
         protected Context test(Input input, LineFeature.Instance lineInstance, Context context) {
             return context.makeNewContext(mapping -> lineInstance.test(mapping.get(name)), name);
@@ -17,6 +17,7 @@ package org.isaacphysics.graphchecker.features;
 
 import org.isaacphysics.graphchecker.data.Input;
 import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.features.internals.Cost;
 import org.isaacphysics.graphchecker.features.internals.LineFeature;
 import org.isaacphysics.graphchecker.features.internals.LineSelector;
 import org.isaacphysics.graphchecker.geometry.Lines;
@@ -63,6 +64,11 @@ public class NthLineSelector extends LineSelector<NthLineSelector.Instance, Sett
             this.n = n;
         }
 
+        @Override
+        public Cost getCost() {
+            return Cost.TRIVIAL;
+        }
+
         @Override
         protected boolean test(Input input, LineFeature<?, ?>.Instance lineInstance) {
             List<Line> lines = input.getLines();
@@ -15,18 +15,22 @@
  */
 package org.isaacphysics.graphchecker.features;
 
-import com.google.common.collect.Streams;
+import com.google.common.cache.CacheStats;
+import org.isaacphysics.graphchecker.features.internals.Cost;
 import org.isaacphysics.graphchecker.features.internals.LineFeature;
 import org.isaacphysics.graphchecker.geometry.Sector;
 import org.isaacphysics.graphchecker.geometry.SectorBuilder;
 import org.isaacphysics.graphchecker.geometry.SectorClassifier;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.PointOfInterest;
 import org.isaacphysics.graphchecker.data.PointType;
+import org.isaacphysics.graphchecker.metrics.MarkingMetrics;
 
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -35,12 +39,26 @@ import java.util.stream.Collectors;
  */
 public class PointsFeature extends LineFeature<PointsFeature.Instance, SectorClassifier.Settings> {
 
+    private final Function<Line, long[]> shapeOfPoints = this::shapeOfPoints;
+
+    private final MarkingMetrics metrics;
+
     /**
      * Create a points feature with specified settings.
      * @param settings The settings.
      */
     PointsFeature(SectorClassifier.Settings settings) {
+        this(settings, MarkingMetrics.NONE);
+    }
+
+    /**
+     * Create a points feature with specified settings, which reports its verdict caches to some metrics.
+     * @param settings The settings.
+     * @param metrics The marking metrics.
+     */
+    PointsFeature(SectorClassifier.Settings settings, MarkingMetrics metrics) {
         super(settings);
+        this.metrics = metrics;
     }
 
     @Override
@@ -54,6 +72,7 @@ public class PointsFeature extends LineFeature<PointsFeature.Instance, SectorCla
     protected class Instance extends LineFeature<?, ?>.Instance {
 
         private final List<ImmutablePair<PointType, Sector>> expectedPoints;
+        private final VerdictCache verdicts = new VerdictCache(metrics);
 
         /**
          * Create an instance which expects these points in order.
@@ -65,17 +84,62 @@ public class PointsFeature extends LineFeature<PointsFeature.Instance, SectorCla
             this.expectedPoints = expectedPoints;
         }
 
+        @Override
+        public Cost getCost() {
+            return Cost.CHEAP;
+        }
+
         @Override
         public boolean test(Line line) {
             if (expectedPoints.size() != line.getPointsOfInterest().size()) {
                 return false;
             }
 
-            return Streams.zip(expectedPoints.stream(), line.getPointsOfInterest().stream(),
-                (expected, actual) -> expected.getLeft() == actual.getPointType()
-                    && settings().getSectorClassifier().classifyAll(actual).contains(expected.getRight()))
-                .allMatch(Boolean::booleanValue);
+            // The verdict only depends on the type and possible sectors of each point, so cache it by those
+            long[] shape = line.derive(shapeOfPoints);
+            return verdicts.test(shape, () -> matches(shape));
+        }
+
+        /**
+         * Check the shape of a line's points of interest against the expected points.
+         * @param shape The type ordinal and the mask of possible sectors of each point of interest, in turn.
+         * @return True if each point is of the expected type and could be in the expected sector.
+         */
+        private boolean matches(long[] shape) {
+            SectorBuilder sectorBuilder = settings().getSectorBuilder();
+            for (int i = 0; i < expectedPoints.size(); i++) {
+                ImmutablePair<PointType, Sector> expected = expectedPoints.get(i);
+                if (shape[2 * i] != expected.getLeft().ordinal()
+                    || (shape[2 * i + 1] & sectorBuilder.toMask(expected.getRight())) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return Statistics on the verdicts answered from previously seen points of interest.
+         */
+        CacheStats getVerdictCacheStats() {
+            return verdicts.stats();
+        }
+    }
+
+    /**
+     * Summarise the points of interest of a line by what an instance of this feature depends on.
+     * @param line The line.
+     * @return The type ordinal and the mask of possible sectors of each point of interest, in turn.
+     */
+    private long[] shapeOfPoints(Line line) {
+        List<PointOfInterest> points = line.getPointsOfInterest();
+        SectorClassifier classifier = settings().getSectorClassifier();
+        long[] shape = new long[points.size() * 2];
+        for (int i = 0; i < points.size(); i++) {
+            PointOfInterest point = points.get(i);
+            shape[2 * i] = point.getPointType().ordinal();
+            shape[2 * i + 1] = classifier.classifyAllMask(point.getX(), point.getY());
         }
+        return shape;
     }
 
     @Override
@@ -19,14 +19,16 @@ import org.isaacphysics.graphchecker.data.Point;
 import org.isaacphysics.graphchecker.settings.SettingsInterface;
 import org.isaacphysics.graphchecker.data.HumanNamedEnum;
 import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.features.internals.Cost;
 import org.isaacphysics.graphchecker.features.internals.LineFeature;
 import org.isaacphysics.graphchecker.geometry.Lines;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -38,6 +40,8 @@ import java.util.stream.Collectors;
  */
 public class SlopeFeature extends LineFeature<SlopeFeature.Instance, SlopeFeature.Settings> {
 
+    private final Function<Line, Map<Position, Slope>> slopesOfLine = this::slopesOfLine;
+
     /**
      * Create a slope feature with specified settings.
      * @param settings The settings.
@@ -72,26 +76,25 @@ public class SlopeFeature extends LineFeature<SlopeFeature.Instance, SlopeFeatur
     enum Position implements HumanNamedEnum {
         START {
             @Override
-            List<Point> selectPoints(List<Point> points, int size, int desired) {
-                return points.subList(0, desired);
+            int fromIndex(int size, int desired) {
+                return 0;
             }
         },
         END {
             @Override
-            List<Point> selectPoints(List<Point> points, int size, int desired) {
-                return points.subList(size - desired, size);
+            int fromIndex(int size, int desired) {
+                return size - desired;
             }
         };
 
         /**
-         * Select the points from this line that cover this position.
+         * Select the first of the points from a line that cover this position.
          *
-         * @param points The points from the line.
-         * @param size The length of points.
+         * @param size The number of points on the line.
          * @param desired The number of points to be taken.
-         * @return A subList of points.
+         * @return The index of the first point at this position.
          */
-        abstract List<Point> selectPoints(List<Point> points, int size, int desired);
+        abstract int fromIndex(int size, int desired);
     }
 
     /**
@@ -126,15 +129,16 @@ public class SlopeFeature extends LineFeature<SlopeFeature.Instance, SlopeFeatur
             this.expectedSlopes = expectedSlopes;
         }
 
+        @Override
+        public Cost getCost() {
+            return Cost.CHEAP;
+        }
+
         @Override
         public boolean test(Line line) {
+            Map<Position, Slope> actualSlopes = line.derive(slopesOfLine);
             return expectedSlopes.entrySet().stream()
-                .allMatch(entry -> {
-                    Position position = entry.getKey();
-                    Line lineToMeasure = lineAtPosition(line, position);
-                    Slope actualSlope = lineToSlope(lineToMeasure);
-                    return entry.getValue() == actualSlope;
-                });
+                .allMatch(entry -> entry.getValue() == actualSlopes.get(entry.getKey()));
         }
     }
 
@@ -156,13 +160,26 @@ public class SlopeFeature extends LineFeature<SlopeFeature.Instance, SlopeFeatur
 
     @Override
     public List<String> generate(Line expectedLine) {
-        return Collections.singletonList(Arrays.stream(Position.values())
-        .map(position -> ImmutablePair.of(position, lineToSlope(lineAtPosition(expectedLine, position))))
-        .filter(pair -> pair.getRight() != Slope.OTHER)
-        .map(pair -> pair.getLeft().humanName() + "=" + pair.getRight().humanName())
+        return Collections.singletonList(expectedLine.derive(slopesOfLine).entrySet().stream()
+        .filter(entry -> entry.getValue() != Slope.OTHER)
+        .map(entry -> entry.getKey().humanName() + "=" + entry.getValue().humanName())
         .collect(Collectors.joining(", ")));
     }
 
+    /**
+     * Measure the slope of a line at each position.
+     *
+     * @param line The line to measure.
+     * @return The slope at each position, in the order of the positions.
+     */
+    private Map<Position, Slope> slopesOfLine(Line line) {
+        Map<Position, Slope> slopes = new EnumMap<>(Position.class);
+        for (Position position : Position.values()) {
+            slopes.put(position, slopeAtPosition(line, position));
+        }
+        return Collections.unmodifiableMap(slopes);
+    }
+
     /**
      * Convert a line into a slope description.
      *
@@ -170,17 +187,26 @@ public class SlopeFeature extends LineFeature<SlopeFeature.Instance, SlopeFeatur
      * @return The slope of the line.
      */
     Slope lineToSlope(Line line) {
-        Point size = Lines.getSize(line);
+        return sizeToSlope(Lines.getSize(line));
+    }
 
+    /**
+     * Convert the size of a line into a slope description.
+     *
+     * @param size The size of the line, as given by Lines.getSize.
+     * @return The slope of the line.
+     */
+    private Slope sizeToSlope(Point size) {
         // Negative X is incorrect for our purposes, so force it to be positive.
-        size = new Point(Math.abs(size.getX()), size.getY());
+        double width = Math.abs(size.getX());
+        double height = size.getY();
 
-        double highIfFlat = size.getX() / size.getY();
+        double highIfFlat = width / height;
         if (Math.abs(highIfFlat) > settings().getSlopeThreshold()) {
             return Slope.FLAT;
         }
 
-        double highIfSteep = size.getY() / size.getX();
+        double highIfSteep = height / width;
         if (Math.abs(highIfSteep) > settings().getSlopeThreshold()) {
             if (highIfSteep > 0) {
                 return Slope.UP;
@@ -193,15 +219,15 @@ public class SlopeFeature extends LineFeature<SlopeFeature.Instance, SlopeFeatur
     }
 
     /**
-     * Take a section of a line at the start or end.
+     * Measure the slope of a section of a line at the start or end.
      * @param line The line.
-     * @param position The section of the line to return.
-     * @return A new line that just covers line at position.
+     * @param position The section of the line to measure.
+     * @return The slope of the line at position.
      */
-    private Line lineAtPosition(Line line, Position position) {
-        List<Point> points = line.getPoints();
-        int size = points.size();
+    private Slope slopeAtPosition(Line line, Position position) {
+        int size = line.size();
         int desired = Math.min(settings().getNumberOfPointsAtEnds(), size);
-        return new Line(position.selectPoints(points, size, desired), Collections.emptyList());
+        int fromIndex = position.fromIndex(size, desired);
+        return sizeToSlope(Lines.getSize(line, fromIndex, fromIndex + desired));
     }
 }
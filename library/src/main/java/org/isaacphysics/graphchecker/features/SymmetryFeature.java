@@ -21,12 +21,14 @@ import org.isaacphysics.graphchecker.data.Line;
 import org.isaacphysics.graphchecker.data.Point;
 import org.isaacphysics.graphchecker.data.PointOfInterest;
 import org.isaacphysics.graphchecker.data.PointType;
+import org.isaacphysics.graphchecker.features.internals.Cost;
 import org.isaacphysics.graphchecker.features.internals.LineFeature;
 import org.isaacphysics.graphchecker.geometry.Lines;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * An line feature which requires the line to have a specific symmetry.
@@ -52,6 +54,8 @@ import java.util.List;
  */
 public class SymmetryFeature extends LineFeature<SymmetryFeature.Instance, SymmetryFeature.Settings> {
 
+    private final Function<Line, SymmetryType> symmetryOfLine = this::calculateSymmetryOfLine;
+
     /**
      * Create a symmetry feature with specified settings.
      * @param settings The settings.
@@ -107,6 +111,11 @@ public class SymmetryFeature extends LineFeature<SymmetryFeature.Instance, Symme
             this.symmetryType = symmetryType;
         }
 
+        @Override
+        public Cost getCost() {
+            return Cost.MODERATE;
+        }
+
         @Override
         public boolean test(Line line) {
             return getSymmetryOfLine(line) == symmetryType;
@@ -130,12 +139,22 @@ public class SymmetryFeature extends LineFeature<SymmetryFeature.Instance, Symme
 
 
     /**
-     * Calculate the symmetry of a line.
+     * Get the symmetry of a line, calculating it the first time it is asked for.
      *
      * @param line The line to calculate.
      * @return The type of symmetry of this line.
      */
     SymmetryType getSymmetryOfLine(Line line) {
+        return line.derive(symmetryOfLine);
+    }
+
+    /**
+     * Calculate the symmetry of a line.
+     *
+     * @param line The line to calculate.
+     * @return The type of symmetry of this line.
+     */
+    private SymmetryType calculateSymmetryOfLine(Line line) {
         if (line.getPoints().isEmpty()) {
             return SymmetryType.NONE;
         }
@@ -152,18 +171,15 @@ public class SymmetryFeature extends LineFeature<SymmetryFeature.Instance, Symme
             points.add(points.size() / 2, virtualCenter);
         }
 
-        List<Line> subLines = Lines.splitOnPoints(line, points);
+        List<Point> sizes = Lines.getSizesOfSplit(line, points);
 
         boolean symmetric = true;
         boolean antisymmetric = true;
 
-        int size = subLines.size() / 2;
+        int size = sizes.size() / 2;
         for (int i = 0; i  < size; i++) {
-            Line left = subLines.get(size - i - 1);
-            Line right = subLines.get(size + i);
-
-            Point leftSize = Lines.getSize(left);
-            Point rightSize = Lines.getSize(right);
+            Point leftSize = sizes.get(size - i - 1);
+            Point rightSize = sizes.get(size + i);
 
             double xDifference = (rightSize.getX() - leftSize.getX()) / rightSize.getX();
             double yDifferenceOdd = (rightSize.getY() - leftSize.getY()) / rightSize.getY();
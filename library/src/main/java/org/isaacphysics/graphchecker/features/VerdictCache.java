@@ -0,0 +1,113 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.features;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.isaacphysics.graphchecker.metrics.MarkingMetrics;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A bounded, thread-safe cache of the verdicts of a feature instance, keyed by the shape of a line.
+ *
+ * A shape is a canonical summary of a line, such as its sector trace, that the verdict depends on and nothing else.
+ * Many answers to a question have the same shape, so once one of them has been tested the rest are answered from here.
+ * Every lookup is reported to the marking metrics as an access to MarkingMetrics.VERDICT_CACHE.
+ */
+final class VerdictCache {
+
+    /**
+     * The maximum number of shapes remembered by each feature instance.
+     */
+    static final int MAXIMUM_SIZE = 10000;
+
+    private final Cache<Shape, Boolean> verdicts = CacheBuilder.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .recordStats()
+        .build();
+
+    private final MarkingMetrics metrics;
+
+    /**
+     * Create an empty verdict cache.
+     * @param metrics The marking metrics to report hits and misses to.
+     */
+    VerdictCache(MarkingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Get the verdict for a shape, calculating and remembering it if this shape has not been seen before.
+     * @param shape The shape of a line; it must not be modified afterwards.
+     * @param verdict Calculates the verdict.
+     * @return The verdict.
+     */
+    boolean test(long[] shape, BooleanSupplier verdict) {
+        Shape key = new Shape(shape);
+        Boolean cached = verdicts.getIfPresent(key);
+        metrics.recordCacheAccess(MarkingMetrics.VERDICT_CACHE, cached != null);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = verdict.getAsBoolean();
+        verdicts.put(key, result);
+        return result;
+    }
+
+    /**
+     * @return Statistics on the hits and misses of this cache.
+     */
+    CacheStats stats() {
+        return verdicts.stats();
+    }
+
+    /**
+     * The key of a verdict: the contents of a shape array.
+     */
+    private static final class Shape {
+        private final long[] values;
+        private final int hash;
+
+        /**
+         * Create a key.
+         * @param values The shape.
+         */
+        private Shape(long[] values) {
+            this.values = values;
+            this.hash = Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Shape that = (Shape) o;
+            return hash == that.hash && Arrays.equals(values, that.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
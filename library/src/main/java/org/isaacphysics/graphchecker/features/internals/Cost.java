@@ -0,0 +1,40 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.features.internals;
+
+/**
+ * A rough estimate of how expensive it is to test a feature instance, used to test cheap instances first.
+ *
+ * The estimates are in increasing order of cost, so instances can be sorted by them.
+ */
+public enum Cost {
+    /**
+     * Looks at the input without looking at its points, such as counting the lines.
+     */
+    TRIVIAL,
+    /**
+     * Looks at a few points of each line, such as the ends or the points of interest.
+     */
+    CHEAP,
+    /**
+     * Looks at every point of each line.
+     */
+    MODERATE,
+    /**
+     * Looks at pairs of lines, or at combinations of lines and names.
+     */
+    EXPENSIVE
+}
@@ -68,12 +68,34 @@ abstract class Item<Instance extends Item.AbstractInstance, InputType, Generated
             return prefix(featureData);
         }
 
+        /**
+         * @return The tag of the feature this is an instance of, which names it in metrics.
+         */
+        public String getTag() {
+            return tag();
+        }
+
         /**
          * @return True if this feature is aware of which lines it is being applied to.
          */
         public boolean isLineAware() {
             return lineAware;
         }
+
+        /**
+         * @return True if the result of testing this instance depends on the names already given to lines, rather than
+         *         just on the input.
+         */
+        public boolean dependsOnContext() {
+            return false;
+        }
+
+        /**
+         * @return An estimate of how expensive this instance is to test.
+         */
+        public Cost getCost() {
+            return Cost.MODERATE;
+        }
     }
 
     /**
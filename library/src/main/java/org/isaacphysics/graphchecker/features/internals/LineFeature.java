@@ -17,6 +17,7 @@ package org.isaacphysics.graphchecker.features.internals;
 
 import org.isaacphysics.graphchecker.data.Input;
 import org.isaacphysics.graphchecker.features.Context;
+import org.isaacphysics.graphchecker.metrics.DecisionTrace;
 import org.isaacphysics.graphchecker.settings.SettingsInterface;
 import org.isaacphysics.graphchecker.data.Line;
 
@@ -109,13 +110,29 @@ public abstract class LineFeature<FeatureInstance extends LineFeature.Instance,
                 this.lineFeatureInstance = lineFeatureInstance;
             }
 
+            @Override
+            public String getTag() {
+                return lineFeatureInstance.getTag();
+            }
+
+            @Override
+            public Cost getCost() {
+                return lineFeatureInstance.getCost();
+            }
+
             @Override
             public Context test(Input input, Context context) {
-                if (input.getLines().stream().anyMatch(lineFeatureInstance)) {
-                    return context;
-                } else {
-                    return null;
+                List<Line> lines = input.getLines();
+                for (int i = 0; i < lines.size(); i++) {
+                    boolean passed = lineFeatureInstance.test(lines.get(i));
+                    if (DecisionTrace.isEnabled()) {
+                        DecisionTrace.current().line(lineFeatureInstance.getTag(), i, passed);
+                    }
+                    if (passed) {
+                        return context;
+                    }
                 }
+                return null;
             }
         }
     }
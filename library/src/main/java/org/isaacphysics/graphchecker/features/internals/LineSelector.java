@@ -155,6 +155,26 @@ public abstract class LineSelector<SelectorInstance extends LineSelector.Instanc
                 this.lineFeatureInstance = lineFeatureInstance;
             }
 
+            @Override
+            public String getTag() {
+                return lineFeatureInstance.getTag();
+            }
+
+            @Override
+            public boolean dependsOnContext() {
+                return selectorInstance.dependsOnContext();
+            }
+
+            @Override
+            public Cost getCost() {
+                Cost selectorCost = selectorInstance.getCost();
+                Cost lineFeatureCost = lineFeatureInstance.getCost();
+                if (selectorCost.compareTo(lineFeatureCost) > 0) {
+                    return selectorCost;
+                }
+                return lineFeatureCost;
+            }
+
             @Override
             public Context test(Input input, Context context) {
                 return selectorInstance.test(input, lineFeatureInstance, context);
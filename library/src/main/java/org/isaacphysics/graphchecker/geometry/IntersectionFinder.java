@@ -0,0 +1,402 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.data.Rect;
+import org.isaacphysics.graphchecker.metrics.MarkingBudget;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the crossings between two lines.
+ *
+ * Each line is split into chains of segments that are monotonic in x. For each pair of chains whose bounding boxes
+ * overlap, every segment of one chain is only tested against the run of segments of the other chain that overlaps it
+ * horizontally, which is found by binary search. This reports k crossings in O((n + k) log n) for typical sketches,
+ * rather than testing every pair of segments.
+ *
+ * Each segment tested is a step of the current MarkingBudget, as a pair of long, zig-zagging lines can still have
+ * O(n^2) pairs of segments that overlap.
+ */
+public class IntersectionFinder {
+
+    /**
+     * A crossing between a segment of line A and a segment of line B.
+     */
+    public static class Hit {
+        private final int segmentA;
+        private final int segmentB;
+        private final double t;
+        private final double u;
+        private final Point point;
+
+        /**
+         * Create a hit.
+         * @param segmentA The index of the segment of line A; it runs from point segmentA to point segmentA + 1.
+         * @param segmentB The index of the segment of line B; it runs from point segmentB to point segmentB + 1.
+         * @param t The parameter of the crossing along the segment of line A.
+         * @param u The parameter of the crossing along the segment of line B.
+         * @param point The point of the crossing.
+         */
+        Hit(int segmentA, int segmentB, double t, double u, Point point) {
+            this.segmentA = segmentA;
+            this.segmentB = segmentB;
+            this.t = t;
+            this.u = u;
+            this.point = point;
+        }
+
+        /**
+         * @return The index of the segment of line A.
+         */
+        public int getSegmentA() {
+            return segmentA;
+        }
+
+        /**
+         * @return The index of the segment of line B.
+         */
+        public int getSegmentB() {
+            return segmentB;
+        }
+
+        /**
+         * @return The parameter of the crossing along the segment of line A.
+         */
+        public double getT() {
+            return t;
+        }
+
+        /**
+         * @return The parameter of the crossing along the segment of line B.
+         */
+        public double getU() {
+            return u;
+        }
+
+        /**
+         * @return The point of the crossing, measured along the segment of line B.
+         */
+        public Point getPoint() {
+            return point;
+        }
+
+        @Override
+        public String toString() {
+            return point + " at A[" + segmentA + "]+" + t + ", B[" + segmentB + "]+" + u;
+        }
+    }
+
+    /**
+     * This is just a utility class.
+     */
+    private IntersectionFinder() {
+    }
+
+    /**
+     * Find all the crossings between the segments of two lines.
+     *
+     * A crossing through a point shared by two adjacent segments is reported once for each segment.
+     *
+     * The crossings are reported in bisection order: the order they would be found by splitting both lines in half,
+     * then each half in half, and so on, visiting the halves of line A before those of line B at each level. This is
+     * the order intersection specifications have always been generated and marked in, so it must not change.
+     *
+     * @param lineA The first line.
+     * @param lineB The second line.
+     * @return The crossings, in bisection order.
+     */
+    public static List<Hit> find(Line lineA, Line lineB) {
+        if (lineA.size() < 2 || lineB.size() < 2) {
+            return Collections.emptyList();
+        }
+
+        List<Chain> chainsA = Chain.split(lineA);
+        List<Chain> chainsB = Chain.split(lineB);
+
+        MarkingBudget budget = MarkingBudget.current();
+        List<Hit> hits = new ArrayList<>();
+        for (Chain chainA : chainsA) {
+            for (Chain chainB : chainsB) {
+                if (chainA.boundsIntersect(chainB)) {
+                    chainA.findHits(chainB, hits, budget);
+                }
+            }
+        }
+
+        hits.sort(new BisectionOrder(lineA.size(), lineB.size()));
+        return hits;
+    }
+
+    /**
+     * Orders hits by a simultaneous bisection of both lines.
+     *
+     * A line of n points is bisected into points [0, n/2] and [n/2, n), which share their middle point, until only a
+     * single segment is left.
+     */
+    private static final class BisectionOrder implements Comparator<Hit> {
+        private final int pointsA;
+        private final int pointsB;
+
+        /**
+         * Create the ordering for a pair of lines.
+         * @param pointsA The number of points in line A.
+         * @param pointsB The number of points in line B.
+         */
+        BisectionOrder(int pointsA, int pointsB) {
+            this.pointsA = pointsA;
+            this.pointsB = pointsB;
+        }
+
+        @Override
+        @SuppressWarnings("checkstyle:avoidInlineConditionals")
+        public int compare(Hit a, Hit b) {
+            int fromA = 0;
+            int toA = pointsA;
+            int fromB = 0;
+            int toB = pointsB;
+            while (toA - fromA > 2 || toB - fromB > 2) {
+                if (toA - fromA > 2) {
+                    int middle = fromA + (toA - fromA) / 2;
+                    boolean firstHalf = a.segmentA < middle;
+                    if (firstHalf != b.segmentA < middle) {
+                        return firstHalf ? -1 : 1;
+                    }
+                    if (firstHalf) {
+                        toA = middle + 1;
+                    } else {
+                        fromA = middle;
+                    }
+                }
+                if (toB - fromB > 2) {
+                    int middle = fromB + (toB - fromB) / 2;
+                    boolean firstHalf = a.segmentB < middle;
+                    if (firstHalf != b.segmentB < middle) {
+                        return firstHalf ? -1 : 1;
+                    }
+                    if (firstHalf) {
+                        toB = middle + 1;
+                    } else {
+                        fromB = middle;
+                    }
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * A run of segments of a line whose x co-ordinates never reverse direction.
+     */
+    private static final class Chain {
+        private final Line line;
+        private final int first;
+        private final int last;
+        private final boolean decreasing;
+        private final double minX;
+        private final double maxX;
+        private final double minY;
+        private final double maxY;
+
+        /**
+         * Create a chain.
+         * @param line The line.
+         * @param first The index of the first segment in the chain.
+         * @param last The index of the last segment in the chain, inclusive.
+         * @param decreasing Whether x decreases along the chain.
+         */
+        private Chain(Line line, int first, int last, boolean decreasing) {
+            this.line = line;
+            this.first = first;
+            this.last = last;
+            this.decreasing = decreasing;
+            Rect bounds = Lines.boundingRect(line, first, last + 2);
+            this.minX = bounds.getLeft();
+            this.maxX = bounds.getRight();
+            this.minY = bounds.getBottom();
+            this.maxY = bounds.getTop();
+        }
+
+        /**
+         * Split a line into maximal x-monotonic chains.
+         * @param line The line, with at least two points.
+         * @return The chains, in order along the line.
+         */
+        static List<Chain> split(Line line) {
+            List<Chain> chains = new ArrayList<>();
+            int segments = line.size() - 1;
+            int first = 0;
+            int direction = 0;
+            for (int i = 0; i < segments; i++) {
+                int segmentDirection = (int) Math.signum(line.getX(i + 1) - line.getX(i));
+                if (segmentDirection == 0 || segmentDirection == direction) {
+                    continue;
+                }
+                if (direction == 0) {
+                    direction = segmentDirection;
+                } else {
+                    chains.add(new Chain(line, first, i - 1, direction < 0));
+                    first = i;
+                    direction = segmentDirection;
+                }
+            }
+            chains.add(new Chain(line, first, segments - 1, direction < 0));
+            return chains;
+        }
+
+        /**
+         * @param other Another chain.
+         * @return True if the bounding boxes of the two chains intersect.
+         */
+        boolean boundsIntersect(Chain other) {
+            return minX <= other.maxX && maxX >= other.minX && maxY >= other.minY && minY <= other.maxY;
+        }
+
+        /**
+         * @return The number of segments in this chain.
+         */
+        int size() {
+            return last - first + 1;
+        }
+
+        /**
+         * Convert a position in this chain, counting in order of increasing x, into a segment index of the line.
+         * @param k The position in order of increasing x.
+         * @return The segment index.
+         */
+        @SuppressWarnings("checkstyle:avoidInlineConditionals")
+        int segment(int k) {
+            return decreasing ? last - k : first + k;
+        }
+
+        /**
+         * @param k The position in order of increasing x.
+         * @return The lowest x co-ordinate of that segment.
+         */
+        double segmentMinX(int k) {
+            int i = segment(k);
+            return Math.min(line.getX(i), line.getX(i + 1));
+        }
+
+        /**
+         * @param k The position in order of increasing x.
+         * @return The highest x co-ordinate of that segment.
+         */
+        double segmentMaxX(int k) {
+            int i = segment(k);
+            return Math.max(line.getX(i), line.getX(i + 1));
+        }
+
+        /**
+         * Find the first position whose segment reaches at least x.
+         * @param x The x co-ordinate.
+         * @return The position, or size() if there is none.
+         */
+        int firstReaching(double x) {
+            int lo = 0;
+            int hi = size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (segmentMaxX(mid) < x) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Test every segment of this chain against the segments of another chain that overlap it horizontally.
+         * @param other The other chain, from line B.
+         * @param hits Where to add any crossings found.
+         * @param budget The budget to take a step of for each segment of this chain.
+         */
+        void findHits(Chain other, List<Hit> hits, MarkingBudget budget) {
+            for (int i = first; i <= last; i++) {
+                budget.check();
+                double ax1 = line.getX(i);
+                double ay1 = line.getY(i);
+                double ax2 = line.getX(i + 1);
+                double ay2 = line.getY(i + 1);
+                double left = Math.min(ax1, ax2);
+                double right = Math.max(ax1, ax2);
+                double bottom = Math.min(ay1, ay2);
+                double top = Math.max(ay1, ay2);
+
+                for (int k = other.firstReaching(left); k < other.size() && other.segmentMinX(k) <= right; k++) {
+                    int j = other.segment(k);
+                    double bx1 = other.line.getX(j);
+                    double by1 = other.line.getY(j);
+                    double bx2 = other.line.getX(j + 1);
+                    double by2 = other.line.getY(j + 1);
+                    if (Math.max(by1, by2) < bottom || Math.min(by1, by2) > top) {
+                        continue;
+                    }
+                    Hit hit = crossing(i, ax1, ay1, ax2, ay2, j, bx1, by1, bx2, by2);
+                    if (hit != null) {
+                        hits.add(hit);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the crossing between two closed segments, using the same arithmetic as Segment.intersectionParam.
+     * @param i The index of the segment of line A.
+     * @param x1 The X co-ordinate of the start of the segment of line A.
+     * @param y1 The Y co-ordinate of the start of the segment of line A.
+     * @param x2 The X co-ordinate of the end of the segment of line A.
+     * @param y2 The Y co-ordinate of the end of the segment of line A.
+     * @param j The index of the segment of line B.
+     * @param x3 The X co-ordinate of the start of the segment of line B.
+     * @param y3 The Y co-ordinate of the start of the segment of line B.
+     * @param x4 The X co-ordinate of the end of the segment of line B.
+     * @param y4 The Y co-ordinate of the end of the segment of line B.
+     * @return The crossing, or null if the segments do not cross.
+     */
+    @SuppressWarnings("checkstyle:parameterNumber")
+    private static Hit crossing(int i, double x1, double y1, double x2, double y2,
+                                int j, double x3, double y3, double x4, double y4) {
+        double det = (x4 - x3) * (y1 - y2) - (x1 - x2) * (y4 - y3);
+
+        if (det == 0) {
+            // Lines are parallel, so don't intersect
+            return null;
+        }
+
+        double t = ((y3 - y4) * (x1 - x3) + (x4 - x3) * (y1 - y3)) / det;
+
+        if (t < 0 || t > 1) {
+            return null;
+        }
+
+        double u = ((y1 - y2) * (x1 - x3) + (x2 - x1) * (y1 - y3)) / det;
+
+        if (u < 0 || u > 1) {
+            return null;
+        }
+
+        Point point = new Point(x3 * (1 - u) + x4 * u, y3 * (1 - u) + y4 * u);
+        return new Hit(i, j, t, u, point);
+    }
+}
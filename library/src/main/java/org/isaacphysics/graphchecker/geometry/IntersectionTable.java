@@ -0,0 +1,134 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Point;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A lazily-filled table of the intersections between each pair of lines in one input.
+ *
+ * Each pair is only intersected and classified once, however many name-to-line mappings or intersection features ask
+ * for it. Intersections are not symmetric (the order of the points and the line they are measured along depend on
+ * which line comes first), so each ordered pair has its own entry.
+ *
+ * This is not thread-safe; use one table per marking.
+ */
+public class IntersectionTable {
+    private final List<Line> lines;
+    private final SectorClassifier classifier;
+    private final Entry[][] entries;
+
+    /**
+     * The intersections between an ordered pair of lines.
+     */
+    private static final class Entry {
+        private final List<Point> points;
+        private final List<Sector> sectors;
+
+        /**
+         * Create an entry.
+         * @param points The intersection points.
+         * @param sectors The sector each point is classified as.
+         */
+        private Entry(List<Point> points, List<Sector> sectors) {
+            this.points = points;
+            this.sectors = sectors;
+        }
+    }
+
+    /**
+     * Create an empty intersection table.
+     * @param lines The lines of the input; other lines can be asked about, but their intersections are not cached.
+     * @param classifier The classifier to find the sector of each intersection with.
+     */
+    public IntersectionTable(List<Line> lines, SectorClassifier classifier) {
+        this.lines = lines;
+        this.classifier = classifier;
+        this.entries = new Entry[lines.size()][lines.size()];
+    }
+
+    /**
+     * Get the intersections between two lines.
+     * @param lineA The first line.
+     * @param lineB The second line.
+     * @return The intersection points, as from Lines.findIntersections.
+     */
+    public List<Point> getIntersections(Line lineA, Line lineB) {
+        return getEntry(lineA, lineB).points;
+    }
+
+    /**
+     * Get the sectors of the intersections between two lines.
+     * @param lineA The first line.
+     * @param lineB The second line.
+     * @return The highest-priority sector of each intersection point, in the same order as the points.
+     */
+    public List<Sector> getIntersectionSectors(Line lineA, Line lineB) {
+        return getEntry(lineA, lineB).sectors;
+    }
+
+    /**
+     * Get or calculate the entry for a pair of lines.
+     * @param lineA The first line.
+     * @param lineB The second line.
+     * @return The entry.
+     */
+    private Entry getEntry(Line lineA, Line lineB) {
+        int a = indexOf(lineA);
+        int b = indexOf(lineB);
+        if (a == -1 || b == -1) {
+            return calculate(lineA, lineB);
+        }
+        Entry entry = entries[a][b];
+        if (entry == null) {
+            entry = calculate(lineA, lineB);
+            entries[a][b] = entry;
+        }
+        return entry;
+    }
+
+    /**
+     * Intersect and classify a pair of lines.
+     * @param lineA The first line.
+     * @param lineB The second line.
+     * @return The entry.
+     */
+    private Entry calculate(Line lineA, Line lineB) {
+        List<Point> points = Lines.findIntersections(lineA, lineB);
+        List<Sector> sectors = points.stream()
+            .map(classifier::classify)
+            .collect(Collectors.toList());
+        return new Entry(points, sectors);
+    }
+
+    /**
+     * Find a line in the input by identity.
+     * @param line The line.
+     * @return The index of the line, or -1 if it is not one of the lines of the input.
+     */
+    private int indexOf(Line line) {
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i) == line) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,389 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.PackedPoints;
+import org.isaacphysics.graphchecker.settings.SettingsInterface;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Removes redundant points from lines before they are marked, to make marking cheaper.
+ *
+ * Each stretch of a line whose points are all in the same sectors is simplified with Douglas-Peucker: a point is only
+ * kept if leaving it out would move the line by more than the tolerance. The tolerance is a proportion of the axis
+ * slop, so it scales with how precisely sectors are drawn. The points either side of a change of sectors are always
+ * kept, and a stretch that wanders out of its sectors between points is left alone, so jitter near an axis is kept
+ * exactly.
+ *
+ * Some features look at points by their position in the line rather than where they are, so the points at the ends of
+ * the line and in the middle are kept, and as many points are kept either side of the middle. Points of interest are
+ * kept as they are. So a point that repeats the one before it is dropped, unless it is one of these points or in a
+ * stretch that is left alone.
+ *
+ * As a final check, a simplified line is only used if it traces exactly the same sectors as the original line. The
+ * trace is compared without dropping any invalid combinations of sectors, which is the stricter check, because the
+ * trace with invalid combinations dropped is determined by the trace without. Other features, such as symmetry and
+ * intersections, see a line that is within the tolerance of the original rather than the same line, so simplification
+ * is off unless a tolerance is set.
+ */
+public class LineSimplifier {
+    private static final Logger log = LoggerFactory.getLogger(LineSimplifier.class);
+
+    private static final Map<Settings, LineSimplifier> LINE_SIMPLIFIER_CACHE = new ConcurrentHashMap<>();
+
+    private final double tolerance;
+    private final int keptEndPoints;
+    private final SectorClassifier classifier;
+    private final SectorTracer tracer;
+
+    private final LongAdder pointsIn = new LongAdder();
+    private final LongAdder pointsOut = new LongAdder();
+    private final LongAdder linesKept = new LongAdder();
+
+    /**
+     * Create a line simplifier with the specified settings.
+     * @param settings The settings.
+     */
+    LineSimplifier(Settings settings) {
+        this.tolerance = settings.getSimplificationTolerance() * settings.getAxisSlop();
+        this.keptEndPoints = settings.getSimplificationKeptEndPoints();
+        this.classifier = settings.getSectorClassifier();
+        this.tracer = new SectorTracer(classifier, new long[0]);
+    }
+
+    /**
+     * The settings for a LineSimplifier.
+     */
+    public interface Settings extends SettingsInterface, SectorClassifier.Settings {
+        /**
+         * @return How far a simplified line may stray from the original, as a proportion of the axis slop. Zero turns
+         *         simplification off.
+         */
+        default double getSimplificationTolerance() {
+            return 0;
+        }
+
+        /**
+         * @return The number of points at each end of a line that are never simplified away. This should be at least
+         *         the number of points slope is measured over, so slopes at the ends are unchanged.
+         */
+        int getSimplificationKeptEndPoints();
+
+        /**
+         * Factory method to get a LineSimplifier with these settings.
+         *
+         * LineSimplifier objects are cached by this method, so their statistics cover everything simplified with the
+         * same settings.
+         *
+         * @return A LineSimplifier with these settings.
+         */
+        default LineSimplifier getLineSimplifier() {
+            return LINE_SIMPLIFIER_CACHE.computeIfAbsent(this, LineSimplifier::new);
+        }
+    }
+
+    /**
+     * @return Whether this simplifier changes lines at all.
+     */
+    public boolean isEnabled() {
+        return tolerance > 0;
+    }
+
+    /**
+     * Simplify all of the lines in an input.
+     * @param input The input.
+     * @return An input with each line simplified.
+     */
+    public Input simplify(Input input) {
+        if (!isEnabled()) {
+            return input;
+        }
+        List<Line> lines = input.getLines().stream()
+            .map(this::simplify)
+            .collect(Collectors.toList());
+        return new Input(lines);
+    }
+
+    /**
+     * Simplify a line, keeping the sectors it passes through exactly the same.
+     * @param line The line.
+     * @return The simplified line, or the original line if simplifying it would change its sectors.
+     */
+    public Line simplify(Line line) {
+        int size = line.size();
+        if (!isEnabled()) {
+            return line;
+        }
+        if (size <= 2) {
+            return unsimplified(line);
+        }
+        for (int i = 0; i < size; i++) {
+            if (!Double.isFinite(line.getX(i)) || !Double.isFinite(line.getY(i))) {
+                return unsimplified(line);
+            }
+        }
+
+        boolean[] keep = new boolean[size];
+        int ends = Math.min(keptEndPoints, size);
+        Arrays.fill(keep, 0, ends, true);
+        Arrays.fill(keep, size - ends, size, true);
+        int middleLeft = (size - 1) / 2;
+        int middleRight = size / 2;
+        keep[middleLeft] = true;
+        keep[middleRight] = true;
+
+        // Split the line into stretches of points that are all in the same sectors, so the points either side of every
+        // change of sectors are kept, and simplify each stretch on its own.
+        int[] stretchStarts = new int[size];
+        long[] stretchMasks = new long[size];
+        int stretches = 0;
+        for (int i = 0; i < size; i++) {
+            long mask = classifier.classifyAllMask(line.getX(i), line.getY(i));
+            if (i == 0 || mask != stretchMasks[stretches - 1]) {
+                stretchStarts[stretches] = i;
+                stretchMasks[stretches] = mask;
+                stretches++;
+            }
+        }
+        for (int s = 0; s < stretches; s++) {
+            int first = stretchStarts[s];
+            int last = s + 1 < stretches ? stretchStarts[s + 1] - 1 : size - 1;
+            keep[first] = true;
+            keep[last] = true;
+            if (staysIn(line.subLine(first, last + 1), stretchMasks[s])) {
+                douglasPeucker(line, first, last, keep);
+            } else {
+                Arrays.fill(keep, first, last + 1, true);
+            }
+        }
+
+        // Keeping points only ever makes the line closer to the original, so keep going until the simplified line is
+        // balanced around the middle and no simplified stretch leaves its sectors.
+        boolean changed = true;
+        while (changed) {
+            balance(keep, middleLeft, middleRight);
+            changed = false;
+            for (int s = 0; s < stretches; s++) {
+                int first = stretchStarts[s];
+                int last = s + 1 < stretches ? stretchStarts[s + 1] - 1 : size - 1;
+                if (!staysIn(keptPoints(line, first, last, keep), stretchMasks[s])) {
+                    Arrays.fill(keep, first, last + 1, true);
+                    changed = true;
+                }
+            }
+        }
+
+        Line simplified = new Line(keptPoints(line, 0, size - 1, keep).getPoints(), line.getPointsOfInterest());
+
+        long[] originalTrace = tracer.trace(line).toArray();
+        if (!Arrays.equals(originalTrace, tracer.trace(simplified).toArray())) {
+            log.warn("Simplifying a line from " + size + " to " + simplified.size() + " points changed its sectors");
+            linesKept.increment();
+            return unsimplified(line);
+        }
+
+        pointsIn.add(size);
+        pointsOut.add(simplified.size());
+        return simplified;
+    }
+
+    /**
+     * Count a line that is left as it is in the statistics.
+     * @param line The line.
+     * @return The line.
+     */
+    private Line unsimplified(Line line) {
+        pointsIn.add(line.size());
+        pointsOut.add(line.size());
+        return line;
+    }
+
+    /**
+     * Keep extra points so that as many points are kept either side of the middle of the line.
+     *
+     * The extra points are the ones nearest the middle, so the middle points of the simplified line are the middle
+     * points of the original line.
+     *
+     * @param keep Whether to keep each point.
+     * @param middleLeft The index of the middle point, or the left of the two middle points.
+     * @param middleRight The index of the middle point, or the right of the two middle points.
+     */
+    private static void balance(boolean[] keep, int middleLeft, int middleRight) {
+        int left = 0;
+        for (int i = 0; i < middleLeft; i++) {
+            left += keep[i] ? 1 : 0;
+        }
+        int right = 0;
+        for (int i = middleRight + 1; i < keep.length; i++) {
+            right += keep[i] ? 1 : 0;
+        }
+        for (int i = middleLeft - 1; left < right; i--) {
+            if (!keep[i]) {
+                keep[i] = true;
+                left++;
+            }
+        }
+        for (int i = middleRight + 1; right < left; i++) {
+            if (!keep[i]) {
+                keep[i] = true;
+                right++;
+            }
+        }
+    }
+
+    /**
+     * Make a line of the kept points in part of a line.
+     * @param line The line.
+     * @param first The index of the first point of the part.
+     * @param last The index of the last point of the part.
+     * @param keep Whether to keep each point.
+     * @return A line of just the kept points, with no points of interest.
+     */
+    private static Line keptPoints(Line line, int first, int last, boolean[] keep) {
+        double[] xs = new double[last - first + 1];
+        double[] ys = new double[last - first + 1];
+        int kept = 0;
+        for (int i = first; i <= last; i++) {
+            if (keep[i]) {
+                xs[kept] = line.getX(i);
+                ys[kept] = line.getY(i);
+                kept++;
+            }
+        }
+        return new Line(PackedPoints.wrap(xs, ys, kept), Collections.emptyList());
+    }
+
+    /**
+     * Check whether a line never leaves a set of sectors, other than to be in no sectors at all.
+     * @param line The line.
+     * @param mask The mask of the sectors.
+     * @return Whether the line traces just that set of sectors.
+     */
+    private boolean staysIn(Line line, long mask) {
+        SectorTracer.Trace trace = tracer.trace(line);
+        return trace.size() == 1 && trace.get(0) == mask;
+    }
+
+    /**
+     * Choose which points to keep between two kept points with the Douglas-Peucker algorithm.
+     *
+     * The point furthest from the segment joining two kept points is kept if it is further away than the tolerance,
+     * and then the same is done either side of it.
+     *
+     * @param line The line.
+     * @param from The index of the first kept point.
+     * @param to The index of the last kept point.
+     * @param keep Whether to keep each point, to be filled in between the two kept points.
+     */
+    private void douglasPeucker(Line line, int from, int to, boolean[] keep) {
+        double toleranceSquared = tolerance * tolerance;
+
+        int[] stack = new int[2 * (to - from + 1)];
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = to;
+        while (top > 0) {
+            int last = stack[--top];
+            int first = stack[--top];
+            double x1 = line.getX(first);
+            double y1 = line.getY(first);
+            double x2 = line.getX(last);
+            double y2 = line.getY(last);
+
+            int furthest = -1;
+            double furthestDistance = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                double distance = distanceToSegmentSquared(line.getX(i), line.getY(i), x1, y1, x2, y2);
+                if (distance > furthestDistance) {
+                    furthest = i;
+                    furthestDistance = distance;
+                }
+            }
+
+            if (furthest != -1) {
+                keep[furthest] = true;
+                stack[top++] = first;
+                stack[top++] = furthest;
+                stack[top++] = furthest;
+                stack[top++] = last;
+            }
+        }
+    }
+
+    /**
+     * The squared distance from a point to a segment.
+     * @param x The X co-ordinate of the point.
+     * @param y The Y co-ordinate of the point.
+     * @param x1 The X co-ordinate of the start of the segment.
+     * @param y1 The Y co-ordinate of the start of the segment.
+     * @param x2 The X co-ordinate of the end of the segment.
+     * @param y2 The Y co-ordinate of the end of the segment.
+     * @return The squared distance.
+     */
+    private static double distanceToSegmentSquared(double x, double y, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        }
+        double nearestX = x1 + t * dx - x;
+        double nearestY = y1 + t * dy - y;
+        return nearestX * nearestX + nearestY * nearestY;
+    }
+
+    /**
+     * @return The number of points in the lines given to this simplifier.
+     */
+    public long getPointsIn() {
+        return pointsIn.sum();
+    }
+
+    /**
+     * @return The number of points in the lines returned by this simplifier.
+     */
+    public long getPointsOut() {
+        return pointsOut.sum();
+    }
+
+    /**
+     * @return The number of lines that were left alone because simplifying them would have changed their sectors.
+     */
+    public long getLinesKept() {
+        return linesKept.sum();
+    }
+
+    /**
+     * @return How many times fewer points there are after simplifying, for example 8.0 if one point in eight is kept.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    public double getReductionRatio() {
+        long out = getPointsOut();
+        return out == 0 ? 1.0 : (double) getPointsIn() / out;
+    }
+}
@@ -15,9 +15,7 @@
  */
 package org.isaacphysics.graphchecker.geometry;
 
-import com.google.common.collect.ImmutableList;
 import org.apache.commons.lang3.tuple.Pair;
-import org.isaacphysics.graphchecker.data.IntersectionParams;
 import org.isaacphysics.graphchecker.data.Point;
 import org.isaacphysics.graphchecker.data.Rect;
 import org.isaacphysics.graphchecker.data.Line;
@@ -28,12 +26,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Utility class of functions on Line objects.
  */
 public class Lines {
+    /**
+     * The longest range of points that boundingRect scans directly, rather than building a RangeBounds for the line.
+     */
+    private static final int SCAN_LIMIT = 16;
+
     /**
      * Split a line into a list of lines on the x-coordinates of the supplied points.
      *
@@ -63,6 +65,25 @@ public class Lines {
         return lines;
     }
 
+    /**
+     * Get the sizes of the lines from splitting a line on the x-coordinates of the supplied points.
+     *
+     * This is the same as getSize of each line from splitOnPoints, but when the line goes steadily from left to right
+     * the lines are measured in place, in a single pass, rather than clipped out.
+     *
+     * @param line The line to be split.
+     * @param splitPoints The points to split on.
+     * @return The width and height of the bounding box of each line.
+     */
+    public static List<Point> getSizesOfSplit(Line line, List<PointOfInterest> splitPoints) {
+        if (MonotoneSplit.isMonotonic(line) && splitPoints.stream().allMatch(point -> Double.isFinite(point.getX()))) {
+            return MonotoneSplit.getSizes(line, splitPoints);
+        }
+        return splitOnPoints(line, splitPoints).stream()
+            .map(Lines::getSize)
+            .collect(Collectors.toList());
+    }
+
     /**
      * Get the "size" of a Line.
      *
@@ -72,23 +93,42 @@ public class Lines {
      * @param line The line to be analysed.
      * @return The width and height of the bounding box.
      */
-    @SuppressWarnings({"checkstyle:avoidInlineConditionals"})
     public static Point getSize(Line line) {
-        if (line.getPoints().isEmpty()) {
+        return getSize(line, 0, line.size());
+    }
+
+    /**
+     * Get the "size" of a range of points on a Line, as if they were a line of their own.
+     *
+     * @param line The line to be analysed.
+     * @param fromIndex The index of the first point, inclusive.
+     * @param toIndex The index of the last point, exclusive.
+     * @return The width and height of the bounding box of those points.
+     */
+    public static Point getSize(Line line, int fromIndex, int toIndex) {
+        if (fromIndex == toIndex) {
             return new Point(0, 0);
         }
 
-        Rect bounds = boundingRect(line);
+        return getSize(boundingRect(line, fromIndex, toIndex), line.getX(fromIndex), line.getY(fromIndex));
+    }
 
+    /**
+     * Get the "size" of a line from its bounding box and its start.
+     *
+     * @param bounds The bounding box of the line.
+     * @param startX The X co-ordinate of the first point of the line.
+     * @param startY The Y co-ordinate of the first point of the line.
+     * @return The width and height of the bounding box, signed by the direction of the line.
+     */
+    @SuppressWarnings({"checkstyle:avoidInlineConditionals"})
+    static Point getSize(Rect bounds, double startX, double startY) {
         double centreX = (bounds.getRight() + bounds.getLeft()) / 2;
         double centreY = (bounds.getTop() + bounds.getBottom()) / 2;
 
         double diffX = bounds.getRight() - bounds.getLeft();
         double diffY = bounds.getTop() - bounds.getBottom();
 
-        double startX = line.getPoints().get(0).getX();
-        double startY = line.getPoints().get(0).getY();
-
         double x = startX < centreX ? diffX : -diffX;
         double y = startY < centreY ? diffY : -diffY;
 
@@ -152,112 +192,67 @@ public class Lines {
      * @return A pair of (minimum, maximum) X co-ordinates.
      */
     private static Pair<Double, Double> horizontalSpan(Line line) {
-        return Pair.of(line.getPoints().stream().mapToDouble(Point::getX).min().getAsDouble(),
-            line.getPoints().stream().mapToDouble(Point::getX).max().getAsDouble());
+        double min = line.getX(0);
+        double max = min;
+        for (int i = 1; i < line.size(); i++) {
+            min = Math.min(min, line.getX(i));
+            max = Math.max(max, line.getX(i));
+        }
+        return Pair.of(min, max);
     }
 
     /**
      * Find all the intersecting points between two lines.
+     *
+     * The points are in the order the old recursive bisection of both lines found them in, not the order they are
+     * reached along either line, as stored specifications depend on that order. Finding them takes steps of the
+     * current MarkingBudget.
+     *
      * @param lineA The first line.
      * @param lineB The second line.
      * @return The list of intersections between the lines.
      */
     public static List<Point> findIntersections(Line lineA, Line lineB) {
-        if (lineA.getPoints().size() == 2 && lineB.getPoints().size() == 2) {
-            Segment a = lineToSegment(lineA);
-            Segment b = lineToSegment(lineB);
-            IntersectionParams.IntersectionParam intersectionParam = a.intersectionParam(b);
-            if (intersectionParam != null) {
-                return Collections.singletonList(b.atParameter(intersectionParam.getT()));
-            } else {
-                return Collections.emptyList();
-            }
-        } else {
-            List<Line> splitA = splitInHalf(lineA);
-            List<Line> splitB = splitInHalf(lineB);
-
-            return splitA.stream()
-                .flatMap(subA ->
-                    splitB.stream()
-                        .flatMap(
-                            subB -> {
-                                if (boundingIntersects(subA, subB)) {
-                                    return findIntersections(subA, subB).stream();
-                                } else {
-                                    return Stream.empty();
-                                }
-                            }
-                        ))
-                .distinct()
-                .collect(Collectors.toList());
-        }
+        return IntersectionFinder.find(lineA, lineB).stream()
+            .map(IntersectionFinder.Hit::getPoint)
+            .distinct()
+            .collect(Collectors.toList());
     }
 
     /**
-     * Check if the bounding boxes of two lines intersects.
-     * @param subA The first line.
-     * @param subB The second line.
-     * @return True if their bounding boxes intersect.
-     */
-    private static boolean boundingIntersects(Line subA, Line subB) {
-        Rect boundingA = boundingRect(subA);
-        Rect boundingB = boundingRect(subB);
-
-        return boundingA.getLeft() <= boundingB.getRight()
-            && boundingA.getRight() >= boundingB.getLeft()
-            && boundingA.getTop() >= boundingB.getBottom()
-            && boundingA.getBottom() <= boundingB.getTop();
-    }
-
-    /**
-     * Get the bounding rectangle of a line.
+     * Get the bounding rectangle of a range of points on a line.
+     *
+     * Long ranges are answered from the line's RangeBounds, which is built the first time it is needed, so repeated
+     * queries against a line do not rescan its points.
+     *
      * @param line The line.
+     * @param fromIndex The index of the first point, inclusive.
+     * @param toIndex The index of the last point, exclusive.
      * @return The bounding rectangle.
      */
     @SuppressWarnings({"checkstyle:needBraces"})
-    private static Rect boundingRect(Line line) {
+    public static Rect boundingRect(Line line, int fromIndex, int toIndex) {
+        if (toIndex - fromIndex > SCAN_LIMIT) {
+            return RangeBounds.of(line).boundingRect(fromIndex, toIndex);
+        }
+
         double minX = Double.MAX_VALUE;
         double minY = Double.MAX_VALUE;
         double maxX = -Double.MAX_VALUE;
         double maxY = -Double.MAX_VALUE;
 
-        for (Point p : line.getPoints()) {
-            if (p.getX() < minX) minX = p.getX();
-            if (p.getX() > maxX) maxX = p.getX();
-            if (p.getY() < minY) minY = p.getY();
-            if (p.getY() > maxY) maxY = p.getY();
+        for (int i = fromIndex; i < toIndex; i++) {
+            double x = line.getX(i);
+            double y = line.getY(i);
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
         }
 
         return new Rect(minX, maxX, maxY, minY);
     }
 
-    /**
-     * Split a line in half, discarding any points of interest. If the line only has two points, it is not split.
-     * @param line The line to split.
-     * @return A list containing two new lines that share a point, or one line of just two points.
-     */
-    private static List<Line> splitInHalf(Line line) {
-        List<Point> points = line.getPoints();
-        if (points.size() == 2) {
-            return Collections.singletonList(line);
-        }
-        int half = points.size() / 2;
-        return ImmutableList.of(
-            new Line(points.subList(0, half + 1), Collections.emptyList()),
-            new Line(points.subList(half, points.size()), Collections.emptyList())
-        );
-    }
-
-    /**
-     * Convert a line of two points to a closed segment.
-     * @param line The line.
-     * @return A segment representing the first part of that line.
-     */
-    private static Segment lineToSegment(Line line) {
-        assert line.getPoints().size() == 2;
-        return Segment.closed(line.getPoints().get(0), line.getPoints().get(1));
-    }
-
     /**
      * Find the centre point of a line (averaging the middle two points if the line has an even number of points).
      * @param points The list of points.
@@ -0,0 +1,314 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.data.IntersectionParams;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.data.PointOfInterest;
+import org.isaacphysics.graphchecker.data.Rect;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the parts of a line split on some x co-ordinates, as Lines.splitOnPoints would split it, without building
+ * them, for lines whose x co-ordinates strictly increase along them.
+ *
+ * Clipping such a line against a vertical half-plane keeps every segment wholly inside and drops every segment wholly
+ * outside, so only the segments next to the split need to be clipped exactly as Segment.clip would. The runs of points
+ * in between are measured with Lines.boundingRect, and each split finds its position by binary search, so splitting on
+ * every point of interest is linear in the length of the line rather than proportional to the product.
+ *
+ * The sizes are identical to those of the clipped lines, although repeated points are not removed along the way.
+ */
+final class MonotoneSplit {
+    private static final Point UP = new Point(0, 1);
+
+    private final Line line;
+    private final int size;
+
+    // The part of the line that has not been split off yet is the prefix points, then the points of line from next.
+    private Points prefix = new Points();
+    private int next;
+
+    /**
+     * Create a split of a line.
+     * @param line The line, which must be monotonic.
+     */
+    private MonotoneSplit(Line line) {
+        this.line = line;
+        this.size = line.size();
+    }
+
+    /**
+     * Check if a line can be split by this class.
+     * @param line The line.
+     * @return True if the line has finite co-ordinates and its x co-ordinates strictly increase along it.
+     */
+    static boolean isMonotonic(Line line) {
+        for (int i = 0; i < line.size(); i++) {
+            if (!Double.isFinite(line.getX(i)) || !Double.isFinite(line.getY(i))) {
+                return false;
+            }
+            if (i > 0 && !(line.getX(i - 1) < line.getX(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the sizes of the parts of a line split on the x co-ordinates of some points.
+     * @param line The line to be split, which must be monotonic.
+     * @param splitPoints The points to split on, which must have finite x co-ordinates.
+     * @return The size of each part, as Lines.getSize would give for each line from Lines.splitOnPoints.
+     */
+    static List<Point> getSizes(Line line, List<PointOfInterest> splitPoints) {
+        MonotoneSplit split = new MonotoneSplit(line);
+        List<Point> sizes = new ArrayList<>(splitPoints.size() + 1);
+        for (PointOfInterest point : splitPoints) {
+            sizes.add(split.splitOff(point.getX()));
+        }
+        sizes.add(split.measureRemainder());
+        return sizes;
+    }
+
+    /**
+     * Split the part of the remainder to the left of x off the remainder.
+     * @param x The x co-ordinate to split on.
+     * @return The size of the part to the left.
+     */
+    @SuppressWarnings({"checkstyle:avoidInlineConditionals"})
+    private Point splitOff(double x) {
+        Segment left = Segment.openBothEnds(new Point(x, 0), UP, Side.LEFT);
+        Measure measure = new Measure();
+        clipPrefix(left, measure);
+        int firstOutside = firstIndex(x, false);
+        if (firstOutside >= next + 2) {
+            measure.addRange(line, next, firstOutside);
+        }
+        if (firstOutside >= next + 1 && firstOutside < size) {
+            clipSegment(left, firstOutside, measure);
+        }
+
+        Segment right = Segment.openBothEnds(new Point(x, 0), UP, Side.RIGHT);
+        Points remainder = new Points();
+        clipPrefix(right, remainder);
+        int firstInside = firstIndex(x, true);
+        for (int i = next + 1; i <= firstInside && i < size; i++) {
+            clipSegment(right, i, remainder);
+        }
+        prefix = remainder;
+        next = firstInside + 1 < size ? firstInside : size;
+
+        return measure.getSize();
+    }
+
+    /**
+     * @return The size of the part of the line that was not split off.
+     */
+    private Point measureRemainder() {
+        Measure measure = new Measure();
+        for (int i = 0; i < prefix.size; i++) {
+            measure.add(prefix.xs[i], prefix.ys[i]);
+        }
+        if (next < size) {
+            measure.addRange(line, next, size);
+        }
+        return measure.getSize();
+    }
+
+    /**
+     * Find the first point of the remainder, after the prefix, on the right of (or also on) an x co-ordinate.
+     * @param x The x co-ordinate.
+     * @param inclusive Whether points on x count.
+     * @return The index of that point, or the size of the line if there is none.
+     */
+    private int firstIndex(double x, boolean inclusive) {
+        int low = next;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            double middleX = line.getX(middle);
+            if (middleX > x || inclusive && middleX == x) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Clip the segments of the remainder that start in the prefix against a half-plane.
+     * @param halfPlane The half-plane.
+     * @param sink Receives the points the clipped line would have.
+     */
+    private void clipPrefix(Segment halfPlane, Sink sink) {
+        for (int i = 1; i < prefix.size; i++) {
+            clip(halfPlane, prefix.xs[i - 1], prefix.ys[i - 1], prefix.xs[i], prefix.ys[i], sink);
+        }
+        if (prefix.size > 0 && next < size) {
+            int last = prefix.size - 1;
+            clip(halfPlane, prefix.xs[last], prefix.ys[last], line.getX(next), line.getY(next), sink);
+        }
+    }
+
+    /**
+     * Clip the segment of the line ending at a point against a half-plane.
+     * @param halfPlane The half-plane.
+     * @param index The index of the end of the segment.
+     * @param sink Receives the points the clipped line would have.
+     */
+    private void clipSegment(Segment halfPlane, int index, Sink sink) {
+        clip(halfPlane, line.getX(index - 1), line.getY(index - 1), line.getX(index), line.getY(index), sink);
+    }
+
+    /**
+     * Clip a segment against a half-plane, in exactly the same way as Segment.clip.
+     * @param halfPlane The half-plane.
+     * @param x1 The X co-ordinate of the start of the segment.
+     * @param y1 The Y co-ordinate of the start of the segment.
+     * @param x2 The X co-ordinate of the end of the segment.
+     * @param y2 The Y co-ordinate of the end of the segment.
+     * @param sink Receives the points the clipped line would have.
+     */
+    private static void clip(Segment halfPlane, double x1, double y1, double x2, double y2, Sink sink) {
+        double startX = x1;
+        double startY = y1;
+        double endX = x2;
+        double endY = y2;
+        IntersectionParams.IntersectionParam intersectionParam = halfPlane.intersectionParam(x1, y1, x2, y2);
+        if (intersectionParam == null) {
+            if (!halfPlane.inside(x1, y1)) {
+                return;
+            }
+        } else {
+            double t = intersectionParam.getT();
+            double px = x1 * (1 - t) + x2 * t;
+            double py = y1 * (1 - t) + y2 * t;
+            if (intersectionParam.isInside()) {
+                if (!halfPlane.inside(x1, y1)) {
+                    startX = px;
+                    startY = py;
+                }
+            } else {
+                endX = px;
+                endY = py;
+            }
+        }
+        sink.add(startX, startY);
+        sink.add(endX, endY);
+    }
+
+    /**
+     * Something that receives the points of a clipped line.
+     */
+    private interface Sink {
+        /**
+         * Receive the next point.
+         * @param x The X co-ordinate of the point.
+         * @param y The Y co-ordinate of the point.
+         */
+        void add(double x, double y);
+    }
+
+    /**
+     * A growable list of points.
+     */
+    private static final class Points implements Sink {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private double[] xs = new double[INITIAL_CAPACITY];
+        private double[] ys = new double[INITIAL_CAPACITY];
+        private int size;
+
+        @Override
+        public void add(double x, double y) {
+            if (size == xs.length) {
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+            }
+            xs[size] = x;
+            ys[size] = y;
+            size++;
+        }
+    }
+
+    /**
+     * The size of the points of a line, as they are added in order.
+     */
+    private static final class Measure implements Sink {
+        private boolean empty = true;
+        private double startX;
+        private double startY;
+        private double minX = Double.MAX_VALUE;
+        private double minY = Double.MAX_VALUE;
+        private double maxX = -Double.MAX_VALUE;
+        private double maxY = -Double.MAX_VALUE;
+
+        @Override
+        @SuppressWarnings({"checkstyle:needBraces"})
+        public void add(double x, double y) {
+            start(x, y);
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+
+        /**
+         * Add a range of points from a line.
+         * @param line The line.
+         * @param fromIndex The index of the first point, inclusive.
+         * @param toIndex The index of the last point, exclusive.
+         */
+        @SuppressWarnings({"checkstyle:needBraces"})
+        void addRange(Line line, int fromIndex, int toIndex) {
+            start(line.getX(fromIndex), line.getY(fromIndex));
+            Rect bounds = Lines.boundingRect(line, fromIndex, toIndex);
+            if (bounds.getLeft() < minX) minX = bounds.getLeft();
+            if (bounds.getRight() > maxX) maxX = bounds.getRight();
+            if (bounds.getBottom() < minY) minY = bounds.getBottom();
+            if (bounds.getTop() > maxY) maxY = bounds.getTop();
+        }
+
+        /**
+         * Remember the first point added.
+         * @param x The X co-ordinate of a point being added.
+         * @param y The Y co-ordinate of a point being added.
+         */
+        private void start(double x, double y) {
+            if (empty) {
+                startX = x;
+                startY = y;
+                empty = false;
+            }
+        }
+
+        /**
+         * @return The size of the points added, as Lines.getSize would give.
+         */
+        Point getSize() {
+            if (empty) {
+                return new Point(0, 0);
+            }
+            return Lines.getSize(new Rect(minX, maxX, maxY, minY), startX, startY);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Rect;
+
+import java.util.function.Function;
+
+/**
+ * An index over the co-ordinates of a line that finds the bounding rectangle of any range of its points in O(log n).
+ *
+ * This is a segment tree over the minimum and maximum X and Y of the points. The results are exactly those of scanning
+ * the range: points with NaN co-ordinates are ignored and an empty range has an inside-out rectangle.
+ */
+public final class RangeBounds {
+
+    private static final Function<Line, RangeBounds> INDEX = RangeBounds::new;
+
+    private final int size;
+    private final double[] minX;
+    private final double[] maxX;
+    private final double[] minY;
+    private final double[] maxY;
+
+    /**
+     * Build the index of a line.
+     * @param line The line.
+     */
+    @SuppressWarnings({"checkstyle:avoidInlineConditionals"})
+    private RangeBounds(Line line) {
+        size = line.size();
+        minX = new double[2 * size];
+        maxX = new double[2 * size];
+        minY = new double[2 * size];
+        maxY = new double[2 * size];
+
+        // The leaves are at [size, 2 * size), and each node above them covers its two children.
+        for (int i = 0; i < size; i++) {
+            double x = line.getX(i);
+            double y = line.getY(i);
+            minX[size + i] = x < Double.MAX_VALUE ? x : Double.MAX_VALUE;
+            maxX[size + i] = x > -Double.MAX_VALUE ? x : -Double.MAX_VALUE;
+            minY[size + i] = y < Double.MAX_VALUE ? y : Double.MAX_VALUE;
+            maxY[size + i] = y > -Double.MAX_VALUE ? y : -Double.MAX_VALUE;
+        }
+        for (int node = size - 1; node > 0; node--) {
+            int left = 2 * node;
+            int right = left + 1;
+            minX[node] = min(minX[left], minX[right]);
+            maxX[node] = max(maxX[left], maxX[right]);
+            minY[node] = min(minY[left], minY[right]);
+            maxY[node] = max(maxY[left], maxY[right]);
+        }
+    }
+
+    /**
+     * Get the index of a line, building it the first time it is asked for.
+     * @param line The line.
+     * @return The index of that line.
+     */
+    public static RangeBounds of(Line line) {
+        return line.derive(INDEX);
+    }
+
+    /**
+     * Get the bounding rectangle of a range of points.
+     * @param fromIndex The index of the first point, inclusive.
+     * @param toIndex The index of the last point, exclusive.
+     * @return The bounding rectangle.
+     */
+    public Rect boundingRect(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range [" + fromIndex + ", " + toIndex + ") of " + size);
+        }
+
+        // Accumulate the left and right edges of the range separately so that ties go to the earliest point.
+        double leftMinX = Double.MAX_VALUE;
+        double leftMaxX = -Double.MAX_VALUE;
+        double leftMinY = Double.MAX_VALUE;
+        double leftMaxY = -Double.MAX_VALUE;
+        double rightMinX = Double.MAX_VALUE;
+        double rightMaxX = -Double.MAX_VALUE;
+        double rightMinY = Double.MAX_VALUE;
+        double rightMaxY = -Double.MAX_VALUE;
+
+        for (int from = fromIndex + size, to = toIndex + size; from < to; from /= 2, to /= 2) {
+            if ((from & 1) == 1) {
+                leftMinX = min(leftMinX, minX[from]);
+                leftMaxX = max(leftMaxX, maxX[from]);
+                leftMinY = min(leftMinY, minY[from]);
+                leftMaxY = max(leftMaxY, maxY[from]);
+                from++;
+            }
+            if ((to & 1) == 1) {
+                to--;
+                rightMinX = min(minX[to], rightMinX);
+                rightMaxX = max(maxX[to], rightMaxX);
+                rightMinY = min(minY[to], rightMinY);
+                rightMaxY = max(maxY[to], rightMaxY);
+            }
+        }
+
+        return new Rect(min(leftMinX, rightMinX), max(leftMaxX, rightMaxX),
+            max(leftMaxY, rightMaxY), min(leftMinY, rightMinY));
+    }
+
+    /**
+     * The lower of two values, preferring the earlier one as a scan would.
+     * @param earlier The value from earlier in the line.
+     * @param later The value from later in the line.
+     * @return The minimum.
+     */
+    @SuppressWarnings({"checkstyle:avoidInlineConditionals"})
+    private static double min(double earlier, double later) {
+        return later < earlier ? later : earlier;
+    }
+
+    /**
+     * The higher of two values, preferring the earlier one as a scan would.
+     * @param earlier The value from earlier in the line.
+     * @param later The value from later in the line.
+     * @return The maximum.
+     */
+    @SuppressWarnings({"checkstyle:avoidInlineConditionals"})
+    private static double max(double earlier, double later) {
+        return later > earlier ? later : earlier;
+    }
+}
@@ -20,6 +20,8 @@ import org.isaacphysics.graphchecker.data.IntersectionParams;
 import org.isaacphysics.graphchecker.data.Point;
 import org.isaacphysics.graphchecker.data.Line;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -31,6 +33,7 @@ public class Sector {
 
     private final String name;
     private final List<Segment> segments;
+    private final int index;
 
     /**
      * Create a sector.
@@ -42,8 +45,36 @@ public class Sector {
      * @param segments The segments defining the boundaries of this sector.
      */
     Sector(String name, List<Segment> segments) {
+        this(name, segments, -1);
+    }
+
+    /**
+     * Create a sector with an index within its SectorBuilder.
+     *
+     * @param name The name of the sector.
+     * @param segments The segments defining the boundaries of this sector.
+     * @param index The index of this sector within its SectorBuilder.
+     */
+    Sector(String name, List<Segment> segments, int index) {
         this.name = name;
         this.segments = segments;
+        this.index = index;
+    }
+
+    /**
+     * Get the index of this sector within the SectorBuilder that made it, which is its bit in a sector mask.
+     *
+     * @return The index, or -1 if this sector was not made by a SectorBuilder.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return The segments defining the boundaries of this sector.
+     */
+    List<Segment> getSegments() {
+        return segments;
     }
 
     @Override
@@ -57,16 +88,39 @@ public class Sector {
      * @return True if the point is inside this sector.
      */
     public boolean contains(Point p) {
-        return this.segments.stream().allMatch(segment -> segment.inside(p));
+        return contains(p.getX(), p.getY());
     }
 
     /**
-     * Does this sector intersect the segment?
-     * @param s The segment to test.
+     * Does this sector contain the point (x, y)?
+     * @param x The X co-ordinate of the point.
+     * @param y The Y co-ordinate of the point.
+     * @return True if the point is inside this sector.
+     */
+    public boolean contains(double x, double y) {
+        for (Segment segment : this.segments) {
+            if (!segment.inside(x, y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Does this sector intersect the closed segment from (x1, y1) to (x2, y2)?
+     * @param x1 The X co-ordinate of the start of the segment.
+     * @param y1 The Y co-ordinate of the start of the segment.
+     * @param x2 The X co-ordinate of the end of the segment.
+     * @param y2 The Y co-ordinate of the end of the segment.
      * @return True if the segment intersects with the boundary of this sector.
      */
-    private boolean intersects(Segment s) {
-        return this.segments.stream().anyMatch(segment -> segment.intersects(s));
+    private boolean intersects(double x1, double y1, double x2, double y2) {
+        for (Segment segment : this.segments) {
+            if (segment.intersectionParam(x1, y1, x2, y2) != null) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -78,17 +132,15 @@ public class Sector {
         boolean allInside = true;
         boolean someInside = false;
         boolean anyIntersections = false;
-        Point lastPoint = null;
-        for (Point point : line) {
-            if (contains(point)) {
+        for (int i = 0; i < line.size(); i++) {
+            if (contains(line.getX(i), line.getY(i))) {
                 someInside = true;
             } else {
                 allInside = false;
             }
-            if (lastPoint != null) {
-                anyIntersections |= intersects(Segment.closed(lastPoint, point));
+            if (i > 0) {
+                anyIntersections |= intersects(line.getX(i - 1), line.getY(i - 1), line.getX(i), line.getY(i));
             }
-            lastPoint = point;
         }
         if (allInside && !anyIntersections) {
             return Intersection.INSIDE;
@@ -113,6 +165,29 @@ public class Sector {
                 .collect(Collectors.toList()));
     }
 
+    /**
+     * Find the parameters of all intersections between the closed segment from one point of a line to the next and
+     * this sector.
+     * @param line The line.
+     * @param index The index of the start of the segment; the segment ends at index + 1.
+     * @return The parameters of each intersection.
+     */
+    public IntersectionParams intersectionParams(Line line, int index) {
+        double x1 = line.getX(index);
+        double y1 = line.getY(index);
+        double x2 = line.getX(index + 1);
+        double y2 = line.getY(index + 1);
+        List<IntersectionParams.IntersectionParam> params = new ArrayList<>(this.segments.size());
+        for (Segment segment : this.segments) {
+            IntersectionParams.IntersectionParam param = segment.intersectionParam(x1, y1, x2, y2);
+            if (param != null) {
+                params.add(param);
+            }
+        }
+        Collections.sort(params);
+        return new IntersectionParams(params);
+    }
+
     /**
      * Create a line which is clipped to be only inside this sector.
      *
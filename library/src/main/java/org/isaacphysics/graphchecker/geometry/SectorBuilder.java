@@ -15,17 +15,21 @@
  */
 package org.isaacphysics.graphchecker.geometry;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Streams;
 import org.isaacphysics.graphchecker.data.Point;
 import org.isaacphysics.graphchecker.settings.SettingsInterface;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -42,9 +46,31 @@ public class SectorBuilder {
      */
     public SectorBuilder(Settings settings) {
         this.settings = settings;
+
+        // Build every sector up front so that this builder is immutable, and each sector has a stable index
+        ImmutableList.Builder<Sector> sectorsBuilder = ImmutableList.builder();
+        ImmutableMap.Builder<String, Sector> byNameBuilder = ImmutableMap.builder();
+        int index = 0;
+        for (Map.Entry<String, Function<SectorBuilder, List<Segment>>> shape : SECTOR_SHAPES.entrySet()) {
+            Sector sector = new Sector(shape.getKey(), shape.getValue().apply(this), index++);
+            sectorsBuilder.add(sector);
+            byNameBuilder.put(shape.getKey(), sector);
+        }
+        this.sectors = sectorsBuilder.build();
+        this.sectorsByName = byNameBuilder.build();
+        this.defaultOrderedSectors = ImmutableList.of(
+            byName(ORIGIN),
+            byName(POSITIVE_X_AXIS),
+            byName(POSITIVE_Y_AXIS),
+            byName(NEGATIVE_X_AXIS),
+            byName(NEGATIVE_Y_AXIS),
+            byName(TOP_RIGHT),
+            byName(TOP_LEFT),
+            byName(BOTTOM_LEFT),
+            byName(BOTTOM_RIGHT));
     }
 
-    private static final Map<Settings, SectorBuilder> SECTOR_BUILDER_CACHE = new HashMap<>();
+    private static final Map<Settings, SectorBuilder> SECTOR_BUILDER_CACHE = new ConcurrentHashMap<>();
 
     /**
      * The type of settings for SectorBuilder.
@@ -91,16 +117,71 @@ public class SectorBuilder {
      * @return The default ordered list of sectors.
      */
     public List<Sector> getDefaultOrderedSectors() {
-        return Arrays.asList(
-            byName(ORIGIN),
-            byName(POSITIVE_X_AXIS),
-            byName(POSITIVE_Y_AXIS),
-            byName(NEGATIVE_X_AXIS),
-            byName(NEGATIVE_Y_AXIS),
-            byName(TOP_RIGHT),
-            byName(TOP_LEFT),
-            byName(BOTTOM_LEFT),
-            byName(BOTTOM_RIGHT));
+        return defaultOrderedSectors;
+    }
+
+    /**
+     * @return Every sector this builder can make, in index order.
+     */
+    public List<Sector> getSectors() {
+        return sectors;
+    }
+
+    /**
+     * Get the sector with a particular index.
+     * @param index The index of the sector.
+     * @return The sector.
+     */
+    public Sector byIndex(int index) {
+        return sectors.get(index);
+    }
+
+    /**
+     * Convert a collection of this builder's sectors into a sector mask.
+     * @param sectorsInMask The sectors.
+     * @return A mask with the bit of each sector set.
+     */
+    public long toMask(Collection<Sector> sectorsInMask) {
+        long mask = 0;
+        for (Sector sector : sectorsInMask) {
+            mask |= toMask(sector);
+        }
+        return mask;
+    }
+
+    /**
+     * Convert one of this builder's sectors into a sector mask.
+     * @param sector The sector.
+     * @return A mask with just the bit of that sector set.
+     */
+    public long toMask(Sector sector) {
+        if (!made(sector)) {
+            throw new IllegalArgumentException(sector + " was not made by this SectorBuilder");
+        }
+        return 1L << sector.getIndex();
+    }
+
+    /**
+     * Check whether a sector is one of this builder's sectors.
+     * @param sector The sector.
+     * @return True if this builder made the sector.
+     */
+    public boolean made(Sector sector) {
+        int index = sector.getIndex();
+        return index >= 0 && index < sectors.size() && sectors.get(index) == sector;
+    }
+
+    /**
+     * Convert a sector mask back into a set of sectors.
+     * @param mask The sector mask.
+     * @return The set of sectors with their bits set in the mask, in index order.
+     */
+    public Set<Sector> fromMask(long mask) {
+        ImmutableSet.Builder<Sector> result = ImmutableSet.builder();
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            result.add(sectors.get(Long.numberOfTrailingZeros(remaining)));
+        }
+        return result.build();
     }
 
     public static final String ORIGIN = "origin";
@@ -134,8 +215,9 @@ public class SectorBuilder {
      * @return The sector.
      */
     public Sector byName(String s) {
-        if (SECTOR_SHAPES.containsKey(s)) {
-            return sectorCache.computeIfAbsent(s, name -> new Sector(name, SECTOR_SHAPES.get(name).apply(this)));
+        Sector sector = sectorsByName.get(s);
+        if (sector != null) {
+            return sector;
         }
         throw new IllegalArgumentException(s + " is not a valid sector");
     }
@@ -162,8 +244,9 @@ public class SectorBuilder {
             .map(String::trim));
     }
 
-
-    private final Map<String, Sector> sectorCache = new HashMap<>();
+    private final ImmutableList<Sector> sectors;
+    private final ImmutableMap<String, Sector> sectorsByName;
+    private final ImmutableList<Sector> defaultOrderedSectors;
 
     /**
      * Helper method to create a quadrant sector.
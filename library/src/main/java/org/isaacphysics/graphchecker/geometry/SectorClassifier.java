@@ -15,14 +15,20 @@
  */
 package org.isaacphysics.graphchecker.geometry;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import org.isaacphysics.graphchecker.data.Point;
 import org.isaacphysics.graphchecker.settings.SettingsInterface;
 
-import java.util.HashMap;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Utility to classify sectors according to the ordered sector list provided by the settings.
@@ -31,6 +37,27 @@ import java.util.stream.Collectors;
  */
 public class SectorClassifier {
     private final Settings settings;
+    private final SectorBuilder sectorBuilder;
+    private final List<Sector> orderedSectors;
+    private final long orderedMask;
+
+    // The sector of each bit in this classifier's masks: the SectorBuilder's sectors at their own indices, followed by
+    // any ordered sectors the SectorBuilder did not make, such as those of another settings object.
+    private final List<Sector> sectorsByBit;
+    private final Map<Sector, Long> otherSectorMasks;
+    private final long[] orderedSectorMasks;
+
+    // The boundary segments of every ordered sector, flattened into arrays so classification doesn't chase pointers.
+    // Each segment is stored as its start point and its direction (end minus start), as Segment.inside calculates it.
+    private final double[] startX;
+    private final double[] startY;
+    private final double[] directionX;
+    private final double[] directionY;
+    private final double[] directionDot;
+    private final boolean[] insideIsLeft;
+    private final boolean[] closedAtStart;
+    private final boolean[] closedAtEnd;
+    private final long[] segmentSectorMask;
 
     /**
      * Constructor which stores settings.
@@ -38,9 +65,55 @@ public class SectorClassifier {
      */
     SectorClassifier(Settings settings) {
         this.settings = settings;
+        this.sectorBuilder = settings.getSectorBuilder();
+        this.orderedSectors = ImmutableList.copyOf(settings.getOrderedSectors());
+
+        List<Sector> bits = new ArrayList<>(sectorBuilder.getSectors());
+        Map<Sector, Long> otherMasks = new IdentityHashMap<>();
+        for (Sector sector : orderedSectors) {
+            if (!sectorBuilder.made(sector) && !otherMasks.containsKey(sector)) {
+                if (bits.size() == Long.SIZE) {
+                    throw new IllegalArgumentException("Too many sectors to classify against");
+                }
+                otherMasks.put(sector, 1L << bits.size());
+                bits.add(sector);
+            }
+        }
+        this.sectorsByBit = ImmutableList.copyOf(bits);
+        this.otherSectorMasks = otherMasks;
+
+        this.orderedSectorMasks = orderedSectors.stream().mapToLong(this::toMask).toArray();
+        this.orderedMask = Arrays.stream(orderedSectorMasks).reduce(0, (a, b) -> a | b);
+
+        int segmentCount = orderedSectors.stream().mapToInt(sector -> sector.getSegments().size()).sum();
+        startX = new double[segmentCount];
+        startY = new double[segmentCount];
+        directionX = new double[segmentCount];
+        directionY = new double[segmentCount];
+        directionDot = new double[segmentCount];
+        insideIsLeft = new boolean[segmentCount];
+        closedAtStart = new boolean[segmentCount];
+        closedAtEnd = new boolean[segmentCount];
+        segmentSectorMask = new long[segmentCount];
+
+        int i = 0;
+        for (Sector sector : orderedSectors) {
+            for (Segment segment : sector.getSegments()) {
+                startX[i] = segment.getStart().getX();
+                startY[i] = segment.getStart().getY();
+                directionX[i] = segment.getEnd().getX() - segment.getStart().getX();
+                directionY[i] = segment.getEnd().getY() - segment.getStart().getY();
+                directionDot[i] = directionX[i] * directionX[i] + directionY[i] * directionY[i];
+                insideIsLeft[i] = segment.getSide() == null || segment.getSide() == Side.LEFT;
+                closedAtStart[i] = !segment.isOpenBothEnds();
+                closedAtEnd[i] = segment.getSide() == null;
+                segmentSectorMask[i] = toMask(sector);
+                i++;
+            }
+        }
     }
 
-    private static final Map<Settings, SectorClassifier> SECTOR_CLASSIFIER_CACHE = new HashMap<>();
+    private static final Map<Settings, SectorClassifier> SECTOR_CLASSIFIER_CACHE = new ConcurrentHashMap<>();
 
     /**
      * The type of settings for SectorClassifier.
@@ -72,11 +145,11 @@ public class SectorClassifier {
      * @return The highest-priority sector that contains this point.
      */
     public Sector classify(Point point) {
-        Set<Sector> possibleSectors = classifyAll(point);
-        return settings.getOrderedSectors().stream()
-            .filter(possibleSectors::contains)
-            .findFirst()
-            .get();
+        Sector sector = highestPriority(classifyAllMask(point.getX(), point.getY()));
+        if (sector == null) {
+            throw new NoSuchElementException("No sector contains " + point);
+        }
+        return sector;
     }
 
     /**
@@ -85,8 +158,93 @@ public class SectorClassifier {
      * @return The set of sectors this point could be in.
      */
     public Set<Sector> classifyAll(Point point) {
-        return settings.getOrderedSectors().stream()
-            .filter(sector -> sector.contains(point))
-            .collect(Collectors.toSet());
+        return fromMask(classifyAllMask(point.getX(), point.getY()));
+    }
+
+    /**
+     * Identify which sectors the point (x, y) could be in.
+     * @param x The X co-ordinate of the point.
+     * @param y The Y co-ordinate of the point.
+     * @return The mask of the sectors this point could be in.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    public long classifyAllMask(double x, double y) {
+        long mask = orderedMask;
+        for (int i = 0; i < segmentSectorMask.length; i++) {
+            // The same calculation as Segment.inside, so that points on a boundary are classified identically
+            double dx = x - startX[i];
+            double dy = y - startY[i];
+            double crossProduct = directionX[i] * dy - directionY[i] * dx;
+            double coefficientOfSegment = (dx * directionX[i] + dy * directionY[i]) / directionDot[i];
+            boolean inside = (insideIsLeft[i] ? crossProduct >= 0 : crossProduct <= 0)
+                && (!closedAtStart[i] || coefficientOfSegment >= 0)
+                && (!closedAtEnd[i] || coefficientOfSegment <= 1);
+            if (!inside) {
+                mask &= ~segmentSectorMask[i];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return The sectors we classify against, in order of priority.
+     */
+    public List<Sector> getOrderedSectors() {
+        return orderedSectors;
+    }
+
+    /**
+     * @return The mask of all of the sectors we classify against.
+     */
+    public long getOrderedMask() {
+        return orderedMask;
+    }
+
+    /**
+     * @return The SectorBuilder whose sector indices are used in masks.
+     */
+    public SectorBuilder getSectorBuilder() {
+        return sectorBuilder;
+    }
+
+    /**
+     * Convert a sector into a mask of this classifier.
+     * @param sector One of the SectorBuilder's sectors, or one of the ordered sectors.
+     * @return A mask with just the bit of that sector set.
+     */
+    public long toMask(Sector sector) {
+        Long mask = otherSectorMasks.get(sector);
+        if (mask != null) {
+            return mask;
+        }
+        return sectorBuilder.toMask(sector);
+    }
+
+    /**
+     * Convert a mask of this classifier back into a set of sectors.
+     * @param mask The sector mask.
+     * @return The set of sectors with their bits set in the mask, in bit order.
+     */
+    public Set<Sector> fromMask(long mask) {
+        ImmutableSet.Builder<Sector> result = ImmutableSet.builder();
+        for (long remaining = mask; remaining != 0; remaining &= remaining - 1) {
+            result.add(sectorsByBit.get(Long.numberOfTrailingZeros(remaining)));
+        }
+        return result.build();
+    }
+
+    /**
+     * Find the highest-priority sector in a sector mask.
+     * @param mask The sector mask.
+     * @return The first of the ordered sectors in the mask, or null if there are none.
+     */
+    @Nullable
+    public Sector highestPriority(long mask) {
+        for (int i = 0; i < orderedSectorMasks.length; i++) {
+            if ((mask & orderedSectorMasks[i]) != 0) {
+                return orderedSectors.get(i);
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,161 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import java.util.List;
+
+/**
+ * A compiled sequence of expected sectors, which can be matched against sector traces.
+ *
+ * A trace matches if the expected sectors can be walked in order alongside it: each step moves on to the next expected
+ * sector, the next trace element, or both, and every expected sector must be in the trace element it is paired with.
+ * The first and last expected sectors must be paired with the first and last trace elements.
+ *
+ * Sequences of up to 64 sectors are matched with a bit-parallel (Shift-And style) automaton, which keeps the set of
+ * expected sectors that could be paired with the current trace element as the bits of a long. Longer sequences fall
+ * back to dynamic programming.
+ */
+public class SectorPattern {
+    private final long[] expectedMasks;
+
+    // For each bit of a sector mask, the positions in the expected sequence of that sector. Traces can have bits beyond
+    // the SectorBuilder's sectors, for ordered sectors that a classifier gives their own bits; those never match.
+    private final long[] positionsOfSector;
+    private final long acceptBit;
+
+    /**
+     * Compile a sequence of expected sectors.
+     * @param sectorBuilder The SectorBuilder that made the sectors, and the traces they are matched against.
+     * @param expectedSectors The expected sectors, in order.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    public SectorPattern(SectorBuilder sectorBuilder, List<Sector> expectedSectors) {
+        this.expectedMasks = expectedSectors.stream()
+            .mapToLong(sectorBuilder::toMask)
+            .toArray();
+
+        this.positionsOfSector = new long[Long.SIZE];
+        if (expectedMasks.length <= Long.SIZE) {
+            for (int i = 0; i < expectedSectors.size(); i++) {
+                positionsOfSector[expectedSectors.get(i).getIndex()] |= 1L << i;
+            }
+        }
+        this.acceptBit = expectedMasks.length == 0 ? 0 : 1L << (expectedMasks.length - 1);
+    }
+
+    /**
+     * Check if a trace of actual possible sectors matches this sequence of expected sectors.
+     * @param actual The trace of the sectors a line possibly passes through, in order.
+     * @return True if there is a match.
+     */
+    public boolean matches(SectorTracer.Trace actual) {
+        return matches(actual.masks, actual.size);
+    }
+
+    /**
+     * Check if the masks of a trace of actual possible sectors match this sequence of expected sectors.
+     * @param actual The masks of the sectors a line possibly passes through, in order, as from Trace.toArray.
+     * @return True if there is a match.
+     */
+    public boolean matches(long[] actual) {
+        return matches(actual, actual.length);
+    }
+
+    /**
+     * Check if some masks of actual possible sectors match this sequence of expected sectors.
+     * @param actual The masks of the sectors a line possibly passes through, in order.
+     * @param size The number of masks in actual to use.
+     * @return True if there is a match.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    private boolean matches(long[] actual, int size) {
+        if (expectedMasks.length == 0 || size == 0) {
+            return expectedMasks.length == 0 && size == 0;
+        }
+        if (expectedMasks.length > Long.SIZE) {
+            return matchesByDynamicProgramming(expectedMasks, actual, size);
+        }
+
+        // Bit i of state is set if expected sector i can be paired with the current trace element
+        long state = 0;
+        for (int j = 0; j < size; j++) {
+            long matchable = 0;
+            for (long sectors = actual[j]; sectors != 0; sectors &= sectors - 1) {
+                matchable |= positionsOfSector[Long.numberOfTrailingZeros(sectors)];
+            }
+
+            // Either stay on the same expected sector, or move on to the next; only the first can start the match
+            long reachable = j == 0 ? 1 : (state << 1) | state;
+            long seeds = reachable & matchable;
+
+            // Then move on through as many expected sectors as this trace element matches, by carrying each seed up
+            // through its run of matchable bits.
+            state = (((matchable + seeds) ^ matchable) | seeds) & matchable;
+        }
+        return (state & acceptBit) != 0;
+    }
+
+    /**
+     * Check if a list of actual possible sectors matches a list of expected sectors.
+     *
+     * This method uses dynamic programming to match the sectors. Imagine first a grid of matches between actual
+     * sector sets and expected sectors:
+     *
+     * e   actual
+     * x   0 1 2 3 4
+     * p 0 x     x
+     * e 1 x   x
+     * c 2   x x x
+     * t 3 x   x x x
+     *
+     * We need to find a path that connects the top left to the bottom right, either straight or diagonally, without
+     * doubling back to the left. That is, a path that only moves down, right, or diagonally down and right.
+     * In this case, actual sector set 0 matches expected sectors 0 and 1, then actual 1 and 2 could match expected
+     * 2, and finally actual sets 3 and 4 could match expected 3.
+     *
+     * In order to find the path, we could imagine building the grid above, and then replacing each true with a true
+     * if and only if there is a true above or left of it (working downwards).
+     *
+     * And finally, we can make the standard dynamic programming optimisation and keep just the last row and the row
+     * we're building up from the top.
+     *
+     * @param expectedMasks The masks of the expected sectors, in order.
+     * @param actual The masks of the sectors we possibly pass through, in order.
+     * @param size The number of masks in actual to use.
+     * @return True if there is a match.
+     */
+    static boolean matchesByDynamicProgramming(long[] expectedMasks, long[] actual, int size) {
+
+        // This has a phantom left-half column to avoid a test in the loop below
+        // The phantom column will always be false except above the first row to anchor the beginning.
+        int matchArraySize = size + 1;
+
+        boolean[] matches = new boolean[matchArraySize];
+        matches[0] = true; // This is the fake match to anchor things to the beginning.
+
+        for (long expectedMask : expectedMasks) {
+            boolean[] nextMatches = new boolean[matchArraySize];
+            for (int j = 0; j < size; j++) {
+                if ((actual[j] & expectedMask) != 0) {
+                    nextMatches[j + 1] = matches[j] || matches[j + 1] || nextMatches[j];
+                }
+            }
+            matches = nextMatches;
+        }
+
+        return matches[matchArraySize - 1];
+    }
+}
@@ -0,0 +1,368 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.metrics.MarkingBudget;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Traces the sectors a line passes through, as a list of sector masks.
+ *
+ * The line is walked once. The sectors the line is currently inside are kept as a mask, and updated from the crossings
+ * of each segment of the line with the boundaries of the ordered sectors, which are merged in order of where they
+ * occur along the segment. After warm-up, tracing a line allocates nothing: the boundaries are flattened into arrays
+ * up front, and the crossings and the trace itself go into buffers that are reused by each thread.
+ *
+ * Whenever the line is in a combination of sectors that is marked as invalid (for example, both sides of an axis), all
+ * of the sectors in that combination are dropped. Consecutive identical sector sets are only recorded once, and empty
+ * sector sets are only recorded at the start of the trace.
+ *
+ * Each point of the line is a step of the current MarkingBudget.
+ */
+public class SectorTracer {
+
+    /**
+     * A trace of the sector masks a line passes through.
+     *
+     * The trace returned by SectorTracer.trace belongs to the calling thread and is overwritten by its next trace, so
+     * use copy or toArray to keep it.
+     */
+    public static final class Trace {
+        private static final int INITIAL_CAPACITY = 32;
+
+        long[] masks;
+        int size;
+
+        /**
+         * Create an empty trace.
+         */
+        private Trace() {
+            this.masks = new long[INITIAL_CAPACITY];
+        }
+
+        /**
+         * Create a trace of some sector masks.
+         * @param masks The sector masks.
+         */
+        Trace(long... masks) {
+            this.masks = masks.clone();
+            this.size = masks.length;
+        }
+
+        /**
+         * @return The number of sector masks in this trace.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param index The position in the trace.
+         * @return The sector mask at that position.
+         */
+        public long get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index " + index + " of " + size);
+            }
+            return masks[index];
+        }
+
+        /**
+         * @return A copy of the sector masks in this trace.
+         */
+        public long[] toArray() {
+            return Arrays.copyOf(masks, size);
+        }
+
+        /**
+         * @return A trace of the same sector masks which is not reused by later traces.
+         */
+        public Trace copy() {
+            return new Trace(toArray());
+        }
+
+        /**
+         * Add a sector mask to the trace, dropping invalid combinations and de-duplicating.
+         * @param sectors The mask of the sectors.
+         * @param invalidCombinations The masks of the combinations of sectors that can't be occupied together.
+         */
+        private void add(long sectors, long[] invalidCombinations) {
+            // If you are in an area that contains both sides of an axis say, remove both sides.
+            long sectorsToRemove = 0;
+            for (long invalidCombination : invalidCombinations) {
+                if ((sectors & invalidCombination) == invalidCombination) {
+                    sectorsToRemove |= invalidCombination;
+                }
+            }
+            long remaining = sectors & ~sectorsToRemove;
+
+            if (size == 0 || masks[size - 1] != remaining && remaining != 0) {
+                if (size == masks.length) {
+                    masks = Arrays.copyOf(masks, Math.max(size * 2, INITIAL_CAPACITY));
+                }
+                masks[size++] = remaining;
+            }
+        }
+    }
+
+    /**
+     * The per-thread buffers for tracing.
+     */
+    private static final class Buffers {
+        private final Trace trace = new Trace();
+        private final double[][] crossingT;
+        private final boolean[][] crossingInside;
+        private final int[] crossingCount;
+        private final int[] crossingHead;
+
+        /**
+         * Create buffers for a tracer.
+         * @param sectors The number of ordered sectors.
+         * @param maxBoundaries The largest number of boundary segments of any ordered sector.
+         */
+        private Buffers(int sectors, int maxBoundaries) {
+            crossingT = new double[sectors][maxBoundaries];
+            crossingInside = new boolean[sectors][maxBoundaries];
+            crossingCount = new int[sectors];
+            crossingHead = new int[sectors];
+        }
+    }
+
+    private final SectorClassifier classifier;
+    private final long[] invalidCombinations;
+    private final long[] sectorBit;
+
+    // The boundaries of each ordered sector, as the co-ordinates and flags Segment.intersectionParam uses.
+    private final double[][] boundaryStartX;
+    private final double[][] boundaryStartY;
+    private final double[][] boundaryEndX;
+    private final double[][] boundaryEndY;
+    private final boolean[][] boundaryInsideIsLeft;
+    private final boolean[][] boundaryClosedAtStart;
+    private final boolean[][] boundaryClosedAtEnd;
+
+    private final ThreadLocal<Buffers> buffers;
+
+    /**
+     * Create a tracer.
+     * @param classifier The classifier for points and the ordered list of sectors to trace through.
+     * @param invalidCombinations The masks of the combinations of sectors that can't be occupied together.
+     */
+    public SectorTracer(SectorClassifier classifier, long[] invalidCombinations) {
+        this.classifier = classifier;
+        this.invalidCombinations = invalidCombinations.clone();
+
+        List<Sector> orderedSectors = classifier.getOrderedSectors();
+        int sectors = orderedSectors.size();
+        sectorBit = new long[sectors];
+        boundaryStartX = new double[sectors][];
+        boundaryStartY = new double[sectors][];
+        boundaryEndX = new double[sectors][];
+        boundaryEndY = new double[sectors][];
+        boundaryInsideIsLeft = new boolean[sectors][];
+        boundaryClosedAtStart = new boolean[sectors][];
+        boundaryClosedAtEnd = new boolean[sectors][];
+
+        int maxBoundaries = 0;
+        for (int k = 0; k < sectors; k++) {
+            Sector sector = orderedSectors.get(k);
+            List<Segment> boundaries = sector.getSegments();
+            int count = boundaries.size();
+            maxBoundaries = Math.max(maxBoundaries, count);
+
+            sectorBit[k] = classifier.toMask(sector);
+            boundaryStartX[k] = new double[count];
+            boundaryStartY[k] = new double[count];
+            boundaryEndX[k] = new double[count];
+            boundaryEndY[k] = new double[count];
+            boundaryInsideIsLeft[k] = new boolean[count];
+            boundaryClosedAtStart[k] = new boolean[count];
+            boundaryClosedAtEnd[k] = new boolean[count];
+            for (int b = 0; b < count; b++) {
+                Segment boundary = boundaries.get(b);
+                boundaryStartX[k][b] = boundary.getStart().getX();
+                boundaryStartY[k][b] = boundary.getStart().getY();
+                boundaryEndX[k][b] = boundary.getEnd().getX();
+                boundaryEndY[k][b] = boundary.getEnd().getY();
+                boundaryInsideIsLeft[k][b] = boundary.getSide() == null || boundary.getSide() == Side.LEFT;
+                boundaryClosedAtStart[k][b] = !boundary.isOpenBothEnds();
+                boundaryClosedAtEnd[k][b] = boundary.getSide() == null;
+            }
+        }
+
+        int finalMaxBoundaries = maxBoundaries;
+        buffers = ThreadLocal.withInitial(() -> new Buffers(sectors, finalMaxBoundaries));
+    }
+
+    /**
+     * Trace the sectors a line passes through.
+     *
+     * For example, a line passing near an axis might trace [topRight], [topRight, +Xaxis], [topRight]
+     *
+     * @param line The line.
+     * @return The trace, which is reused by the next trace on this thread.
+     */
+    public Trace trace(Line line) {
+        Buffers buffer = buffers.get();
+        Trace trace = buffer.trace;
+        trace.size = 0;
+
+        MarkingBudget budget = MarkingBudget.current();
+        long previousPoint = 0;
+        for (int i = 0; i < line.size(); i++) {
+            budget.check();
+            double x = line.getX(i);
+            double y = line.getY(i);
+            if (i > 0) {
+                traceSegment(buffer, line.getX(i - 1), line.getY(i - 1), x, y, previousPoint);
+            }
+
+            previousPoint = classifier.classifyAllMask(x, y);
+            trace.add(previousPoint, invalidCombinations);
+        }
+
+        return trace;
+    }
+
+    /**
+     * Add the sector sets a segment of a line passes through to the trace.
+     * @param buffer The buffers of this thread.
+     * @param x1 The X co-ordinate of the start of the segment.
+     * @param y1 The Y co-ordinate of the start of the segment.
+     * @param x2 The X co-ordinate of the end of the segment.
+     * @param y2 The Y co-ordinate of the end of the segment.
+     * @param inside The mask of the sectors that contain the start of the segment.
+     */
+    private void traceSegment(Buffers buffer, double x1, double y1, double x2, double y2, long inside) {
+        // Calculate when we enter and leave each sector along the segment
+        for (int k = 0; k < sectorBit.length; k++) {
+            findCrossings(buffer, k, x1, y1, x2, y2);
+        }
+
+        long current = inside;
+        int index = lowestIndex(buffer);
+        while (index != -1) {
+            double t = buffer.crossingT[index][buffer.crossingHead[index]];
+            current = cross(buffer, index, current);
+
+            // Crossings at exactly the same place along the segment happen together
+            index = lowestIndex(buffer);
+            while (index != -1 && t == buffer.crossingT[index][buffer.crossingHead[index]]) {
+                t = buffer.crossingT[index][buffer.crossingHead[index]];
+                current = cross(buffer, index, current);
+                index = lowestIndex(buffer);
+            }
+
+            // Record all of the sectors we are currently in
+            buffer.trace.add(current, invalidCombinations);
+        }
+    }
+
+    /**
+     * Take the next crossing of a sector, and update the sectors we are inside.
+     * @param buffer The buffers of this thread.
+     * @param k The position of the sector in the ordered sectors.
+     * @param inside The mask of the sectors we are inside before the crossing.
+     * @return The mask of the sectors we are inside after the crossing.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    private long cross(Buffers buffer, int k, long inside) {
+        boolean nowInside = buffer.crossingInside[k][buffer.crossingHead[k]++];
+        return nowInside ? inside | sectorBit[k] : inside & ~sectorBit[k];
+    }
+
+    /**
+     * Find the sector with the earliest crossing still to be taken.
+     * @param buffer The buffers of this thread.
+     * @return The position of that sector in the ordered sectors, or -1 if there are no crossings left.
+     */
+    private int lowestIndex(Buffers buffer) {
+        int index = -1;
+        double minParam = Double.MAX_VALUE;
+        for (int k = 0; k < sectorBit.length; k++) {
+            if (buffer.crossingHead[k] < buffer.crossingCount[k]) {
+                double param = buffer.crossingT[k][buffer.crossingHead[k]];
+                if (param < minParam) {
+                    index = k;
+                    minParam = param;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Find where a segment crosses the boundaries of a sector, in order along the segment.
+     *
+     * This uses the same arithmetic as Segment.intersectionParam, and orders crossings as Sector.intersectionParams.
+     *
+     * @param buffer The buffers of this thread.
+     * @param k The position of the sector in the ordered sectors.
+     * @param x3 The X co-ordinate of the start of the segment.
+     * @param y3 The Y co-ordinate of the start of the segment.
+     * @param x4 The X co-ordinate of the end of the segment.
+     * @param y4 The Y co-ordinate of the end of the segment.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    private void findCrossings(Buffers buffer, int k, double x3, double y3, double x4, double y4) {
+        double[] ts = buffer.crossingT[k];
+        boolean[] insides = buffer.crossingInside[k];
+        int count = 0;
+
+        for (int b = 0; b < boundaryStartX[k].length; b++) {
+            double x1 = boundaryStartX[k][b];
+            double y1 = boundaryStartY[k][b];
+            double x2 = boundaryEndX[k][b];
+            double y2 = boundaryEndY[k][b];
+
+            double det = (x4 - x3) * (y1 - y2) - (x1 - x2) * (y4 - y3);
+            if (det == 0) {
+                // Lines are parallel, so don't intersect
+                continue;
+            }
+
+            double t = ((y3 - y4) * (x1 - x3) + (x4 - x3) * (y1 - y3)) / det;
+            if ((boundaryClosedAtStart[k][b] && t < 0) || (boundaryClosedAtEnd[k][b] && t > 1)) {
+                continue;
+            }
+
+            double u = ((y1 - y2) * (x1 - x3) + (x2 - x1) * (y1 - y3)) / det;
+            if (u < 0 || u > 1) {
+                continue;
+            }
+
+            double crossProduct = (x2 - x1) * (y4 - y1) - (y2 - y1) * (x4 - x1);
+            boolean inside = boundaryInsideIsLeft[k][b] ? crossProduct >= 0 : crossProduct <= 0;
+
+            // Insertion sort, which is stable like the sort in Sector.intersectionParams
+            int position = count;
+            while (position > 0 && Double.compare(ts[position - 1], u) > 0) {
+                ts[position] = ts[position - 1];
+                insides[position] = insides[position - 1];
+                position--;
+            }
+            ts[position] = u;
+            insides[position] = inside;
+            count++;
+        }
+
+        buffer.crossingCount[k] = count;
+        buffer.crossingHead[k] = 0;
+    }
+}
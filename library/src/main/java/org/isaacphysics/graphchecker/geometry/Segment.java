@@ -18,10 +18,10 @@ package org.isaacphysics.graphchecker.geometry;
 import org.isaacphysics.graphchecker.data.IntersectionParams;
 import org.isaacphysics.graphchecker.data.Point;
 import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.PackedPoints;
 import org.isaacphysics.graphchecker.data.PointOfInterest;
 
 import javax.annotation.Nullable;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -114,6 +114,21 @@ public class Segment {
         return end;
     }
 
+    /**
+     * @return Which side is considered the inside of this segment, or null if it is closed at both ends.
+     */
+    @Nullable
+    Side getSide() {
+        return side;
+    }
+
+    /**
+     * @return True if this segment is a line through its start and end, open at both ends.
+     */
+    boolean isOpenBothEnds() {
+        return openBothEnds;
+    }
+
     /**
      * Is this point on the inside of this line segment?
      *
@@ -124,15 +139,29 @@ public class Segment {
      * @return True if this point is on the inside of this line segment.
      */
     boolean inside(Point p) {
-        Point endPrime = end.minus(start);
-        Point pPrime = p.minus(start);
-        if (!isOnInside(endPrime, pPrime)) {
+        return inside(p.getX(), p.getY());
+    }
+
+    /**
+     * Is the point (x, y) on the inside of this line segment?
+     *
+     * @param x The X co-ordinate of the point.
+     * @param y The Y co-ordinate of the point.
+     * @return True if this point is on the inside of this line segment.
+     * @see #inside(Point)
+     */
+    boolean inside(double x, double y) {
+        double endPrimeX = end.getX() - start.getX();
+        double endPrimeY = end.getY() - start.getY();
+        double pPrimeX = x - start.getX();
+        double pPrimeY = y - start.getY();
+        if (!isOnInside(endPrimeX, endPrimeY, pPrimeX, pPrimeY)) {
             return false;
         }
 
          // Project originPoints onto line and check inside this segment
-        double dotEndPrime = endPrime.getX() * endPrime.getX() + endPrime.getY() * endPrime.getY();
-        double pDotEndPrime = pPrime.getX() * endPrime.getX() + pPrime.getY() * endPrime.getY();
+        double dotEndPrime = endPrimeX * endPrimeX + endPrimeY * endPrimeY;
+        double pDotEndPrime = pPrimeX * endPrimeX + pPrimeY * endPrimeY;
         double coefficientOfSegment = pDotEndPrime / dotEndPrime;
         return (this.openBothEnds || coefficientOfSegment >= 0) && (this.side != null || coefficientOfSegment <= 1);
     }
@@ -142,12 +171,14 @@ public class Segment {
      *
      * prime suffix means the original point has had this.start subtracted from it.
      *
-     * @param endPrime The end point minus this.start.
-     * @param pPrime The point to be tested minus this.start.
+     * @param endPrimeX The X co-ordinate of the end point minus this.start.
+     * @param endPrimeY The Y co-ordinate of the end point minus this.start.
+     * @param pPrimeX The X co-ordinate of the point to be tested minus this.start.
+     * @param pPrimeY The Y co-ordinate of the point to be tested minus this.start.
      * @return True if the point is on the inside.
      */
-    private boolean isOnInside(Point endPrime, Point pPrime) {
-        double crossProduct = endPrime.getX() * pPrime.getY() - endPrime.getY() * pPrime.getX();
+    private boolean isOnInside(double endPrimeX, double endPrimeY, double pPrimeX, double pPrimeY) {
+        double crossProduct = endPrimeX * pPrimeY - endPrimeY * pPrimeX;
         if (this.side == null || this.side == Side.LEFT) {
             return crossProduct >= 0;
         } else {
@@ -173,15 +204,41 @@ public class Segment {
      */
     @Nullable
     public IntersectionParams.IntersectionParam intersectionParam(Segment s) {
+        return intersectionParam(s.start.getX(), s.start.getY(), s.end.getX(), s.end.getY(), s.openBothEnds,
+            s.side != null);
+    }
+
+    /**
+     * Get the parameters of any intersection between the closed segment from (x3, y3) to (x4, y4) and this one.
+     * @param x3 The X co-ordinate of the start of the closed segment.
+     * @param y3 The Y co-ordinate of the start of the closed segment.
+     * @param x4 The X co-ordinate of the end of the closed segment.
+     * @param y4 The Y co-ordinate of the end of the closed segment.
+     * @return The parameters of the intersection in terms of that segment, or null if no intersection occurs.
+     */
+    @Nullable
+    public IntersectionParams.IntersectionParam intersectionParam(double x3, double y3, double x4, double y4) {
+        return intersectionParam(x3, y3, x4, y4, false, false);
+    }
+
+    /**
+     * Get the parameters of any intersection between another segment, given by its co-ordinates, and this one.
+     * @param x3 The X co-ordinate of the start of the other segment.
+     * @param y3 The Y co-ordinate of the start of the other segment.
+     * @param x4 The X co-ordinate of the end (or direction point) of the other segment.
+     * @param y4 The Y co-ordinate of the end (or direction point) of the other segment.
+     * @param otherOpenBothEnds Whether the other segment is open at both ends.
+     * @param otherOpenAtEnd Whether the other segment is open past its end point.
+     * @return The parameters of the intersection in terms of the other segment, or null if no intersection occurs.
+     */
+    @Nullable
+    private IntersectionParams.IntersectionParam intersectionParam(double x3, double y3, double x4, double y4,
+                                                                   boolean otherOpenBothEnds, boolean otherOpenAtEnd) {
         double x1 = this.start.getX();
         double x2 = this.end.getX();
-        double x3 = s.start.getX();
-        double x4 = s.end.getX();
 
         double y1 = this.start.getY();
         double y2 = this.end.getY();
-        double y3 = s.start.getY();
-        double y4 = s.end.getY();
 
         double det = (x4 - x3) * (y1 - y2) - (x1 - x2) * (y4 - y3);
 
@@ -198,13 +255,11 @@ public class Segment {
 
         double u = ((y1 - y2) * (x1 - x3) + (x2 - x1) * (y1 - y3)) / det;
 
-        if ((!s.openBothEnds && u < 0) || (s.side == null && u > 1)) {
+        if ((!otherOpenBothEnds && u < 0) || (!otherOpenAtEnd && u > 1)) {
             return null;
         }
 
-        Point endPrime = end.minus(start);
-        Point pPrime = s.end.minus(start);
-        boolean inside = isOnInside(endPrime, pPrime);
+        boolean inside = isOnInside(x2 - x1, y2 - y1, x4 - x1, y4 - y1);
 
         return new IntersectionParams.IntersectionParam(u, inside);
     }
@@ -219,22 +274,51 @@ public class Segment {
      * @return The new, clipped line.
      */
     public Line clip(Line line) {
-        List<Point> points = new ArrayList<>();
-        Point lastPoint = null;
-        for (Point point : line) {
-            if (lastPoint != null) {
-                Segment lineSegment = Segment.closed(lastPoint, point);
-                Segment clippedSegment = this.clip(lineSegment);
-                if (clippedSegment != null) {
-                    if (points.isEmpty() || !points.get(points.size() - 1).equals(clippedSegment.start)) {
-                        points.add(clippedSegment.start);
-                    }
-                    if (points.isEmpty() || !points.get(points.size() - 1).equals(clippedSegment.end)) {
-                        points.add(clippedSegment.end);
+        int size = line.size();
+        double[] xs = new double[Math.max(2 * size, 2)];
+        double[] ys = new double[xs.length];
+        int count = 0;
+        for (int i = 1; i < size; i++) {
+            double x1 = line.getX(i - 1);
+            double y1 = line.getY(i - 1);
+            double x2 = line.getX(i);
+            double y2 = line.getY(i);
+
+            // Inline clip(Segment) so that no intermediate Segment or Point objects are created
+            double startX = x1;
+            double startY = y1;
+            double endX = x2;
+            double endY = y2;
+            IntersectionParams.IntersectionParam intersectionParam = intersectionParam(x1, y1, x2, y2);
+            if (intersectionParam == null) {
+                if (!inside(x1, y1)) {
+                    continue;
+                }
+            } else {
+                double t = intersectionParam.getT();
+                double px = x1 * (1 - t) + x2 * t;
+                double py = y1 * (1 - t) + y2 * t;
+                if (intersectionParam.isInside()) {
+                    if (!inside(x1, y1)) {
+                        startX = px;
+                        startY = py;
                     }
+                } else {
+                    endX = px;
+                    endY = py;
                 }
             }
-            lastPoint = point;
+
+            if (count == 0 || !samePoint(xs[count - 1], ys[count - 1], startX, startY)) {
+                xs[count] = startX;
+                ys[count] = startY;
+                count++;
+            }
+            if (!samePoint(xs[count - 1], ys[count - 1], endX, endY)) {
+                xs[count] = endX;
+                ys[count] = endY;
+                count++;
+            }
         }
 
         // CHECKME: Once clipped, these might not be maxima/minima any more
@@ -242,7 +326,19 @@ public class Segment {
             .filter(this::inside)
             .collect(Collectors.toList());
 
-        return new Line(points, pointsOfInterest);
+        return new Line(PackedPoints.wrap(xs, ys, count), pointsOfInterest);
+    }
+
+    /**
+     * Check if two points are equal in the same way as Point.equals.
+     * @param x1 The X co-ordinate of the first point.
+     * @param y1 The Y co-ordinate of the first point.
+     * @param x2 The X co-ordinate of the second point.
+     * @param y2 The Y co-ordinate of the second point.
+     * @return True if the points are equal.
+     */
+    private static boolean samePoint(double x1, double y1, double x2, double y2) {
+        return Double.compare(x1, x2) == 0 && Double.compare(y1, y2) == 0;
     }
 
     /**
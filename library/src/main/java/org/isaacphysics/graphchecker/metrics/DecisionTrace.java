@@ -0,0 +1,267 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+
+/**
+ * A record of the decisions made while marking, such as which features and lines passed, for explaining why an answer
+ * was marked the way it was.
+ *
+ * Tracing is off by default, and then costs one volatile read per decision. When it is on, each thread records into
+ * its own ring buffer of preallocated arrays, keeping the most recent events. Events hold only primitives and
+ * references to objects marking already made, and are turned into text only when render is called, so tracing never
+ * formats strings while marking. To explain a mark, turn tracing on, mark on this thread, then call
+ * DecisionTrace.current().renderLastMark().
+ */
+public final class DecisionTrace {
+
+    /**
+     * The number of events each thread keeps.
+     */
+    public static final int CAPACITY = 4096;
+
+    private static volatile boolean enabled;
+
+    private static final ThreadLocal<DecisionTrace> TRACES = ThreadLocal.withInitial(() -> new DecisionTrace(CAPACITY));
+
+    /**
+     * The kinds of decision that are recorded.
+     */
+    public enum Kind {
+        /**
+         * Whether an answer matched a specification.
+         */
+        MARK,
+        /**
+         * Whether an answer passed a feature instance.
+         */
+        FEATURE,
+        /**
+         * Whether one line of an answer passed a line feature instance.
+         */
+        LINE,
+        /**
+         * The sectors a line passed through.
+         */
+        SECTORS,
+        /**
+         * The number of assignments a search for a mapping from names to lines tried, and whether it found one.
+         */
+        ASSIGNMENTS
+    }
+
+    private final Kind[] kinds;
+    private final long[] marks;
+    private final String[] tags;
+    private final int[] numbers;
+    private final boolean[] outcomes;
+    private final long[][] traces;
+    private final LongFunction<?>[] traceNames;
+
+    /**
+     * The number of events recorded since this trace was cleared; the next event goes at size % capacity.
+     */
+    private long size;
+
+    /**
+     * The number of the mark being traced.
+     */
+    private long mark;
+
+    /**
+     * Create an empty trace.
+     * @param capacity The number of events to keep.
+     */
+    private DecisionTrace(int capacity) {
+        kinds = new Kind[capacity];
+        marks = new long[capacity];
+        tags = new String[capacity];
+        numbers = new int[capacity];
+        outcomes = new boolean[capacity];
+        traces = new long[capacity][];
+        traceNames = new LongFunction<?>[capacity];
+    }
+
+    /**
+     * @return True if decisions are being traced. Check this before getting the current trace.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turn tracing on or off for all threads.
+     * @param enable Whether to trace decisions.
+     */
+    public static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * @return The trace for this thread.
+     */
+    public static DecisionTrace current() {
+        return TRACES.get();
+    }
+
+    /**
+     * Start tracing a new mark; later events belong to it until the next mark starts.
+     */
+    public void startMark() {
+        mark++;
+    }
+
+    /**
+     * Record whether an answer matched a specification.
+     * @param matched Whether it matched.
+     */
+    public void mark(boolean matched) {
+        record(Kind.MARK, null, 0, matched, null, null);
+    }
+
+    /**
+     * Record whether an answer passed a feature instance.
+     * @param tag The tag of the feature.
+     * @param passed Whether it passed.
+     */
+    public void feature(String tag, boolean passed) {
+        record(Kind.FEATURE, tag, 0, passed, null, null);
+    }
+
+    /**
+     * Record whether a line passed a line feature instance.
+     * @param tag The tag of the feature.
+     * @param line The index of the line in the answer.
+     * @param passed Whether it passed.
+     */
+    public void line(String tag, int line, boolean passed) {
+        record(Kind.LINE, tag, line, passed, null, null);
+    }
+
+    /**
+     * Record the sectors a line passed through.
+     * @param tag The tag of the feature that traced the line.
+     * @param trace The sector mask of each step of the line; it must not be modified afterwards.
+     * @param names Turns a sector mask into something to show when the trace is rendered.
+     */
+    public void sectors(String tag, long[] trace, LongFunction<?> names) {
+        record(Kind.SECTORS, tag, trace.length, true, trace, names);
+    }
+
+    /**
+     * Record the end of a search for a mapping from names to lines.
+     * @param assignments The number of assignments the search tried.
+     * @param found Whether it found a mapping.
+     */
+    public void assignments(int assignments, boolean found) {
+        record(Kind.ASSIGNMENTS, null, assignments, found, null, null);
+    }
+
+    /**
+     * Record an event in the ring buffer, overwriting the oldest if it is full.
+     * @param kind The kind of event.
+     * @param tag The tag of the feature, if any.
+     * @param number The line index or count of the event.
+     * @param outcome Whether the decision passed.
+     * @param trace A sector trace, if any.
+     * @param names Names for the sector trace, if any.
+     */
+    private void record(Kind kind, String tag, int number, boolean outcome, long[] trace, LongFunction<?> names) {
+        int index = (int) (size % kinds.length);
+        kinds[index] = kind;
+        marks[index] = mark;
+        tags[index] = tag;
+        numbers[index] = number;
+        outcomes[index] = outcome;
+        traces[index] = trace;
+        traceNames[index] = names;
+        size++;
+    }
+
+    /**
+     * Forget every event.
+     */
+    public void clear() {
+        Arrays.fill(tags, null);
+        Arrays.fill(traces, null);
+        Arrays.fill(traceNames, null);
+        size = 0;
+    }
+
+    /**
+     * @return The events still in the buffer, oldest first, as text.
+     */
+    public List<String> render() {
+        return render(false);
+    }
+
+    /**
+     * @return The events of the most recent mark, as text. Empty if they have been overwritten.
+     */
+    public List<String> renderLastMark() {
+        return render(true);
+    }
+
+    /**
+     * Render events as text.
+     * @param lastMarkOnly Whether to render only the events of the most recent mark.
+     * @return One line of text per event, oldest first.
+     */
+    private List<String> render(boolean lastMarkOnly) {
+        List<String> rendered = new ArrayList<>();
+        for (long i = Math.max(0, size - kinds.length); i < size; i++) {
+            int index = (int) (i % kinds.length);
+            if (!lastMarkOnly || marks[index] == mark) {
+                rendered.add("#" + marks[index] + " " + render(index));
+            }
+        }
+        return rendered;
+    }
+
+    /**
+     * Render one event as text.
+     * @param index The index of the event in the buffer.
+     * @return The event as text.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    private String render(int index) {
+        String outcome = outcomes[index] ? "passed" : "failed";
+        switch (kinds[index]) {
+            case MARK:
+                return "mark " + outcome;
+            case FEATURE:
+                return tags[index] + " " + outcome;
+            case LINE:
+                return tags[index] + " line " + numbers[index] + " " + outcome;
+            case SECTORS:
+                LongFunction<?> names = traceNames[index];
+                return tags[index] + " sectors " + Arrays.stream(traces[index])
+                    .mapToObj(names::apply)
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", "));
+            case ASSIGNMENTS:
+                return "search tried " + numbers[index] + " assignments and " + (outcomes[index] ? "found" : "found no")
+                    + " mapping";
+            default:
+                throw new IllegalStateException("Unknown kind of event: " + kinds[index]);
+        }
+    }
+}
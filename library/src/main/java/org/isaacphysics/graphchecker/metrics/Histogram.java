@@ -0,0 +1,136 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative values, such as latencies in nanoseconds, with a fixed relative precision, so recording
+ * is cheap and memory does not grow with the number or size of the values.
+ *
+ * Values are bucketed by their highest set bit and the next few bits below it, which keeps every bucket within about
+ * 1% of the values in it, in the style of an HDR histogram. Histograms are thread-safe, and can be read while values
+ * are being recorded.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final double HUNDRED = 100;
+
+    private final AtomicLongArray counts = new AtomicLongArray((Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Record a value.
+     * @param value The value; negative values are recorded as zero.
+     */
+    public void record(long value) {
+        long clamped = Math.max(value, 0);
+        counts.incrementAndGet(bucketOf(clamped));
+        total.increment();
+        sum.add(clamped);
+    }
+
+    /**
+     * Add all of the values recorded in another histogram to this one.
+     * @param other The other histogram.
+     */
+    public void add(Histogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        total.add(other.total.sum());
+        sum.add(other.sum.sum());
+    }
+
+    /**
+     * @return The number of values recorded.
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * @return The mean of the recorded values, or 0 if nothing has been recorded.
+     */
+    public double getMean() {
+        long count = total.sum();
+        if (count == 0) {
+            return 0;
+        }
+        return sum.sum() / (double) count;
+    }
+
+    /**
+     * Find a percentile of the recorded values.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The highest value in the bucket containing that percentile, or 0 if nothing has been recorded.
+     */
+    public long getPercentile(double percentile) {
+        // Take a snapshot, so values recorded while we look do not move the rank past the end of the buckets
+        long[] snapshot = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / HUNDRED * count));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValueOf(i);
+            }
+        }
+        return highestValueOf(snapshot.length - 1);
+    }
+
+    /**
+     * @param value A value.
+     * @return The bucket the value goes in.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Keep the top bit and the SUB_BUCKET_BITS bits below it, so value >>> shift is in
+        // [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * @param bucket A bucket.
+     * @return The highest value that goes in that bucket.
+     */
+    private static long highestValueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket - shift * SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Marking metrics kept in memory, to be queried from code.
+ *
+ * Latencies are in nanoseconds. Feature metrics are kept per feature tag, and cache metrics per cache name, as they are
+ * first reported. To use it, return one from MarkingMetrics.Settings.getMarkingMetrics in your settings.
+ */
+public class InMemoryMarkingMetrics implements MarkingMetrics {
+
+    private final Histogram markLatencies = new Histogram();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder undetermined = new LongAdder();
+    private final Map<String, FeatureMetrics> features = new ConcurrentHashMap<>();
+    private final Histogram lineCounts = new Histogram();
+    private final Histogram pointCounts = new Histogram();
+    private final Histogram assignmentCounts = new Histogram();
+    private final Map<String, CacheMetrics> caches = new ConcurrentHashMap<>();
+
+    /**
+     * The metrics of one feature.
+     */
+    public static final class FeatureMetrics {
+        private final Histogram latencies = new Histogram();
+        private final LongAdder passes = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        /**
+         * Create empty metrics for a feature.
+         */
+        private FeatureMetrics() {
+        }
+
+        /**
+         * @return How long each test of the feature took.
+         */
+        public Histogram getLatencies() {
+            return latencies;
+        }
+
+        /**
+         * @return The number of tests an answer passed.
+         */
+        public long getPasses() {
+            return passes.sum();
+        }
+
+        /**
+         * @return The number of tests an answer failed.
+         */
+        public long getFailures() {
+            return failures.sum();
+        }
+    }
+
+    /**
+     * The metrics of one cache.
+     */
+    public static final class CacheMetrics {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        /**
+         * Create empty metrics for a cache.
+         */
+        private CacheMetrics() {
+        }
+
+        /**
+         * @return The number of times what was wanted was in the cache.
+         */
+        public long getHits() {
+            return hits.sum();
+        }
+
+        /**
+         * @return The number of times what was wanted was not in the cache.
+         */
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * @return The proportion of accesses that were hits, or 0 if the cache has not been used.
+         */
+        public double getHitRate() {
+            long hitCount = hits.sum();
+            long total = hitCount + misses.sum();
+            if (total == 0) {
+                return 0;
+            }
+            return hitCount / (double) total;
+        }
+    }
+
+    @Override
+    public void recordMark(long nanos, boolean match) {
+        markLatencies.record(nanos);
+        if (match) {
+            matches.increment();
+        }
+    }
+
+    @Override
+    public void recordUndetermined(long nanos) {
+        markLatencies.record(nanos);
+        undetermined.increment();
+    }
+
+    @Override
+    public void recordFeature(String tag, long nanos, boolean passed) {
+        FeatureMetrics metrics = features.computeIfAbsent(tag, t -> new FeatureMetrics());
+        metrics.latencies.record(nanos);
+        if (passed) {
+            metrics.passes.increment();
+        } else {
+            metrics.failures.increment();
+        }
+    }
+
+    @Override
+    public void recordInput(int lines, int points) {
+        lineCounts.record(lines);
+        pointCounts.record(points);
+    }
+
+    @Override
+    public void recordAssignments(int assignments) {
+        assignmentCounts.record(assignments);
+    }
+
+    @Override
+    public void recordCacheAccess(String cache, boolean hit) {
+        CacheMetrics metrics = caches.computeIfAbsent(cache, c -> new CacheMetrics());
+        if (hit) {
+            metrics.hits.increment();
+        } else {
+            metrics.misses.increment();
+        }
+    }
+
+    /**
+     * @return How long each mark took.
+     */
+    public Histogram getMarkLatencies() {
+        return markLatencies;
+    }
+
+    /**
+     * @return The number of marks where the answer matched.
+     */
+    public long getMatches() {
+        return matches.sum();
+    }
+
+    /**
+     * @return The number of marks that ran out of budget before the answer was marked.
+     */
+    public long getUndetermined() {
+        return undetermined.sum();
+    }
+
+    /**
+     * @return The metrics of each feature that has been tested, by tag.
+     */
+    public Map<String, FeatureMetrics> getFeatures() {
+        return ImmutableSortedMap.copyOf(features);
+    }
+
+    /**
+     * @return The number of lines in each translated answer.
+     */
+    public Histogram getLineCounts() {
+        return lineCounts;
+    }
+
+    /**
+     * @return The number of points in each translated answer.
+     */
+    public Histogram getPointCounts() {
+        return pointCounts;
+    }
+
+    /**
+     * @return The number of assignments tried by each search for a mapping from names to lines.
+     */
+    public Histogram getAssignmentCounts() {
+        return assignmentCounts;
+    }
+
+    /**
+     * @return The metrics of each cache that has been used, by name.
+     */
+    public Map<String, CacheMetrics> getCaches() {
+        return ImmutableSortedMap.copyOf(caches);
+    }
+}
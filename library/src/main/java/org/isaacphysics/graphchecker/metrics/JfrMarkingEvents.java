@@ -0,0 +1,263 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import com.google.common.collect.ImmutableList;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+import java.util.List;
+
+/**
+ * The JFR events behind MarkingEvents. This is the only class that uses jdk.jfr, so it is only loaded if JFR is there.
+ */
+final class JfrMarkingEvents {
+
+    private static final String CATEGORY = "Isaac Graph Checker";
+
+    private static final List<Class<? extends Event>> EVENT_CLASSES = ImmutableList.of(
+        CompileEvent.class, TranslateEvent.class, FeatureEvent.class, SolveEvent.class);
+
+    /**
+     * Utility class.
+     */
+    private JfrMarkingEvents() {
+    }
+
+    /**
+     * Register the events, and keep MarkingEvents told whether any of them are enabled as recordings start and stop.
+     * @return True if JFR is available.
+     */
+    static boolean register() {
+        if (!FlightRecorder.isAvailable()) {
+            return false;
+        }
+        EVENT_CLASSES.forEach(FlightRecorder::register);
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording recording) {
+                MarkingEvents.setEnabled(anyEnabled());
+            }
+        });
+        // The listener is not told about recordings that were already running, such as one from the command line.
+        MarkingEvents.setEnabled(anyEnabled());
+        return true;
+    }
+
+    /**
+     * @return True if any of the events is enabled in a running recording.
+     */
+    private static boolean anyEnabled() {
+        return EVENT_CLASSES.stream().anyMatch(eventClass -> EventType.getEventType(eventClass).isEnabled());
+    }
+
+    /**
+     * @return A started compile event.
+     */
+    static Object beginCompile() {
+        CompileEvent event = new CompileEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commit a compile event.
+     * @param started The event from beginCompile.
+     * @param specificationHash The hash code of the normalised specification.
+     * @param instances The number of feature instances.
+     */
+    static void commitCompile(Object started, int specificationHash, int instances) {
+        CompileEvent event = (CompileEvent) started;
+        if (event.shouldCommit()) {
+            event.specificationHash = specificationHash;
+            event.instances = instances;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return A started translate event.
+     */
+    static Object beginTranslate() {
+        TranslateEvent event = new TranslateEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commit a translate event.
+     * @param started The event from beginTranslate.
+     * @param lines The number of lines.
+     * @param points The number of points.
+     */
+    static void commitTranslate(Object started, int lines, int points) {
+        TranslateEvent event = (TranslateEvent) started;
+        if (event.shouldCommit()) {
+            event.lines = lines;
+            event.points = points;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return A started feature event.
+     */
+    static Object beginFeature() {
+        FeatureEvent event = new FeatureEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commit a feature event.
+     * @param started The event from beginFeature.
+     * @param specificationHash The hash code of the normalised specification.
+     * @param tag The tag of the feature.
+     * @param lines The number of lines.
+     * @param points The number of points.
+     * @param passed Whether the answer passed.
+     */
+    static void commitFeature(Object started, int specificationHash, String tag, int lines, int points,
+                              boolean passed) {
+        FeatureEvent event = (FeatureEvent) started;
+        if (event.shouldCommit()) {
+            event.specificationHash = specificationHash;
+            event.tag = tag;
+            event.lines = lines;
+            event.points = points;
+            event.passed = passed;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return A started solve event.
+     */
+    static Object beginSolve() {
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Commit a solve event.
+     * @param started The event from beginSolve.
+     * @param lines The number of lines.
+     * @param names The number of names.
+     * @param assignments The number of assignments tried.
+     * @param found Whether a mapping was found.
+     */
+    static void commitSolve(Object started, int lines, int names, int assignments, boolean found) {
+        SolveEvent event = (SolveEvent) started;
+        if (event.shouldCommit()) {
+            event.lines = lines;
+            event.names = names;
+            event.assignments = assignments;
+            event.found = found;
+            event.commit();
+        }
+    }
+
+    /**
+     * A specification compiled to a matcher.
+     */
+    @Name("org.isaacphysics.graphchecker.Compile")
+    @Label("Compile Specification")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class CompileEvent extends Event {
+        @Label("Specification Hash")
+        @Description("The hash code of the normalised specification")
+        int specificationHash;
+
+        @Label("Feature Instances")
+        int instances;
+    }
+
+    /**
+     * An answer translated to Input.
+     */
+    @Name("org.isaacphysics.graphchecker.Translate")
+    @Label("Translate Answer")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class TranslateEvent extends Event {
+        @Label("Lines")
+        int lines;
+
+        @Label("Points")
+        int points;
+    }
+
+    /**
+     * A feature instance tested against an answer.
+     */
+    @Name("org.isaacphysics.graphchecker.Feature")
+    @Label("Test Feature")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class FeatureEvent extends Event {
+        @Label("Specification Hash")
+        @Description("The hash code of the normalised specification")
+        int specificationHash;
+
+        @Label("Feature")
+        String tag;
+
+        @Label("Lines")
+        int lines;
+
+        @Label("Points")
+        int points;
+
+        @Label("Passed")
+        boolean passed;
+    }
+
+    /**
+     * A search of a Context for a mapping from names to lines.
+     */
+    @Name("org.isaacphysics.graphchecker.Solve")
+    @Label("Solve Context")
+    @Category(CATEGORY)
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SolveEvent extends Event {
+        @Label("Lines")
+        int lines;
+
+        @Label("Names")
+        int names;
+
+        @Label("Assignments")
+        int assignments;
+
+        @Label("Found")
+        boolean found;
+    }
+}
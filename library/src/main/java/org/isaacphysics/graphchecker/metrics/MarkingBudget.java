@@ -0,0 +1,155 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A limit on how much work marking one answer may do, so an adversarial answer cannot tie up a thread for long.
+ *
+ * A budget has either a deadline or a number of steps. The places where marking can do an unbounded amount of work,
+ * such as searching for a mapping from names to lines, finding intersections and tracing sectors, call check() as they
+ * go. Once the budget has run out, check() throws Exhausted, which the matcher turns into an undetermined result.
+ *
+ * Code deep in the geometry cannot be handed a budget directly, because its results are derived from lines and shared
+ * between marks, so the budget of the mark in progress is held per thread: run() makes a budget current for the
+ * duration of a task, and current() returns it. When no budget is current, current() returns UNLIMITED, whose check()
+ * does nothing.
+ *
+ * A budget counts its steps without synchronisation, so it must only be used by one mark on one thread.
+ */
+public final class MarkingBudget {
+
+    /**
+     * A budget that never runs out.
+     */
+    public static final MarkingBudget UNLIMITED = new MarkingBudget(false, 0, Long.MAX_VALUE);
+
+    private static final ThreadLocal<MarkingBudget> CURRENT = ThreadLocal.withInitial(() -> UNLIMITED);
+
+    /**
+     * The clock is only read once every this many steps (which must be a power of two), as reading it costs more than
+     * most of the steps.
+     */
+    private static final int CLOCK_INTERVAL = 64;
+
+    /**
+     * Thrown by check() when a budget has run out.
+     *
+     * This is thrown to unwind out of deeply nested marking code, and is always caught by the matcher, so it has no
+     * stack trace.
+     */
+    public static final class Exhausted extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Create the exception.
+         * @param message What ran out.
+         */
+        private Exhausted(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private final boolean hasDeadline;
+    private final long deadline;
+    private final long maxSteps;
+    private long steps;
+
+    /**
+     * Create a budget.
+     * @param hasDeadline Whether there is a deadline.
+     * @param deadline The deadline, in System.nanoTime() terms.
+     * @param maxSteps The number of steps allowed.
+     */
+    private MarkingBudget(boolean hasDeadline, long deadline, long maxSteps) {
+        this.hasDeadline = hasDeadline;
+        this.deadline = deadline;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Create a budget that runs out some time from now.
+     * @param timeout How long marking may take.
+     * @param unit The unit of the timeout.
+     * @return The budget.
+     */
+    public static MarkingBudget withTimeout(long timeout, TimeUnit unit) {
+        return new MarkingBudget(true, System.nanoTime() + unit.toNanos(timeout), Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a budget that runs out after a number of steps, however long they take.
+     *
+     * Unlike a timeout, this gives the same result every time an answer is marked, so it suits tests and replays.
+     *
+     * @param maxSteps The number of steps allowed.
+     * @return The budget.
+     */
+    public static MarkingBudget withSteps(long maxSteps) {
+        return new MarkingBudget(false, 0, maxSteps);
+    }
+
+    /**
+     * @return The budget of the mark in progress on this thread, or UNLIMITED if there is none.
+     */
+    public static MarkingBudget current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Run a task with this budget as the current budget on this thread.
+     *
+     * @param task The task.
+     * @param <T> The type of the result of the task.
+     * @return The result of the task.
+     * @throws Exhausted If the budget runs out during the task.
+     */
+    public <T> T run(Supplier<T> task) {
+        MarkingBudget previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * Take a step, and stop marking if the budget has run out.
+     * @throws Exhausted If the budget has run out.
+     */
+    public void check() {
+        if (this == UNLIMITED) {
+            return;
+        }
+        steps++;
+        if (steps > maxSteps) {
+            throw new Exhausted("Marking took more than " + maxSteps + " steps");
+        }
+        if (hasDeadline && (steps & (CLOCK_INTERVAL - 1)) == 1 && System.nanoTime() - deadline >= 0) {
+            throw new Exhausted("Marking ran past its deadline");
+        }
+    }
+
+    /**
+     * @return The number of steps taken so far.
+     */
+    public long getSteps() {
+        return steps;
+    }
+}
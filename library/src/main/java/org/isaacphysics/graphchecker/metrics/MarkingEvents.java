@@ -0,0 +1,187 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.data.Line;
+
+/**
+ * Java Flight Recorder events for the phases of marking: compiling a specification, translating an answer to Input,
+ * testing a feature instance and searching a Context for a mapping from names to lines.
+ *
+ * The events are disabled by default. Enable them in a recording, for example with
+ * -XX:StartFlightRecording:settings=graphchecker.jfc, where the .jfc sets enabled to true for the events named
+ * org.isaacphysics.graphchecker.*; a threshold can be set on them as for any JFR event. While none of them are enabled
+ * in a running recording, each begin method costs one volatile read and returns null, and the commit methods do
+ * nothing with null.
+ *
+ * On a JVM without JFR, the events are never enabled. Only JfrMarkingEvents uses the classes in jdk.jfr, so there it
+ * fails to link, and this class carries on without it.
+ */
+public final class MarkingEvents {
+
+    private static final boolean AVAILABLE = register();
+
+    private static volatile boolean enabled;
+
+    /**
+     * Utility class.
+     */
+    private MarkingEvents() {
+    }
+
+    /**
+     * Start listening for recordings, if JFR is available.
+     * @return True if JFR is available.
+     */
+    private static boolean register() {
+        try {
+            return JfrMarkingEvents.register();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Set whether any of the events is enabled in a running recording. This is called by JfrMarkingEvents.
+     * @param enable Whether any of the events is enabled.
+     */
+    static void setEnabled(boolean enable) {
+        enabled = enable;
+    }
+
+    /**
+     * @return True if JFR is available in this JVM.
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * @return True if any of the events is enabled in a running recording.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start timing the compilation of a specification.
+     * @return The event to commit when it is compiled, or null if the event is not enabled.
+     */
+    public static Object beginCompile() {
+        if (!enabled) {
+            return null;
+        }
+        return JfrMarkingEvents.beginCompile();
+    }
+
+    /**
+     * Finish timing the compilation of a specification.
+     * @param event The event from beginCompile.
+     * @param specification The normalised specification.
+     * @param instances The number of feature instances it was compiled to.
+     */
+    public static void commitCompile(Object event, String specification, int instances) {
+        if (event != null) {
+            JfrMarkingEvents.commitCompile(event, specification.hashCode(), instances);
+        }
+    }
+
+    /**
+     * Start timing the translation of an answer to Input.
+     * @return The event to commit when it is translated, or null if the event is not enabled.
+     */
+    public static Object beginTranslate() {
+        if (!enabled) {
+            return null;
+        }
+        return JfrMarkingEvents.beginTranslate();
+    }
+
+    /**
+     * Finish timing the translation of an answer to Input.
+     * @param event The event from beginTranslate.
+     * @param input The translated answer.
+     */
+    public static void commitTranslate(Object event, Input input) {
+        if (event != null) {
+            JfrMarkingEvents.commitTranslate(event, input.getLines().size(), pointCount(input));
+        }
+    }
+
+    /**
+     * Start timing the test of a feature instance.
+     * @return The event to commit when it is tested, or null if the event is not enabled.
+     */
+    public static Object beginFeature() {
+        if (!enabled) {
+            return null;
+        }
+        return JfrMarkingEvents.beginFeature();
+    }
+
+    /**
+     * Finish timing the test of a feature instance.
+     * @param event The event from beginFeature.
+     * @param specificationHash The hash code of the normalised specification the instance is part of.
+     * @param tag The tag of the feature.
+     * @param input The answer.
+     * @param passed Whether the answer passed.
+     */
+    public static void commitFeature(Object event, int specificationHash, String tag, Input input, boolean passed) {
+        if (event != null) {
+            JfrMarkingEvents.commitFeature(event, specificationHash, tag, input.getLines().size(), pointCount(input),
+                passed);
+        }
+    }
+
+    /**
+     * Start timing a search for a mapping from names to lines.
+     * @return The event to commit when the search finishes, or null if the event is not enabled.
+     */
+    public static Object beginSolve() {
+        if (!enabled) {
+            return null;
+        }
+        return JfrMarkingEvents.beginSolve();
+    }
+
+    /**
+     * Finish timing a search for a mapping from names to lines.
+     * @param event The event from beginSolve.
+     * @param lines The number of lines in the answer.
+     * @param names The number of names being mapped.
+     * @param assignments The number of assignments the search tried.
+     * @param found Whether it found a mapping.
+     */
+    public static void commitSolve(Object event, int lines, int names, int assignments, boolean found) {
+        if (event != null) {
+            JfrMarkingEvents.commitSolve(event, lines, names, assignments, found);
+        }
+    }
+
+    /**
+     * @param input An answer.
+     * @return The number of points in all of its lines.
+     */
+    private static int pointCount(Input input) {
+        int points = 0;
+        for (Line line : input.getLines()) {
+            points += line.size();
+        }
+        return points;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import org.isaacphysics.graphchecker.settings.SettingsInterface;
+
+/**
+ * Something that is told where the time goes while answers are translated and marked.
+ *
+ * Every method does nothing by default, so an implementation only needs to override what it is interested in.
+ * Implementations are called from whichever threads are marking, so they must be thread-safe, and they are called once
+ * or more per feature per answer, so they should be cheap. InMemoryMarkingMetrics is a ready-made implementation.
+ */
+public interface MarkingMetrics {
+
+    /**
+     * The name of the cache of compiled matchers in Features.
+     */
+    String MATCHER_CACHE = "matchers";
+
+    /**
+     * The name of the per-answer cache of intersection tables in Context.
+     */
+    String INTERSECTION_TABLE_CACHE = "intersectionTables";
+
+    /**
+     * The name of the per-instance caches of line feature verdicts in the through: and points: features.
+     */
+    String VERDICT_CACHE = "verdicts";
+
+    /**
+     * Metrics which are not recorded anywhere. This is the default.
+     */
+    MarkingMetrics NONE = new MarkingMetrics() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * Settings for metrics.
+     */
+    interface Settings extends SettingsInterface {
+        /**
+         * @return Where to report metrics to.
+         */
+        default MarkingMetrics getMarkingMetrics() {
+            return NONE;
+        }
+    }
+
+    /**
+     * @return True if anything is recorded. If not, callers can skip the work of measuring.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * An answer has been marked against a specification.
+     * @param nanos How long it took.
+     * @param match Whether the answer matched.
+     */
+    default void recordMark(long nanos, boolean match) {
+    }
+
+    /**
+     * An answer could not be marked before its MarkingBudget ran out.
+     * @param nanos How long it took to run out.
+     */
+    default void recordUndetermined(long nanos) {
+    }
+
+    /**
+     * A feature instance has been tested against an answer.
+     * @param tag The tag of the feature, such as "through" or "slope".
+     * @param nanos How long it took.
+     * @param passed Whether the answer passed.
+     */
+    default void recordFeature(String tag, long nanos, boolean passed) {
+    }
+
+    /**
+     * An answer has been translated to Input.
+     * @param lines The number of lines in the answer.
+     * @param points The number of points in all of those lines.
+     */
+    default void recordInput(int lines, int points) {
+    }
+
+    /**
+     * A search for a mapping from names to lines has finished.
+     * @param assignments The number of times a name was tentatively assigned to a line during the search.
+     */
+    default void recordAssignments(int assignments) {
+    }
+
+    /**
+     * A cache has been looked in.
+     * @param cache The name of the cache, such as MATCHER_CACHE.
+     * @param hit Whether what was wanted was in the cache.
+     */
+    default void recordCacheAccess(String cache, boolean hit) {
+    }
+}
@@ -0,0 +1,419 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.PointOfInterest;
+import org.isaacphysics.graphchecker.data.PointType;
+import org.isaacphysics.graphchecker.settings.SettingsInterface;
+import org.isaacphysics.graphchecker.settings.SettingsSnapshot;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A log of marks that took too long, with everything needed to mark them again.
+ *
+ * When getFailingSpecs takes longer than the threshold in the settings, the specification, the Input, a snapshot of the
+ * settings and the time taken by each feature instance are captured. Captures are written to JSON files in a directory
+ * by a background thread, so marking never waits for the disk. The files form a ring: the oldest is overwritten once
+ * there are as many as the settings allow. If captures arrive faster than they can be written, the extras are dropped.
+ *
+ * The Input is written as an answer in the same JSON format as GraphAnswer, so AnswerJsonToInput can read it back.
+ * It is the Input after any line simplification, and the snapshot does not simplify, so reading the answer and
+ * marking it with the snapshot repeats the captured mark.
+ */
+public final class SlowMarkLog {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowMarkLog.class);
+
+    private static final ObjectMapper om = new ObjectMapper();
+
+    private static final Map<Settings, SlowMarkLog> SLOW_MARK_LOG_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * The number of captures that can be waiting to be written before more are dropped.
+     */
+    private static final int QUEUE_SIZE = 16;
+
+    private static final String FILE_PREFIX = "slow-mark-";
+    private static final String FILE_SUFFIX = ".json";
+
+    /**
+     * Settings for capturing slow marks.
+     */
+    public interface Settings extends SettingsInterface {
+        /**
+         * @return The directory to write captures to, or null to capture nothing. This is the default.
+         */
+        @Nullable
+        default Path getSlowMarkDirectory() {
+            return null;
+        }
+
+        /**
+         * @return How long getFailingSpecs has to take, in milliseconds, for the mark to be captured.
+         */
+        @SuppressWarnings("magicNumber")
+        default long getSlowMarkThresholdMillis() {
+            return 1000;
+        }
+
+        /**
+         * @return The greatest number of capture files to keep.
+         */
+        @SuppressWarnings("magicNumber")
+        default int getSlowMarkFiles() {
+            return 100;
+        }
+
+        /**
+         * Factory method to get a SlowMarkLog with these settings.
+         *
+         * SlowMarkLog objects are cached by this method, so there is one ring of files and one writer thread per
+         * settings object.
+         *
+         * @return A SlowMarkLog with these settings.
+         */
+        default SlowMarkLog getSlowMarkLog() {
+            return SLOW_MARK_LOG_CACHE.computeIfAbsent(this, SlowMarkLog::new);
+        }
+    }
+
+    @Nullable
+    private final Path directory;
+    private final long thresholdNanos;
+    private final int files;
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    @Nullable
+    private final ThreadPoolExecutor writer;
+
+    /**
+     * Create a slow mark log.
+     * @param settings The settings for the log.
+     */
+    private SlowMarkLog(Settings settings) {
+        this.directory = settings.getSlowMarkDirectory();
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(settings.getSlowMarkThresholdMillis());
+        this.files = Math.max(1, settings.getSlowMarkFiles());
+        if (directory == null) {
+            this.writer = null;
+        } else {
+            this.writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "slow-mark-writer");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, executor) -> dropped.increment());
+        }
+    }
+
+    /**
+     * @return True if slow marks are captured. If not, callers can skip timing each feature instance.
+     */
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * @param totalNanos How long a mark took.
+     * @return True if slow marks are captured and a mark that took this long should be.
+     */
+    public boolean isSlow(long totalNanos) {
+        return writer != null && totalNanos >= thresholdNanos;
+    }
+
+    /**
+     * Capture a mark if it was slow.
+     *
+     * @param specification The normalised specification.
+     * @param input The input that was marked.
+     * @param settings The settings it was marked with.
+     * @param features The tagged specification of each feature instance, in the order they were tested.
+     * @param featureNanos How long each feature instance took.
+     * @param failingSpecs The specifications the input failed, or null if its MarkingBudget ran out first.
+     * @param totalNanos How long the whole mark took.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    public void offer(String specification, Input input, SettingsWrapper settings, List<String> features,
+                      long[] featureNanos, @Nullable List<String> failingSpecs, long totalNanos) {
+        if (!isSlow(totalNanos)) {
+            return;
+        }
+        Instant capturedAt = Instant.now();
+        List<String> failing = failingSpecs == null ? null : ImmutableList.copyOf(failingSpecs);
+        writer.execute(() -> write(capturedAt, specification, input, settings, features, featureNanos, failing,
+            totalNanos));
+    }
+
+    /**
+     * Write a capture to the next file in the ring.
+     *
+     * Any failure drops the capture, rather than the thread it is written on, and the partly written file is removed.
+     *
+     * @param capturedAt When the mark was captured.
+     * @param specification The normalised specification.
+     * @param input The input that was marked.
+     * @param settings The settings it was marked with.
+     * @param features The tagged specification of each feature instance.
+     * @param featureNanos How long each feature instance took.
+     * @param failingSpecs The specifications the input failed, or null if its MarkingBudget ran out first.
+     * @param totalNanos How long the whole mark took.
+     */
+    private void write(Instant capturedAt, String specification, Input input, SettingsWrapper settings,
+                       List<String> features, long[] featureNanos, @Nullable List<String> failingSpecs,
+                       long totalNanos) {
+        Path file = directory.resolve(String.format("%s%04d%s", FILE_PREFIX, sequence.getAndIncrement() % files,
+            FILE_SUFFIX));
+        Path temporary = null;
+        try {
+            ObjectNode capture = toCapture(capturedAt, specification, input, settings, features, featureNanos,
+                failingSpecs, totalNanos);
+            Files.createDirectories(directory);
+            temporary = Files.createTempFile(directory, FILE_PREFIX, ".tmp");
+            om.writeValue(temporary.toFile(), capture);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            temporary = null;
+            written.increment();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write slow mark to " + file, e);
+            dropped.increment();
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    log.warn("Could not delete " + temporary, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the JSON of a capture.
+     *
+     * @param capturedAt When the mark was captured.
+     * @param specification The normalised specification.
+     * @param input The input that was marked.
+     * @param settings The settings it was marked with.
+     * @param features The tagged specification of each feature instance.
+     * @param featureNanos How long each feature instance took.
+     * @param failingSpecs The specifications the input failed, or null if its MarkingBudget ran out first.
+     * @param totalNanos How long the whole mark took.
+     * @return The capture.
+     */
+    private static ObjectNode toCapture(Instant capturedAt, String specification, Input input,
+                                        SettingsWrapper settings, List<String> features, long[] featureNanos,
+                                        @Nullable List<String> failingSpecs, long totalNanos) {
+        ObjectNode capture = om.createObjectNode();
+        capture.put("capturedAt", capturedAt.toString());
+        capture.put("specification", specification);
+        capture.put("totalNanos", totalNanos);
+        ArrayNode phases = capture.putArray("features");
+        for (int i = 0; i < features.size(); i++) {
+            phases.addObject()
+                .put("feature", features.get(i))
+                .put("nanos", featureNanos[i]);
+        }
+        if (failingSpecs == null) {
+            capture.put("undetermined", true);
+        } else {
+            ArrayNode failing = capture.putArray("failingSpecs");
+            failingSpecs.forEach(failing::add);
+        }
+        capture.set("settings", om.valueToTree(SettingsSnapshot.of(settings)));
+        capture.set("answer", toAnswer(input));
+        return capture;
+    }
+
+    /**
+     * Write an Input as an answer in the same JSON format as GraphAnswer.
+     * @param input The input.
+     * @return The answer.
+     */
+    private static ObjectNode toAnswer(Input input) {
+        ObjectNode answer = om.createObjectNode();
+        ArrayNode curves = answer.putArray("curves");
+        for (Line line : input.getLines()) {
+            ObjectNode curve = curves.addObject();
+            ArrayNode points = curve.putArray("pts");
+            for (int i = 0; i < line.size(); i++) {
+                points.addArray().add(line.getX(i)).add(line.getY(i));
+            }
+            ArrayNode maxima = curve.putArray("maxima");
+            ArrayNode minima = curve.putArray("minima");
+            for (PointOfInterest point : line.getPointsOfInterest()) {
+                ArrayNode target;
+                if (point.getPointType() == PointType.MAXIMA) {
+                    target = maxima;
+                } else {
+                    target = minima;
+                }
+                target.addArray().add(point.getX()).add(point.getY());
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * @return The number of captures written.
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return The number of captures dropped, because too many were waiting or they could not be written.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Wait for the captures offered so far to be written.
+     * @param timeout How long to wait.
+     * @param unit The unit of the timeout.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws TimeoutException If they are not written in time.
+     */
+    @VisibleForTesting
+    void awaitWritten(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.submit(() -> { }).get(timeout, unit);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Read a capture written by a slow mark log.
+     * @param file The capture file.
+     * @return The capture.
+     * @throws IOException If the file cannot be read.
+     */
+    public static Capture read(Path file) throws IOException {
+        return new Capture(om.readTree(file.toFile()));
+    }
+
+    /**
+     * A slow mark read back from its file.
+     */
+    public static final class Capture {
+        private final JsonNode capture;
+
+        /**
+         * Create a capture from its JSON.
+         * @param capture The JSON.
+         */
+        private Capture(JsonNode capture) {
+            this.capture = capture;
+        }
+
+        /**
+         * @return When the mark was captured, as an ISO-8601 instant.
+         */
+        public String getCapturedAt() {
+            return capture.path("capturedAt").asText();
+        }
+
+        /**
+         * @return The normalised specification.
+         */
+        public String getSpecification() {
+            return capture.path("specification").asText();
+        }
+
+        /**
+         * @return How long the mark took when it was captured.
+         */
+        public long getTotalNanos() {
+            return capture.path("totalNanos").asLong();
+        }
+
+        /**
+         * @return True if the MarkingBudget of the mark ran out before the input was marked.
+         */
+        public boolean isUndetermined() {
+            return capture.path("undetermined").asBoolean();
+        }
+
+        /**
+         * @return The specifications the input failed when it was captured; empty if it was undetermined.
+         */
+        public List<String> getFailingSpecs() {
+            ImmutableList.Builder<String> failing = ImmutableList.builder();
+            capture.path("failingSpecs").forEach(spec -> failing.add(spec.asText()));
+            return failing.build();
+        }
+
+        /**
+         * @return How long each feature instance took when it was captured, as "nanos feature" lines.
+         */
+        public List<String> getFeatureTimings() {
+            ImmutableList.Builder<String> timings = ImmutableList.builder();
+            capture.path("features").forEach(feature ->
+                timings.add(feature.path("nanos").asLong() + " " + feature.path("feature").asText()));
+            return timings.build();
+        }
+
+        /**
+         * @return The settings the mark was made with.
+         * @throws IOException If the settings in the file are not valid.
+         */
+        public SettingsSnapshot getSettings() throws IOException {
+            return om.treeToValue(capture.path("settings"), SettingsSnapshot.class);
+        }
+
+        /**
+         * @return The input, as answer JSON for AnswerJsonToInput to read.
+         */
+        public String getAnswerJson() {
+            return capture.path("answer").toString();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.settings;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import org.isaacphysics.graphchecker.geometry.Sector;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * A copy of the values of the marking settings, which can be written to JSON and read back.
+ *
+ * Only the values that change how an Input is marked are kept: the slope, symmetry and sector settings. Everything
+ * else, such as line simplification and metrics, has its default value, so marking with a snapshot does the same
+ * marking as the original settings did once the answer was translated, without reporting or capturing anything.
+ */
+@JsonAutoDetect(getterVisibility = JsonAutoDetect.Visibility.NONE,
+    isGetterVisibility = JsonAutoDetect.Visibility.NONE,
+    fieldVisibility = JsonAutoDetect.Visibility.NONE)
+public final class SettingsSnapshot implements SettingsWrapper {
+
+    @JsonProperty
+    private final double slopeThreshold;
+    @JsonProperty
+    private final int numberOfPointsAtEnds;
+    @JsonProperty
+    private final double symmetrySimilarity;
+    @JsonProperty("orderedSectors")
+    private final List<String> orderedSectorNames;
+    @JsonProperty
+    private final double axisSlop;
+    @JsonProperty
+    private final double originSlop;
+    @JsonProperty
+    private final double relaxedOriginSlop;
+
+    @JsonIgnore
+    private final List<Sector> orderedSectors;
+
+    /**
+     * Create a snapshot of some settings.
+     * @param slopeThreshold See SlopeFeature.Settings.
+     * @param numberOfPointsAtEnds See SlopeFeature.Settings.
+     * @param symmetrySimilarity See SymmetryFeature.Settings.
+     * @param orderedSectors The names of the sectors; see SectorClassifier.Settings.
+     * @param axisSlop See SectorBuilder.Settings.
+     * @param originSlop See SectorBuilder.Settings.
+     * @param relaxedOriginSlop See SectorBuilder.Settings.
+     */
+    @JsonCreator
+    public SettingsSnapshot(@JsonProperty("slopeThreshold") double slopeThreshold,
+                            @JsonProperty("numberOfPointsAtEnds") int numberOfPointsAtEnds,
+                            @JsonProperty("symmetrySimilarity") double symmetrySimilarity,
+                            @JsonProperty("orderedSectors") List<String> orderedSectors,
+                            @JsonProperty("axisSlop") double axisSlop,
+                            @JsonProperty("originSlop") double originSlop,
+                            @JsonProperty("relaxedOriginSlop") double relaxedOriginSlop) {
+        this.slopeThreshold = slopeThreshold;
+        this.numberOfPointsAtEnds = numberOfPointsAtEnds;
+        this.symmetrySimilarity = symmetrySimilarity;
+        this.orderedSectorNames = ImmutableList.copyOf(orderedSectors);
+        this.axisSlop = axisSlop;
+        this.originSlop = originSlop;
+        this.relaxedOriginSlop = relaxedOriginSlop;
+        this.orderedSectors = getSectorBuilder().fromList(orderedSectorNames.stream());
+    }
+
+    /**
+     * Take a snapshot of some settings.
+     * @param settings The settings.
+     * @return A snapshot of their values.
+     */
+    public static SettingsSnapshot of(SettingsWrapper settings) {
+        return new SettingsSnapshot(
+            settings.getSlopeThreshold(),
+            settings.getNumberOfPointsAtEnds(),
+            settings.getSymmetrySimilarity(),
+            settings.getOrderedSectors().stream().map(Sector::toString).collect(Collectors.toList()),
+            settings.getAxisSlop(),
+            settings.getOriginSlop(),
+            settings.getRelaxedOriginSlop());
+    }
+
+    @Override
+    public double getSlopeThreshold() {
+        return slopeThreshold;
+    }
+
+    @Override
+    public int getNumberOfPointsAtEnds() {
+        return numberOfPointsAtEnds;
+    }
+
+    @Override
+    public double getSymmetrySimilarity() {
+        return symmetrySimilarity;
+    }
+
+    @Override
+    public List<Sector> getOrderedSectors() {
+        return orderedSectors;
+    }
+
+    @Override
+    public double getAxisSlop() {
+        return axisSlop;
+    }
+
+    @Override
+    public double getOriginSlop() {
+        return originSlop;
+    }
+
+    @Override
+    public double getRelaxedOriginSlop() {
+        return relaxedOriginSlop;
+    }
+}
@@ -19,6 +19,8 @@ import org.isaacphysics.graphchecker.geometry.SectorBuilder;
 import org.isaacphysics.graphchecker.geometry.SectorClassifier;
 import org.isaacphysics.graphchecker.features.SlopeFeature;
 import org.isaacphysics.graphchecker.features.SymmetryFeature;
+import org.isaacphysics.graphchecker.metrics.SlowMarkLog;
+import org.isaacphysics.graphchecker.translation.AnswerToInput;
 
 /**
  * Any customised settings must inherit from this wrapper in order to have all the required settings.
@@ -31,7 +33,20 @@ public interface SettingsWrapper extends SettingsInterface.None,
     SlopeFeature.Settings,
     SymmetryFeature.Settings,
     SectorBuilder.Settings,
-    SectorClassifier.Settings {
+    SectorClassifier.Settings,
+    AnswerToInput.Settings,
+    SlowMarkLog.Settings {
+
+    /**
+     * Keep as many points at each end of a line as slope is measured over, so simplifying never changes the slope at
+     * the ends.
+     *
+     * @return The number of points at each end of a line that are never simplified away.
+     */
+    @Override
+    default int getSimplificationKeptEndPoints() {
+        return getNumberOfPointsAtEnds();
+    }
 
     /**
      * The default set of settings for everything.
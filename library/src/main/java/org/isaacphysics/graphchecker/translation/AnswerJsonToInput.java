@@ -0,0 +1,296 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.translation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.PackedPoints;
+import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.data.PointOfInterest;
+import org.isaacphysics.graphchecker.data.PointType;
+import org.isaacphysics.graphchecker.geometry.LineSimplifier;
+import org.isaacphysics.graphchecker.metrics.MarkingEvents;
+import org.isaacphysics.graphchecker.metrics.MarkingMetrics;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reader from JSON answer text straight to Input, without building a GraphAnswer on the way.
+ *
+ * Produces exactly the same Input as parsing a GraphAnswer and applying AnswerToInput, but reads the JSON a token at a
+ * time: points go straight into packed co-ordinate arrays, and the fields marking never looks at (canvas size, end
+ * points, axis intercepts, bounds, symbols) are skipped without being built. Points may be written either as [x, y]
+ * arrays or as {"x": x, "y": y} objects. As with AnswerToInput, the lines are simplified if the settings ask for it,
+ * and the size of each answer is reported to the marking metrics and MarkingEvents.
+ */
+public class AnswerJsonToInput {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final int INITIAL_POINTS = 64;
+
+    private final LineSimplifier simplifier;
+    private final MarkingMetrics metrics;
+
+    /**
+     * Create a reader with the default settings, which do not simplify lines.
+     */
+    public AnswerJsonToInput() {
+        this(SettingsWrapper.DEFAULT);
+    }
+
+    /**
+     * Create a reader with custom settings.
+     * @param settings The settings, which say how lines are simplified and where metrics go.
+     */
+    public AnswerJsonToInput(AnswerToInput.Settings settings) {
+        this.simplifier = settings.getLineSimplifier();
+        this.metrics = settings.getMarkingMetrics();
+    }
+
+    /**
+     * Read an answer from JSON text.
+     * @param json The answer, in the same JSON format as GraphAnswer.
+     * @return The answer as Input.
+     * @throws IOException If the JSON is malformed or is not an answer.
+     */
+    public Input read(String json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            parser.nextToken();
+            return read(parser);
+        }
+    }
+
+    /**
+     * Read an answer from a stream of JSON.
+     * @param json The answer, in the same JSON format as GraphAnswer.
+     * @return The answer as Input.
+     * @throws IOException If the stream cannot be read, or the JSON is malformed or is not an answer.
+     */
+    public Input read(InputStream json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            parser.nextToken();
+            return read(parser);
+        }
+    }
+
+    /**
+     * Read an answer from a parser, so an answer can be read from inside a larger document.
+     *
+     * The parser must be on the START_OBJECT token of the answer, and is left on its matching END_OBJECT token.
+     *
+     * @param parser The parser.
+     * @return The answer as Input.
+     * @throws IOException If the JSON is malformed or is not an answer.
+     */
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
+    public Input read(JsonParser parser) throws IOException {
+        Object event = MarkingEvents.beginTranslate();
+        expect(parser, JsonToken.START_OBJECT, "an answer");
+        List<Line> lines = new ArrayList<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("curves".equals(field) && value != JsonToken.VALUE_NULL) {
+                expect(parser, JsonToken.START_ARRAY, "a list of curves");
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    lines.add(readCurve(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        lines.sort(Comparator.comparingDouble(a -> a.size() > 0 ? a.getX(0) : 0.0));
+        Input input = simplifier.simplify(new Input(lines));
+        AnswerToInput.recordInput(metrics, input);
+        MarkingEvents.commitTranslate(event, input);
+        return input;
+    }
+
+    /**
+     * Read one curve into a Line, reversing it if it was drawn right to left.
+     * @param parser The parser, on the START_OBJECT token of the curve.
+     * @return The curve as a Line.
+     * @throws IOException If the JSON is malformed or is not a curve.
+     */
+    private Line readCurve(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT, "a curve");
+        double[] xs = new double[INITIAL_POINTS];
+        double[] ys = new double[INITIAL_POINTS];
+        int size = 0;
+        double[] xy = new double[2];
+        List<PointOfInterest> maxima = new ArrayList<>();
+        List<PointOfInterest> minima = new ArrayList<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_NULL) {
+                continue;
+            }
+            switch (field) {
+                case "pts":
+                    expect(parser, JsonToken.START_ARRAY, "a list of points");
+                    size = 0;
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        if (size == xs.length) {
+                            xs = Arrays.copyOf(xs, size * 2);
+                            ys = Arrays.copyOf(ys, size * 2);
+                        }
+                        readPoint(parser, xy);
+                        xs[size] = xy[0];
+                        ys[size] = xy[1];
+                        size++;
+                    }
+                    break;
+                case "maxima":
+                    maxima = readPointsOfInterest(parser, PointType.MAXIMA);
+                    break;
+                case "minima":
+                    minima = readPointsOfInterest(parser, PointType.MINIMA);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+
+        if (size > 2 && xs[0] > xs[size - 1]) {
+            reverse(xs, size);
+            reverse(ys, size);
+        }
+
+        // Maxima before minima, so the stable sort breaks ties the same way AnswerToInput does.
+        List<PointOfInterest> pointsOfInterest = new ArrayList<>(maxima.size() + minima.size());
+        pointsOfInterest.addAll(maxima);
+        pointsOfInterest.addAll(minima);
+        pointsOfInterest.sort(Comparator.comparingDouble(Point::getX));
+
+        return new Line(PackedPoints.wrap(xs, ys, size), pointsOfInterest);
+    }
+
+    /**
+     * Read a list of points of interest.
+     * @param parser The parser, on the START_ARRAY token of the list.
+     * @param pointType The type of the points.
+     * @return The points of interest, in the order they were written.
+     * @throws IOException If the JSON is malformed or is not a list of points.
+     */
+    private List<PointOfInterest> readPointsOfInterest(JsonParser parser, PointType pointType) throws IOException {
+        expect(parser, JsonToken.START_ARRAY, "a list of points");
+        List<PointOfInterest> points = new ArrayList<>();
+        double[] xy = new double[2];
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            readPoint(parser, xy);
+            points.add(new PointOfInterest(xy[0], xy[1], pointType));
+        }
+        return points;
+    }
+
+    /**
+     * Read a point, as either [x, y] or {"x": x, "y": y}.
+     * @param parser The parser, on the first token of the point.
+     * @param xy Where to store the X and Y co-ordinates.
+     * @throws IOException If the JSON is malformed or is not a point.
+     */
+    private void readPoint(JsonParser parser, double[] xy) throws IOException {
+        double x = 0;
+        double y = 0;
+        if (parser.getCurrentToken() == JsonToken.START_ARRAY) {
+            parser.nextToken();
+            x = readDouble(parser);
+            parser.nextToken();
+            y = readDouble(parser);
+            if (parser.nextToken() != JsonToken.END_ARRAY) {
+                throw new JsonParseException(parser, "Expected a point to have two co-ordinates");
+            }
+        } else {
+            expect(parser, JsonToken.START_OBJECT, "a point");
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("x".equals(field)) {
+                    x = readDouble(parser);
+                } else if ("y".equals(field)) {
+                    y = readDouble(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        xy[0] = x;
+        xy[1] = y;
+    }
+
+    /**
+     * Read a co-ordinate, accepting the same forms that binding to a double would.
+     * @param parser The parser, on the token of the co-ordinate.
+     * @return The co-ordinate.
+     * @throws IOException If the JSON is malformed or is not a number.
+     */
+    private double readDouble(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_STRING:
+                try {
+                    return Double.parseDouble(parser.getText().trim());
+                } catch (NumberFormatException e) {
+                    throw new JsonParseException(parser, "Expected a co-ordinate but got " + parser.getText(), e);
+                }
+            case VALUE_NULL:
+                return 0;
+            default:
+                throw new JsonParseException(parser, "Expected a co-ordinate but got " + parser.getCurrentToken());
+        }
+    }
+
+    /**
+     * Check that the parser is on the token we expect.
+     * @param parser The parser.
+     * @param token The expected token.
+     * @param what A description of what we were expecting, for the error message.
+     * @throws JsonParseException If the parser is on a different token.
+     */
+    private static void expect(JsonParser parser, JsonToken token, String what) throws JsonParseException {
+        if (parser.getCurrentToken() != token) {
+            throw new JsonParseException(parser, "Expected " + what + " but got " + parser.getCurrentToken());
+        }
+    }
+
+    /**
+     * Reverse the start of an array in place.
+     * @param values The array.
+     * @param size The number of values at the start of the array to reverse.
+     */
+    private static void reverse(double[] values, int size) {
+        for (int i = 0, j = size - 1; i < j; i++, j--) {
+            double tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+}
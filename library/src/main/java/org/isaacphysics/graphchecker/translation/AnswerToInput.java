@@ -18,12 +18,16 @@ package org.isaacphysics.graphchecker.translation;
 import org.isaacphysics.graphchecker.data.Input;
 import org.isaacphysics.graphchecker.data.Point;
 import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.PackedPoints;
 import org.isaacphysics.graphchecker.data.PointOfInterest;
 import org.isaacphysics.graphchecker.data.PointType;
 import org.isaacphysics.graphchecker.dos.Curve;
 import org.isaacphysics.graphchecker.dos.GraphAnswer;
+import org.isaacphysics.graphchecker.geometry.LineSimplifier;
+import org.isaacphysics.graphchecker.metrics.MarkingEvents;
+import org.isaacphysics.graphchecker.metrics.MarkingMetrics;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
 
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.function.Function;
@@ -34,16 +38,58 @@ import java.util.stream.Stream;
  * Converter from JSON answer format to Input.
  *
  * Throws away most of the extraneous details and puts everything (lines, the set of lines, points of interest) in
- * order of increasing x co-ordinate.
+ * order of increasing x co-ordinate. If the settings ask for it, the lines are then simplified by a LineSimplifier.
+ * The size of each translated answer is reported to the marking metrics and MarkingEvents.
  */
 public class AnswerToInput implements Function<GraphAnswer, Input> {
 
+    private final LineSimplifier simplifier;
+    private final MarkingMetrics metrics;
+
+    /**
+     * Settings for translating answers.
+     */
+    public interface Settings extends LineSimplifier.Settings, MarkingMetrics.Settings {
+    }
+
+    /**
+     * Create a converter with the default settings, which do not simplify lines.
+     */
+    public AnswerToInput() {
+        this(SettingsWrapper.DEFAULT);
+    }
+
+    /**
+     * Create a converter with custom settings.
+     * @param settings The settings, which say how lines are simplified and where metrics go.
+     */
+    public AnswerToInput(Settings settings) {
+        this.simplifier = settings.getLineSimplifier();
+        this.metrics = settings.getMarkingMetrics();
+    }
+
     @Override
+    @SuppressWarnings("checkstyle:avoidInlineConditionals")
     public Input apply(final GraphAnswer graphAnswer) {
-        return new Input(graphAnswer.getCurves().stream()
+        Object event = MarkingEvents.beginTranslate();
+        Input input = simplifier.simplify(new Input(graphAnswer.getCurves().stream()
             .map(this::curveToLine)
-            .sorted(Comparator.comparingDouble(a -> a.getPoints().stream().findFirst().map(Point::getX).orElse(0.0)))
-            .collect(Collectors.toList()));
+            .sorted(Comparator.comparingDouble(a -> a.size() > 0 ? a.getX(0) : 0.0))
+            .collect(Collectors.toList())));
+        recordInput(metrics, input);
+        MarkingEvents.commitTranslate(event, input);
+        return input;
+    }
+
+    /**
+     * Report the size of a translated answer to the marking metrics.
+     * @param metrics The marking metrics.
+     * @param input The translated answer.
+     */
+    static void recordInput(MarkingMetrics metrics, Input input) {
+        if (metrics.isEnabled()) {
+            metrics.recordInput(input.getLines().size(), input.getLines().stream().mapToInt(Line::size).sum());
+        }
     }
 
     /**
@@ -52,13 +98,14 @@ public class AnswerToInput implements Function<GraphAnswer, Input> {
      * @return A Line representing that Curve in a normalised format.
      */
     private Line curveToLine(final Curve curve) {
-        List<Point> points = curve.getPts().stream()
-            .map(pt -> new Point(pt.getX(), pt.getY()))
-            .collect(Collectors.toList());
+        double[] xs = curve.getPts().stream().mapToDouble(pt -> pt.getX()).toArray();
+        double[] ys = curve.getPts().stream().mapToDouble(pt -> pt.getY()).toArray();
+        int size = xs.length;
 
-        if (points.size() > 2) {
-            if (points.get(0).getX() > points.get(points.size() - 1).getX()) {
-                Collections.reverse(points);
+        if (size > 2) {
+            if (xs[0] > xs[size - 1]) {
+                reverse(xs);
+                reverse(ys);
             }
         }
 
@@ -70,6 +117,18 @@ public class AnswerToInput implements Function<GraphAnswer, Input> {
             .sorted(Comparator.comparingDouble(Point::getX))
             .collect(Collectors.toList());
 
-        return new Line(points, pointsOfInterest);
+        return new Line(PackedPoints.wrap(xs, ys, size), pointsOfInterest);
+    }
+
+    /**
+     * Reverse an array in place.
+     * @param values The array.
+     */
+    private static void reverse(double[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            double tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
     }
 }
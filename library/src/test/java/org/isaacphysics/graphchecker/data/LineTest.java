@@ -0,0 +1,57 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.data;
+import org.isaacphysics.graphchecker.TestHelpers;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class LineTest {
+
+    @Test
+    public void derivedDataIsCalculatedOncePerLine() {
+        AtomicInteger calculations = new AtomicInteger();
+        Function<Line, Integer> size = line -> {
+            calculations.incrementAndGet();
+            return line.size();
+        };
+
+        Line line = TestHelpers.lineOf(x -> x, -5, 5);
+        Integer first = line.derive(size);
+
+        assertSame(first, line.derive(size));
+        assertEquals(1, calculations.get());
+
+        Line other = TestHelpers.lineOf(x -> x, -5, 5);
+        other.derive(size);
+
+        assertEquals(2, calculations.get());
+    }
+
+    @Test
+    public void equalLinesHaveEqualHashes() {
+        Line line = TestHelpers.lineOf(x -> x * x, -5, 5);
+        Line same = TestHelpers.lineOf(x -> x * x, -5, 5);
+
+        assertEquals(line, same);
+        assertEquals(line.hashCode(), same.hashCode());
+        assertEquals(line.getPoints().hashCode() + 31, line.hashCode());
+    }
+}
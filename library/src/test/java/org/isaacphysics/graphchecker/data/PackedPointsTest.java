@@ -0,0 +1,78 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class PackedPointsTest {
+
+    private final List<Point> points = Arrays.asList(
+        new Point(0, 1),
+        new Point(2, -0.0),
+        new Point(-3, 4.5),
+        new Point(6, 7)
+    );
+
+    @Test
+    public void packedPointsBehaveLikeAList() {
+        PackedPoints packed = PackedPoints.copyOf(points);
+
+        assertEquals(points, packed);
+        assertEquals(packed, points);
+        assertEquals(points.hashCode(), packed.hashCode());
+        assertEquals(points.get(2), packed.get(2));
+        assertEquals(-3, packed.getX(2), 0);
+        assertEquals(4.5, packed.getY(2), 0);
+    }
+
+    @Test
+    public void negativeZeroIsNotZero() {
+        PackedPoints packed = PackedPoints.copyOf(points);
+        PackedPoints other = PackedPoints.copyOf(Arrays.asList(
+            new Point(0, 1),
+            new Point(2, 0),
+            new Point(-3, 4.5),
+            new Point(6, 7)
+        ));
+
+        assertNotEquals(packed, other);
+    }
+
+    @Test
+    public void subListIsAView() {
+        PackedPoints packed = PackedPoints.copyOf(points);
+
+        PackedPoints middle = packed.subList(1, 3);
+
+        assertEquals(points.subList(1, 3), middle);
+        assertEquals(points.subList(1, 3).hashCode(), middle.hashCode());
+        assertEquals(2, middle.getX(0), 0);
+
+        middle.set(0, new Point(8, 9));
+        assertEquals(new Point(8, 9), packed.get(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void subListIsBounded() {
+        PackedPoints.copyOf(points).subList(1, 3).getX(2);
+    }
+}
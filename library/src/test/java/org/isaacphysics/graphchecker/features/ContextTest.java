@@ -20,8 +20,19 @@ import org.isaacphysics.graphchecker.data.Input;
 import org.junit.Test;
 import org.isaacphysics.graphchecker.TestHelpers;
 import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.geometry.IntersectionTable;
+import org.isaacphysics.graphchecker.geometry.SectorClassifier;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
 
 import java.util.Collections;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class ContextTest {
 
@@ -56,4 +67,78 @@ public class ContextTest {
 
         context = context.withFulfilledAssignments(Collections.singleton(ImmutableBiMap.of("a", line2missing)));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void unsatisfiableConstraintsGiveNoContext() {
+        Line line1 = TestHelpers.lineOf(x -> x, -10, 10);
+        Input input = TestHelpers.inputOf(line1);
+
+        Context context = new Context(input)
+            .makeNewContext(mapping -> true, "a", "b");
+
+        assertNull(context);
+    }
+
+    @Test
+    public void manyLinesAndNamesFindDistinctAssignment() {
+        Line[] lines = new Line[12];
+        for (int i = 0; i < lines.length; i++) {
+            double offset = i;
+            lines[i] = TestHelpers.lineOf(x -> x + offset, -10, 10);
+        }
+        Input input = TestHelpers.inputOf(lines);
+
+        Context context = new Context(input);
+        for (int i = 0; i < lines.length; i++) {
+            String name = "n" + i;
+            Line expected = lines[lines.length - 1 - i];
+            context = context.makeNewContext(mapping -> mapping.get(name) == expected, name);
+        }
+
+        Set<ImmutableBiMap<String, Line>> assignments = context.getAssignmentsCopy();
+        assertEquals(1, assignments.size());
+        assertEquals(lines[0], assignments.iterator().next().get("n" + (lines.length - 1)));
+    }
+
+    @Test
+    public void intersectionTableIsSharedByDerivedContexts() {
+        Line line1 = TestHelpers.lineOf(x -> x, -10, 10);
+        Line line2 = TestHelpers.lineOf(x -> -x, -10, 10);
+        Input input = TestHelpers.inputOf(line1, line2);
+        SectorClassifier classifier = SettingsWrapper.DEFAULT.getSectorClassifier();
+
+        Context context = new Context(input);
+        IntersectionTable table = context.getIntersectionTable(classifier);
+        Context derived = context.makeNewContext(mapping -> true, "a", "b");
+
+        assertSame(table, derived.getIntersectionTable(classifier));
+        assertSame(table.getIntersections(line1, line2), table.getIntersections(line1, line2));
+        assertEquals(Collections.singletonList(new Point(0, 0)), table.getIntersections(line1, line2));
+    }
+
+    @Test
+    public void equalLinesAreMerged() {
+        Line line1 = TestHelpers.lineOf(x -> x, -10, 10);
+        Line line2 = TestHelpers.lineOf(x -> x, -10, 10);
+        Input input = TestHelpers.inputOf(line1, line2);
+
+        Context context = new Context(input)
+            .makeNewContext(mapping -> true, "a", "b");
+
+        assertNull(context);
+    }
+
+    @Test
+    public void equalLinesCanBeMatchedByName() {
+        Line line1 = TestHelpers.lineOf(x -> x, -10, 10);
+        Line line2 = TestHelpers.lineOf(x -> x, -10, 10);
+        Input input = TestHelpers.inputOf(line1, line2);
+
+        Predicate<Input> testFeature = new Features().matcher(String.join("\r\n",
+            "match: a; through: topRight",
+            "match: b; through: topRight",
+            "intersects: a to b nowhere"));
+
+        assertFalse(testFeature.test(input));
+    }
+}
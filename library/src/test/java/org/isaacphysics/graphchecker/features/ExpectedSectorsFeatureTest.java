@@ -152,6 +152,19 @@ public class ExpectedSectorsFeatureTest {
         assertTrue(testFeature.test(TestHelpers.lineOf(x -> (x - 1) * (x - 3) * (x - 4) - minimaY - (SettingsWrapper.DEFAULT.getAxisSlop() / 4), 0.5, 10)));
     }
 
+    @Test
+    public void linesWithTheSameSectorsShareAVerdict() {
+        ExpectedSectorsFeature.Instance testFeature = expectedSectorsFeature.deserializeInternal(
+            "topLeft, -Xaxis, bottomLeft, -Yaxis, bottomRight, +Xaxis, topRight");
+
+        assertTrue(testFeature.test(TestHelpers.lineOf(x -> x*x - 2, -5, 5)));
+        assertTrue(testFeature.test(TestHelpers.lineOf(x -> x*x - 3, -4, 4)));
+        assertFalse(testFeature.test(TestHelpers.lineOf(x -> x*x + 2, -5, 5)));
+
+        assertEquals(1, testFeature.getVerdictCacheStats().hitCount());
+        assertEquals(2, testFeature.getVerdictCacheStats().missCount());
+    }
+
     @Test(timeout=1000)
     public void checkPerformance() {
         double size = 50 * Math.PI / 2;
@@ -16,10 +16,21 @@
 package org.isaacphysics.graphchecker.features;
 
 import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.geometry.Sector;
 import org.isaacphysics.graphchecker.settings.SettingsWrapper;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.Assert.*;
 import static org.isaacphysics.graphchecker.TestHelpers.inputOf;
@@ -78,6 +89,19 @@ public class FeaturesTest {
 
     }
 
+    @Test
+    public void testOrderedSectorsFromOtherSettingsCanBeMatched() {
+        SettingsWrapper settings = new SettingsWrapper() {
+            @Override
+            public List<Sector> getOrderedSectors() {
+                return SettingsWrapper.DEFAULT.getOrderedSectors();
+            }
+        };
+        Predicate<Input> testFeature = new Features(settings).matcher("through: topRight");
+
+        assertFalse(testFeature.test(inputOf(x -> x, 1, 10)));
+    }
+
     @Test
     public void testMultipleLinesFailsIfOnlyOneExpected() {
         Predicate<Input> testFeature = new Features().matcher("through:  bottomRight, topLeft");
@@ -181,4 +205,130 @@ public class FeaturesTest {
             lineOf(x -> 0.0, -10, 10)
         )));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testMatcherTestsCheapFeaturesFirst() {
+        Features.Matcher matcher = new Features().matcher(String.join("\r\n",
+            "match: a; through:topLeft, +Yaxis, topRight",
+            "through:topLeft, +Yaxis, topRight",
+            "line: 1; slope:start=flat",
+            "points:minima at origin",
+            "curves:1"));
+
+        assertEquals(Arrays.asList(
+            "curves: 1",
+            "line: 1; slope: start=flat",
+            "points: minima at origin",
+            "through: topLeft, +Yaxis, topRight",
+            "match: a; through: topLeft, +Yaxis, topRight"
+        ), matcher.getTestOrder());
+    }
+
+    @Test
+    public void testMatcherFailsFastButReportsEveryFailure() {
+        Features.Matcher matcher = new Features().matcher(
+            "curves:2\r\nthrough:topLeft, +Yaxis, topRight\r\nsymmetry:odd");
+
+        Input input = inputOf(x -> x * x + 3, -10, 10);
+
+        assertFalse(matcher.test(input));
+        assertEquals(Arrays.asList("curves: 2", "symmetry: odd"), matcher.getFailingSpecs(input));
+    }
+
+    @Test
+    public void testSolutionsMatcherFindsFirstMatchingSolution() {
+        Features features = new Features();
+        List<String> solutions = Arrays.asList(
+            "curves: 1\r\nthrough: topLeft, +Yaxis, topRight\r\nsymmetry: even",
+            "curves: 1\r\nthrough: topLeft, +Yaxis, topRight",
+            "curves: 1\r\nthrough: bottomLeft, -Yaxis, bottomRight",
+            "curves: 2\r\nmatch: a; through: topLeft, +Yaxis, topRight");
+        Features.SolutionsMatcher matcher = features.solutionsMatcher(solutions);
+
+        assertEquals(5, matcher.getSharedCount());
+
+        List<Input> inputs = Arrays.asList(
+            inputOf(x -> x * x + 3, -10, 10),
+            inputOf(x -> x > 0 ? x + 3 : x * x + 3, -10, 10),
+            inputOf(x -> -x * x - 3, -10, 10),
+            inputOf(x -> x * x * x, -10, 10),
+            inputOf(lineOf(x -> x * x + 3, -10, 10), lineOf(x -> x, -10, 10)));
+
+        for (Input input : inputs) {
+            OptionalInt expected = IntStream.range(0, solutions.size())
+                .filter(i -> features.matcher(solutions.get(i)).test(input))
+                .findFirst();
+            assertEquals(expected, matcher.firstMatch(input));
+        }
+        assertEquals(OptionalInt.of(0), matcher.firstMatch(inputs.get(0)));
+        assertEquals(OptionalInt.of(3), matcher.firstMatch(inputs.get(4)));
+        assertEquals(OptionalInt.empty(), matcher.firstMatch(inputs.get(3)));
+    }
+
+    @Test
+    public void testMarkAllKeepsInputOrder() throws InterruptedException {
+        Features features = new Features();
+        String specification = "through: topLeft, +Yaxis, topRight\r\nsymmetry: even";
+        List<Input> inputs = IntStream.range(0, 40)
+            .mapToObj(i -> i % 3 == 0
+                ? inputOf(x -> x * x + 3, -10, 10)
+                : inputOf(x -> x * x * x + i, -10, 10))
+            .collect(Collectors.toList());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<MarkResult> results;
+        try {
+            results = features.markAll(specification, inputs, executor);
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        assertEquals(inputs.size(), results.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            assertEquals(i % 3 == 0, results.get(i).isMatch());
+            assertEquals(features.matcher(specification).getFailingSpecs(inputs.get(i)),
+                results.get(i).getFailingSpecs());
+            assertTrue(results.get(i).getElapsedNanos() >= 0);
+        }
+    }
+
+    @Test(expected = StackOverflowError.class)
+    public void testMarkAllRethrowsErrors() {
+        Input overflowing = new Input(Collections.emptyList()) {
+            @Override
+            public List<Line> getLines() {
+                throw new StackOverflowError();
+            }
+        };
+
+        new Features().markAll("curves: 1", Collections.singletonList(overflowing), Runnable::run);
+    }
+
+    @Test
+    public void testMatcherIsCachedAcrossFeaturesObjects() {
+        Features.Matcher first = new Features().matcher("through:  topLeft, +Yaxis, topRight\r\nsymmetry: even ");
+        Features.Matcher second = new Features().matcher("through:  topLeft, +Yaxis, topRight\nsymmetry: even");
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testMatcherCacheRecordsHits() {
+        Features features = new Features();
+        features.matcher("curves: 7");
+        long hits = Features.getMatcherCacheStats().hitCount();
+
+        features.matcher("curves: 7");
+
+        assertEquals(hits + 1, Features.getMatcherCacheStats().hitCount());
+    }
+
+    @Test
+    public void testMatcherIsNotSharedBetweenSettings() {
+        Features.Matcher defaultMatcher = new Features().matcher("curves: 2");
+        Features.Matcher customMatcher = new Features(new SettingsWrapper() { }).matcher("curves: 2");
+
+        assertNotSame(defaultMatcher, customMatcher);
+    }
+}
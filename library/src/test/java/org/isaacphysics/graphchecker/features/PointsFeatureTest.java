@@ -22,6 +22,7 @@ import org.isaacphysics.graphchecker.data.Line;
 
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 
@@ -40,6 +41,18 @@ public class PointsFeatureTest {
         assertFalse(pointsFeature.deserializeInternal(data.get(0)).test(failLine));
     }
 
+    @Test
+    public void linesWithTheSamePointsShareAVerdict() {
+        PointsFeature.Instance testFeature = pointsFeature.deserializeInternal("minima at origin");
+
+        assertTrue(testFeature.test(TestHelpers.lineOf(x -> x * x, -5, 5)));
+        assertTrue(testFeature.test(TestHelpers.lineOf(Math::abs, -3, 3)));
+        assertFalse(testFeature.test(TestHelpers.lineOf(x -> -x * x, -5, 5)));
+
+        assertEquals(1, testFeature.getVerdictCacheStats().hitCount());
+        assertEquals(2, testFeature.getVerdictCacheStats().missCount());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void mustProvideTwoArguments() {
         pointsFeature.deserializeInternal("one,two,three");
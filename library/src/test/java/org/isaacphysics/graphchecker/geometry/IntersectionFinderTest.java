@@ -0,0 +1,94 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.TestHelpers;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Point;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class IntersectionFinderTest {
+
+    @Test
+    public void hitsAreParameterised() {
+        Line lineA = TestHelpers.lineOf(0,0, 10,10, 20,0);
+        Line lineB = TestHelpers.lineOf(0,5, 20,5);
+
+        List<IntersectionFinder.Hit> hits = IntersectionFinder.find(lineA, lineB);
+
+        assertEquals(2, hits.size());
+        assertEquals(0, hits.get(0).getSegmentA());
+        assertEquals(1, hits.get(1).getSegmentA());
+        assertEquals(0.5, hits.get(0).getT(), 1e-9);
+        assertEquals(0.25, hits.get(0).getU(), 1e-9);
+        assertEquals(new Point(5, 5), hits.get(0).getPoint());
+        assertEquals(new Point(15, 5), hits.get(1).getPoint());
+    }
+
+    @Test
+    public void crossingAtSharedPointIsReportedForBothSegments() {
+        Line lineA = TestHelpers.lineOf(0,0, 5,5, 10,10);
+        Line lineB = TestHelpers.lineOf(10,0, 0,10);
+
+        List<IntersectionFinder.Hit> hits = IntersectionFinder.find(lineA, lineB);
+
+        assertEquals(2, hits.size());
+        assertEquals(Lines.findIntersections(lineA, lineB).size(), 1);
+    }
+
+    @Test
+    public void findsTheSameHitsAsTestingEverySegmentPair() {
+        Random random = new Random(42);
+        for (int trial = 0; trial < 50; trial++) {
+            Line lineA = randomLine(random);
+            Line lineB = randomLine(random);
+
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i + 1 < lineA.size(); i++) {
+                Segment a = Segment.closed(lineA.getPoints().get(i), lineA.getPoints().get(i + 1));
+                for (int j = 0; j + 1 < lineB.size(); j++) {
+                    Segment b = Segment.closed(lineB.getPoints().get(j), lineB.getPoints().get(j + 1));
+                    if (a.intersects(b)) {
+                        expected.add(i + ":" + j);
+                    }
+                }
+            }
+
+            Set<String> actual = new HashSet<>();
+            for (IntersectionFinder.Hit hit : IntersectionFinder.find(lineA, lineB)) {
+                assertTrue(actual.add(hit.getSegmentA() + ":" + hit.getSegmentB()));
+            }
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static Line randomLine(Random random) {
+        int size = 2 + random.nextInt(30);
+        double[] coords = new double[size * 2];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = random.nextInt(21) - 10;
+        }
+        return TestHelpers.lineOf(coords);
+    }
+}
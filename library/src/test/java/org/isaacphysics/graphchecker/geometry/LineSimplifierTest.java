@@ -0,0 +1,151 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.TestHelpers;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LineSimplifierTest {
+
+    private final SettingsWrapper settings = new SettingsWrapper() {
+        @Override
+        public double getSimplificationTolerance() {
+            return 0.5;
+        }
+    };
+    private final LineSimplifier simplifier = settings.getLineSimplifier();
+
+    private final SectorBuilder sectorBuilder = settings.getSectorBuilder();
+    private final SectorTracer tracer = new SectorTracer(settings.getSectorClassifier(), new long[] {
+        sectorBuilder.toMask(sectorBuilder.byName(SectorBuilder.POSITIVE_X_AXIS))
+            | sectorBuilder.toMask(sectorBuilder.byName(SectorBuilder.NEGATIVE_X_AXIS))
+    });
+
+    private Line jitteryLine(Random random, int size) {
+        List<Point> points = new ArrayList<>();
+        double phase = random.nextDouble() * Math.PI;
+        double amplitude = 0.2 + random.nextDouble();
+        for (int i = 0; i < size; i++) {
+            double x = -1 + 2.0 * i / size;
+            double y = amplitude * Math.sin(3 * x + phase) + random.nextGaussian() * 0.001;
+            points.add(new Point(x, y));
+            if (random.nextInt(10) == 0) {
+                points.add(new Point(x, y));
+            }
+        }
+        return TestHelpers.lineOf(points);
+    }
+
+    @Test
+    public void defaultSettingsLeaveLinesAlone() {
+        LineSimplifier disabled = SettingsWrapper.DEFAULT.getLineSimplifier();
+        Line line = jitteryLine(new Random(1), 500);
+
+        assertFalse(disabled.isEnabled());
+        assertSame(line, disabled.simplify(line));
+    }
+
+    @Test
+    public void duplicatePointsAreRemovedBetweenTheKeptPoints() {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i <= 100; i++) {
+            Point point = new Point(0.5 + i * 0.001, 0.5 + i * 0.002);
+            points.add(point);
+            points.add(point);
+            points.add(point);
+        }
+        Line line = TestHelpers.lineOf(points);
+
+        Line simplified = simplifier.simplify(line);
+
+        // The points kept for the slope at each end, duplicates and all, and the middle point.
+        assertEquals(11, simplified.size());
+        assertEquals(line.getPoints().get(line.size() / 2), simplified.getPoints().get(simplified.size() / 2));
+    }
+
+    @Test
+    public void shortLinesCountTowardsTheReductionRatio() {
+        Line shortLine = TestHelpers.lineOf(new Point(0.1, 0.1), new Point(0.2, 0.2));
+
+        assertSame(shortLine, simplifier.simplify(shortLine));
+        assertEquals(2, simplifier.getPointsIn());
+        assertEquals(2, simplifier.getPointsOut());
+        assertEquals(1.0, simplifier.getReductionRatio(), 0);
+    }
+
+    @Test
+    public void denseLinesAreSimplifiedWithoutChangingTheirSectors() {
+        Random random = new Random(5);
+        long pointsBefore = 0;
+        long pointsAfter = 0;
+        for (int i = 0; i < 100; i++) {
+            Line line = jitteryLine(random, 2000);
+            long[] expectedTrace = tracer.trace(line).toArray();
+
+            Line simplified = simplifier.simplify(line);
+
+            assertArrayEquals(expectedTrace, tracer.trace(simplified).toArray());
+            for (int j = 0; j < 5; j++) {
+                assertEquals(line.getPoints().get(j), simplified.getPoints().get(j));
+                assertEquals(line.getPoints().get(line.size() - 1 - j),
+                    simplified.getPoints().get(simplified.size() - 1 - j));
+            }
+            assertEquals(Lines.getCentreOfPoints(line.getPoints()), Lines.getCentreOfPoints(simplified.getPoints()));
+            assertEquals(line.getPointsOfInterest(), simplified.getPointsOfInterest());
+            pointsBefore += line.size();
+            pointsAfter += simplified.size();
+        }
+
+        assertTrue("Only reduced " + pointsBefore + " points to " + pointsAfter, pointsBefore >= 5 * pointsAfter);
+        assertTrue(simplifier.getReductionRatio() > 1);
+    }
+
+    @Test
+    public void pointsSlopeIsMeasuredOverAreKept() {
+        SettingsWrapper wideSlope = new SettingsWrapper() {
+            @Override
+            public double getSimplificationTolerance() {
+                return 0.5;
+            }
+
+            @Override
+            public int getNumberOfPointsAtEnds() {
+                return 20;
+            }
+        };
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            points.add(new Point(0.1 + i * 0.001, 0.1 + i * 0.001));
+        }
+        Line line = TestHelpers.lineOf(points);
+
+        Line simplified = wideSlope.getLineSimplifier().simplify(line);
+
+        assertTrue(simplified.size() < line.size());
+        assertEquals(points.subList(0, 20), simplified.getPoints().subList(0, 20));
+        assertEquals(points.subList(180, 200),
+            simplified.getPoints().subList(simplified.size() - 20, simplified.size()));
+    }
+}
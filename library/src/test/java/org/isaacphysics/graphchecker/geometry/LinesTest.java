@@ -17,11 +17,17 @@ package org.isaacphysics.graphchecker.geometry;
 
 import org.isaacphysics.graphchecker.TestHelpers;
 import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.data.PointOfInterest;
+import org.isaacphysics.graphchecker.data.PointType;
 import org.junit.Test;
 import org.isaacphysics.graphchecker.data.Line;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
@@ -39,6 +45,31 @@ public class LinesTest {
         assertEquals(TestHelpers.lineOf(5,-5, 10, 0), lines.get(2));
     }
 
+    @Test
+    public void sizesOfSplitMatchSizesOfSplitLines() {
+        Random random = new Random(12);
+        for (int trial = 0; trial < 200; trial++) {
+            Line line = TestHelpers.lineOf(x -> Math.sin(x) + random.nextGaussian() * 0.1, -5, 5);
+            assertTrue(MonotoneSplit.isMonotonic(line));
+
+            List<PointOfInterest> splitPoints = new ArrayList<>();
+            int count = random.nextInt(6);
+            for (int i = 0; i < count; i++) {
+                // Split between points, exactly on points, and off the ends of the line
+                double x = random.nextBoolean() ? line.getX(random.nextInt(line.size())) : random.nextDouble() * 12 - 6;
+                splitPoints.add(new PointOfInterest(new Point(x, 0), PointType.VIRTUAL_CENTRE));
+            }
+            if (random.nextBoolean()) {
+                splitPoints.sort(Comparator.comparingDouble(PointOfInterest::getX));
+            }
+
+            List<Point> expected = Lines.splitOnPoints(line, splitPoints).stream()
+                .map(Lines::getSize)
+                .collect(Collectors.toList());
+            assertEquals(expected, Lines.getSizesOfSplit(line, splitPoints));
+        }
+    }
+
     @Test
     public void getMedianCentreOfLine() {
         Line line = TestHelpers.lineOf(-10,0, -5,5, 5,-5, 10,0);
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.data.Rect;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RangeBoundsTest {
+
+    private Rect scan(Line line, int fromIndex, int toIndex) {
+        double minX = Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int i = fromIndex; i < toIndex; i++) {
+            double x = line.getX(i);
+            double y = line.getY(i);
+            if (x < minX) minX = x;
+            if (x > maxX) maxX = x;
+            if (y < minY) minY = y;
+            if (y > maxY) maxY = y;
+        }
+        return new Rect(minX, maxX, maxY, minY);
+    }
+
+    private void assertSameRect(Rect expected, Rect actual) {
+        assertEquals(0, Double.compare(expected.getLeft(), actual.getLeft()));
+        assertEquals(0, Double.compare(expected.getRight(), actual.getRight()));
+        assertEquals(0, Double.compare(expected.getTop(), actual.getTop()));
+        assertEquals(0, Double.compare(expected.getBottom(), actual.getBottom()));
+    }
+
+    @Test
+    public void everyRangeMatchesAScan() {
+        Random random = new Random(11);
+        double[] awkward = {0.0, -0.0, Double.NaN, 1, -1};
+        for (int trial = 0; trial < 50; trial++) {
+            int size = random.nextInt(40);
+            List<Point> points = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                double x = random.nextInt(4) == 0 ? awkward[random.nextInt(awkward.length)] : random.nextGaussian();
+                double y = random.nextInt(4) == 0 ? awkward[random.nextInt(awkward.length)] : random.nextGaussian();
+                points.add(new Point(x, y));
+            }
+            Line line = new Line(points, Collections.emptyList());
+            RangeBounds bounds = RangeBounds.of(line);
+
+            for (int from = 0; from <= size; from++) {
+                for (int to = from; to <= size; to++) {
+                    assertSameRect(scan(line, from, to), bounds.boundingRect(from, to));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void indexIsBuiltOncePerLine() {
+        Line line = new Line(Collections.singletonList(new Point(1, 2)), Collections.emptyList());
+
+        assertSame(RangeBounds.of(line), RangeBounds.of(line));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rangeMustBeInsideTheLine() {
+        Line line = new Line(Collections.singletonList(new Point(1, 2)), Collections.emptyList());
+
+        RangeBounds.of(line).boundingRect(0, 2);
+    }
+}
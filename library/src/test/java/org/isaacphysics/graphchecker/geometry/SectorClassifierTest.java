@@ -0,0 +1,106 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.data.Point;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SectorClassifierTest {
+
+    private final SectorBuilder sectorBuilder = SettingsWrapper.DEFAULT.getSectorBuilder();
+    private final SectorClassifier classifier = SettingsWrapper.DEFAULT.getSectorClassifier();
+
+    @Test
+    public void sectorsHaveStableIndices() {
+        for (int i = 0; i < sectorBuilder.getSectors().size(); i++) {
+            Sector sector = sectorBuilder.byIndex(i);
+            assertEquals(i, sector.getIndex());
+            assertSame(sector, sectorBuilder.byName(sector.toString()));
+        }
+    }
+
+    @Test
+    public void masksRoundTrip() {
+        Set<Sector> sectors = new HashSet<>(Arrays.asList(
+            sectorBuilder.byName(SectorBuilder.ORIGIN),
+            sectorBuilder.byName(SectorBuilder.BOTTOM_LEFT),
+            sectorBuilder.byName(SectorBuilder.ANY)));
+
+        assertEquals(sectors, sectorBuilder.fromMask(sectorBuilder.toMask(sectors)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sectorsFromOtherBuildersHaveNoMask() {
+        Sector other = new SectorBuilder(SettingsWrapper.DEFAULT).byName(SectorBuilder.ORIGIN);
+
+        sectorBuilder.toMask(other);
+    }
+
+    @Test
+    public void maskClassificationMatchesSectorContains() {
+        // Include points exactly on the boundaries of the axis and origin sectors
+        double[] values = {-1, -0.05, -0.02, -0.01, -0.0, 0, 0.01, 0.02, 0.025, 0.05, 1};
+        for (double x : values) {
+            for (double y : values) {
+                Point point = new Point(x, y);
+                Set<Sector> expected = classifier.getOrderedSectors().stream()
+                    .filter(sector -> sector.contains(point))
+                    .collect(Collectors.toSet());
+
+                assertEquals(point.toString(), expected, classifier.classifyAll(point));
+            }
+        }
+    }
+
+    @Test
+    public void classifyPicksHighestPriority() {
+        assertEquals(sectorBuilder.byName(SectorBuilder.ORIGIN), classifier.classify(new Point(0, 0)));
+        assertEquals(sectorBuilder.byName(SectorBuilder.POSITIVE_X_AXIS), classifier.classify(new Point(1, 0)));
+        assertEquals(sectorBuilder.byName(SectorBuilder.TOP_LEFT), classifier.classify(new Point(-1, 1)));
+    }
+
+    @Test
+    public void orderedSectorsFromOtherBuildersGetTheirOwnBits() {
+        SettingsWrapper settings = new SettingsWrapper() {
+            @Override
+            public List<Sector> getOrderedSectors() {
+                return SettingsWrapper.DEFAULT.getOrderedSectors();
+            }
+        };
+        SectorClassifier other = settings.getSectorClassifier();
+
+        SectorBuilder otherBuilder = other.getSectorBuilder();
+        assertNotSame(sectorBuilder, otherBuilder);
+        assertEquals(0, other.getOrderedMask() & otherBuilder.toMask(otherBuilder.getSectors()));
+        for (Sector sector : classifier.getOrderedSectors()) {
+            assertEquals(Collections.singleton(sector), other.fromMask(other.toMask(sector)));
+        }
+
+        Point point = new Point(1, 1);
+        assertSame(classifier.classify(point), other.classify(point));
+        assertEquals(classifier.classifyAll(point), other.classifyAll(point));
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SectorPatternTest {
+
+    private final SectorBuilder sectorBuilder = SettingsWrapper.DEFAULT.getSectorBuilder();
+
+    private long mask(String... names) {
+        return sectorBuilder.toMask(sectorBuilder.fromList(Arrays.stream(names)));
+    }
+
+    @Test
+    public void expectedSectorsCanShareATraceElement() {
+        SectorPattern pattern = new SectorPattern(sectorBuilder,
+            sectorBuilder.fromList("topLeft, +Yaxis, topRight"));
+
+        assertTrue(pattern.matches(new SectorTracer.Trace(
+            mask(SectorBuilder.TOP_LEFT),
+            mask(SectorBuilder.TOP_LEFT, SectorBuilder.POSITIVE_Y_AXIS),
+            mask(SectorBuilder.POSITIVE_Y_AXIS, SectorBuilder.TOP_RIGHT),
+            mask(SectorBuilder.TOP_RIGHT))));
+        assertTrue(pattern.matches(new SectorTracer.Trace(
+            mask(SectorBuilder.TOP_LEFT),
+            mask(SectorBuilder.TOP_LEFT, SectorBuilder.POSITIVE_Y_AXIS, SectorBuilder.TOP_RIGHT))));
+        assertFalse(pattern.matches(new SectorTracer.Trace(
+            mask(SectorBuilder.TOP_LEFT),
+            mask(SectorBuilder.TOP_RIGHT))));
+    }
+
+    @Test
+    public void emptySequencesOnlyMatchEachOther() {
+        SectorPattern empty = new SectorPattern(sectorBuilder, Collections.emptyList());
+        SectorPattern origin = new SectorPattern(sectorBuilder, sectorBuilder.fromList("origin"));
+
+        assertTrue(empty.matches(new SectorTracer.Trace()));
+        assertFalse(empty.matches(new SectorTracer.Trace(mask(SectorBuilder.ORIGIN))));
+        assertFalse(origin.matches(new SectorTracer.Trace()));
+        assertTrue(origin.matches(new SectorTracer.Trace(mask(SectorBuilder.ORIGIN))));
+    }
+
+    @Test
+    public void bitParallelMatchingAgreesWithDynamicProgramming() {
+        Random random = new Random(1);
+        List<Sector> sectors = sectorBuilder.getSectors();
+        for (int trial = 0; trial < 20000; trial++) {
+            // Use few sectors so that matches are common
+            int alphabet = 2 + random.nextInt(3);
+            int expectedLength = 1 + random.nextInt(trial % 10 == 0 ? 80 : 8);
+            List<Sector> expected = new ArrayList<>();
+            for (int i = 0; i < expectedLength; i++) {
+                expected.add(sectors.get(random.nextInt(alphabet)));
+            }
+            long[] actual = new long[1 + random.nextInt(trial % 10 == 0 ? 100 : 12)];
+            for (int j = 0; j < actual.length; j++) {
+                actual[j] = 1 + random.nextInt((1 << alphabet) - 1);
+            }
+
+            long[] expectedMasks = expected.stream().mapToLong(sectorBuilder::toMask).toArray();
+            assertEquals(expected + " " + Arrays.toString(actual),
+                SectorPattern.matchesByDynamicProgramming(expectedMasks, actual, actual.length),
+                new SectorPattern(sectorBuilder, expected).matches(new SectorTracer.Trace(actual)));
+        }
+    }
+}
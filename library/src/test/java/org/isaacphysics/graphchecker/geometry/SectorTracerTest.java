@@ -0,0 +1,149 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.geometry;
+
+import org.isaacphysics.graphchecker.TestHelpers;
+import org.isaacphysics.graphchecker.data.IntersectionParams;
+import org.isaacphysics.graphchecker.data.Line;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SectorTracerTest {
+
+    private final SectorBuilder sectorBuilder = SettingsWrapper.DEFAULT.getSectorBuilder();
+    private final SectorClassifier classifier = SettingsWrapper.DEFAULT.getSectorClassifier();
+    private final long[] invalid = {
+        sectorBuilder.toMask(sectorBuilder.byName(SectorBuilder.POSITIVE_X_AXIS))
+            | sectorBuilder.toMask(sectorBuilder.byName(SectorBuilder.NEGATIVE_X_AXIS))
+    };
+    private final SectorTracer tracer = new SectorTracer(classifier, invalid);
+
+    private long mask(String... names) {
+        long mask = 0;
+        for (String name : names) {
+            mask |= sectorBuilder.toMask(sectorBuilder.byName(name));
+        }
+        return mask;
+    }
+
+    @Test
+    public void lineAcrossTheYAxisLeavesAndEntersQuadrantsTogether() {
+        Line line = TestHelpers.lineOf(-1,1, 1,1);
+
+        long[] trace = tracer.trace(line).toArray();
+
+        assertArrayEquals(new long[] {
+            mask(SectorBuilder.TOP_LEFT),
+            mask(SectorBuilder.TOP_LEFT, SectorBuilder.POSITIVE_Y_AXIS),
+            mask(SectorBuilder.POSITIVE_Y_AXIS, SectorBuilder.TOP_RIGHT),
+            mask(SectorBuilder.TOP_RIGHT)
+        }, trace);
+    }
+
+    @Test
+    public void traceIsReusedByTheNextTrace() {
+        SectorTracer.Trace first = tracer.trace(TestHelpers.lineOf(-1,1, 1,1));
+        long[] kept = first.toArray();
+
+        SectorTracer.Trace second = tracer.trace(TestHelpers.lineOf(1,1, 2,2));
+
+        assertSame(first, second);
+        assertEquals(1, second.size());
+        assertEquals(4, kept.length);
+    }
+
+    @Test
+    public void tracesTheSameAsClassifyingEachSegment() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 200; trial++) {
+            int size = 2 + random.nextInt(20);
+            double[] coords = new double[size * 2];
+            for (int i = 0; i < coords.length; i++) {
+                // Small values, on a grid, so that lines often pass through boundaries and corners exactly
+                coords[i] = (random.nextInt(21) - 10) * 0.01;
+            }
+            Line line = TestHelpers.lineOf(coords);
+
+            assertArrayEquals(line.getPoints().toString(), referenceTrace(line), tracer.trace(line).toArray());
+        }
+    }
+
+    /**
+     * Trace a line the straightforward way, using the per-sector intersection parameters of each segment.
+     */
+    private long[] referenceTrace(Line line) {
+        List<Sector> sectors = classifier.getOrderedSectors();
+        List<Long> output = new ArrayList<>();
+        for (int i = 0; i < line.size(); i++) {
+            if (i > 0) {
+                List<IntersectionParams> params = new ArrayList<>();
+                long inside = 0;
+                for (Sector sector : sectors) {
+                    params.add(sector.intersectionParams(line, i - 1));
+                    if (sector.contains(line.getX(i - 1), line.getY(i - 1))) {
+                        inside |= sectorBuilder.toMask(sector);
+                    }
+                }
+                int index = lowestIndex(params);
+                while (index != -1) {
+                    IntersectionParams.IntersectionParam param = params.get(index).remove(0);
+                    inside = with(inside, sectors.get(index), param.isInside());
+                    index = lowestIndex(params);
+                    while (index != -1 && param.getT() == params.get(index).get(0).getT()) {
+                        param = params.get(index).remove(0);
+                        inside = with(inside, sectors.get(index), param.isInside());
+                        index = lowestIndex(params);
+                    }
+                    add(output, inside);
+                }
+            }
+            add(output, classifier.classifyAllMask(line.getX(i), line.getY(i)));
+        }
+        return output.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private long with(long mask, Sector sector, boolean inside) {
+        return inside ? mask | sectorBuilder.toMask(sector) : mask & ~sectorBuilder.toMask(sector);
+    }
+
+    private int lowestIndex(List<IntersectionParams> params) {
+        int index = -1;
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < params.size(); i++) {
+            if (!params.get(i).isEmpty() && params.get(i).get(0).getT() < min) {
+                index = i;
+                min = params.get(i).get(0).getT();
+            }
+        }
+        return index;
+    }
+
+    private void add(List<Long> output, long sectors) {
+        long remaining = sectors;
+        if ((remaining & invalid[0]) == invalid[0]) {
+            remaining &= ~invalid[0];
+        }
+        if (output.isEmpty() || output.get(output.size() - 1) != remaining && remaining != 0) {
+            output.add(remaining);
+        }
+    }
+}
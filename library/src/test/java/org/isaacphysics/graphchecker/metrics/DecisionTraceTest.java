@@ -0,0 +1,95 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.features.Features;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.isaacphysics.graphchecker.TestHelpers.inputOf;
+import static org.isaacphysics.graphchecker.TestHelpers.lineOf;
+import static org.junit.Assert.*;
+
+public class DecisionTraceTest {
+
+    @Before
+    public void setUp() {
+        DecisionTrace.current().clear();
+    }
+
+    @After
+    public void tearDown() {
+        DecisionTrace.setEnabled(false);
+        DecisionTrace.current().clear();
+    }
+
+    @Test
+    public void testNothingIsTracedByDefault() {
+        new Features().matcher("through:topLeft,+Yaxis,topRight").test(inputOf(x -> x * x + 3, -10, 10));
+
+        assertTrue(DecisionTrace.current().render().isEmpty());
+    }
+
+    @Test
+    public void testLastMarkExplainsFailure() {
+        DecisionTrace.setEnabled(true);
+        Predicate<Input> matcher = new Features().matcher("through:topLeft,+Yaxis,topRight\r\nsymmetry:even");
+
+        assertTrue(matcher.test(inputOf(x -> x * x + 3, -10, 10)));
+        assertFalse(matcher.test(inputOf(x -> x > 0 ? x + 3 : x * x + 3, -10, 10)));
+
+        List<String> lastMark = DecisionTrace.current().renderLastMark();
+        String mark = lastMark.get(0).split(" ")[0];
+        assertTrue(lastMark.stream().allMatch(event -> event.startsWith(mark + " ")));
+        assertTrue(lastMark.contains(mark + " through sectors [topLeft], [+Yaxis, topLeft], [+Yaxis], "
+            + "[+Yaxis, topRight], [topRight]"));
+        assertTrue(lastMark.contains(mark + " symmetry line 0 failed"));
+        assertTrue(lastMark.contains(mark + " symmetry failed"));
+        assertEquals(mark + " mark failed", lastMark.get(lastMark.size() - 1));
+        assertTrue(DecisionTrace.current().render().size() > lastMark.size());
+    }
+
+    @Test
+    public void testSearchesAreTraced() {
+        DecisionTrace.setEnabled(true);
+        Predicate<Input> matcher = new Features().matcher("match: a; through:bottomLeft\r\nmatch: b; through:topRight");
+
+        assertTrue(matcher.test(inputOf(
+            lineOf(x -> 1 / x, -10, -0.01),
+            lineOf(x -> 1 / x, 0.01, 10)
+        )));
+
+        assertTrue(DecisionTrace.current().renderLastMark().stream()
+            .anyMatch(event -> event.matches("#\\d+ search tried \\d+ assignments and found mapping")));
+    }
+
+    @Test
+    public void testOldestEventsAreOverwritten() {
+        DecisionTrace trace = DecisionTrace.current();
+        for (int i = 0; i < DecisionTrace.CAPACITY + 10; i++) {
+            trace.line("slope", i, true);
+        }
+
+        List<String> events = trace.render();
+        assertEquals(DecisionTrace.CAPACITY, events.size());
+        assertTrue(events.get(0).endsWith("slope line 10 passed"));
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import org.isaacphysics.graphchecker.features.Features;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.isaacphysics.graphchecker.data.Input;
+
+import static org.isaacphysics.graphchecker.TestHelpers.inputOf;
+import static org.isaacphysics.graphchecker.TestHelpers.lineOf;
+import static org.junit.Assert.*;
+
+public class InMemoryMarkingMetricsTest {
+
+    private final InMemoryMarkingMetrics metrics = new InMemoryMarkingMetrics();
+
+    private final SettingsWrapper settings = new SettingsWrapper() {
+        @Override
+        public MarkingMetrics getMarkingMetrics() {
+            return metrics;
+        }
+    };
+
+    @Test
+    public void testMarksAndFeaturesAreRecorded() {
+        Features features = new Features(settings);
+        Predicate<Input> matcher = features.matcher("through:topLeft,+Yaxis,topRight\r\nsymmetry:even");
+
+        assertTrue(matcher.test(inputOf(x -> x * x + 3, -10, 10)));
+        assertFalse(matcher.test(inputOf(x -> x > 0 ? x + 3 : x * x + 3, -10, 10)));
+
+        assertEquals(2, metrics.getMarkLatencies().getCount());
+        assertEquals(1, metrics.getMatches());
+
+        Map<String, InMemoryMarkingMetrics.FeatureMetrics> featureMetrics = metrics.getFeatures();
+        assertTrue(featureMetrics.containsKey("through"));
+        assertTrue(featureMetrics.containsKey("symmetry"));
+        InMemoryMarkingMetrics.FeatureMetrics symmetry = featureMetrics.get("symmetry");
+        assertEquals(1, symmetry.getFailures());
+        assertEquals(symmetry.getPasses() + symmetry.getFailures(), symmetry.getLatencies().getCount());
+    }
+
+    @Test
+    public void testMatcherCacheIsRecorded() {
+        Features features = new Features(settings);
+        features.matcher("through:bottomLeft,topRight");
+        features.matcher("through:bottomLeft,topRight");
+
+        InMemoryMarkingMetrics.CacheMetrics cache = metrics.getCaches().get(MarkingMetrics.MATCHER_CACHE);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate(), 1e-9);
+    }
+
+    @Test
+    public void testVerdictCacheIsRecorded() {
+        Features features = new Features(settings);
+        Predicate<Input> matcher = features.matcher("through:topLeft,+Yaxis,topRight");
+
+        assertTrue(matcher.test(inputOf(x -> x * x + 3, -10, 10)));
+        assertTrue(matcher.test(inputOf(x -> x * x + 5, -10, 10)));
+
+        InMemoryMarkingMetrics.CacheMetrics cache = metrics.getCaches().get(MarkingMetrics.VERDICT_CACHE);
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testAssignmentsAreRecorded() {
+        Features features = new Features(settings);
+        Predicate<Input> matcher = features.matcher("match: a; through:bottomLeft\r\nmatch: b; through:topRight");
+
+        assertTrue(matcher.test(inputOf(
+            lineOf(x -> 1 / x, -10, -0.01),
+            lineOf(x -> 1 / x, 0.01, 10)
+        )));
+
+        assertTrue(metrics.getAssignmentCounts().getCount() > 0);
+        assertTrue(metrics.getAssignmentCounts().getPercentile(100) > 0);
+    }
+
+    @Test
+    public void testInputSizesAreRecorded() throws IOException {
+        new AnswerJsonToInput(settings).read("{\"curves\": [{\"pts\": [[0, 0], [1, 1], [2, 4]]}]}");
+
+        assertEquals(1, metrics.getLineCounts().getCount());
+        assertEquals(1, metrics.getLineCounts().getPercentile(50));
+        assertEquals(3, metrics.getPointCounts().getPercentile(50));
+    }
+
+    @Test
+    public void testNoMetricsByDefault() {
+        assertFalse(SettingsWrapper.DEFAULT.getMarkingMetrics().isEnabled());
+    }
+}
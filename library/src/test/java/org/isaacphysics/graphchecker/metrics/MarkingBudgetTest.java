@@ -0,0 +1,115 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.features.Features;
+import org.isaacphysics.graphchecker.features.MarkResult;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.isaacphysics.graphchecker.TestHelpers.inputOf;
+import static org.isaacphysics.graphchecker.TestHelpers.lineOf;
+import static org.junit.Assert.*;
+
+public class MarkingBudgetTest {
+
+    @Test
+    public void testUnlimitedBudgetIsCurrentByDefault() {
+        assertSame(MarkingBudget.UNLIMITED, MarkingBudget.current());
+        for (int i = 0; i < 1000; i++) {
+            MarkingBudget.UNLIMITED.check();
+        }
+        assertEquals(0, MarkingBudget.UNLIMITED.getSteps());
+    }
+
+    @Test
+    public void testStepsRunOut() {
+        MarkingBudget budget = MarkingBudget.withSteps(3);
+        budget.check();
+        budget.check();
+        budget.check();
+        try {
+            budget.check();
+            fail("Budget should have run out");
+        } catch (MarkingBudget.Exhausted e) {
+            assertEquals(4, budget.getSteps());
+        }
+    }
+
+    @Test(expected = MarkingBudget.Exhausted.class)
+    public void testPassedDeadlineRunsOutAtFirstCheck() {
+        MarkingBudget.withTimeout(0, TimeUnit.MILLISECONDS).check();
+    }
+
+    @Test
+    public void testRunMakesBudgetCurrentAndRestoresIt() {
+        MarkingBudget budget = MarkingBudget.withSteps(0);
+        assertSame(budget, budget.run(MarkingBudget::current));
+        try {
+            budget.run(() -> {
+                MarkingBudget.current().check();
+                return null;
+            });
+            fail("Budget should have run out");
+        } catch (MarkingBudget.Exhausted e) {
+            assertSame(MarkingBudget.UNLIMITED, MarkingBudget.current());
+        }
+    }
+
+    @Test
+    public void testMarkIsUndeterminedWhenBudgetRunsOut() {
+        InMemoryMarkingMetrics metrics = new InMemoryMarkingMetrics();
+        Features.Matcher matcher = new Features(new SettingsWrapper() {
+            @Override
+            public MarkingMetrics getMarkingMetrics() {
+                return metrics;
+            }
+        }).matcher("through:bottomLeft,origin,topRight");
+
+        MarkResult result = matcher.mark(inputOf(x -> x * x * x, -10, 10), MarkingBudget.withSteps(10));
+        assertTrue(result.isUndetermined());
+        assertFalse(result.isMatch());
+        assertTrue(result.getFailingSpecs().isEmpty());
+        assertEquals(1, metrics.getUndetermined());
+        assertSame(MarkingBudget.UNLIMITED, MarkingBudget.current());
+
+        Input input = inputOf(x -> x * x * x, -10, 10);
+        MarkResult ample = matcher.mark(input, MarkingBudget.withTimeout(1, TimeUnit.MINUTES));
+        assertFalse(ample.isUndetermined());
+        assertEquals(matcher.mark(input).isMatch(), ample.isMatch());
+    }
+
+    @Test
+    public void testSearchForNamesTakesSteps() {
+        Features.Matcher matcher = new Features().matcher(
+            "match: a; through:topRight\r\nmatch: b; through:topRight\r\nmatch: c; through:topRight");
+        Input input = inputOf(
+            lineOf(x -> x, 1, 2),
+            lineOf(x -> x, 3, 4),
+            lineOf(x -> x, 5, 6));
+
+        // The sector traces are remembered by the lines, so only the search is left to take steps
+        assertTrue(matcher.mark(input).isMatch());
+        MarkingBudget budget = MarkingBudget.withSteps(1000);
+        assertTrue(matcher.mark(input, budget).isMatch());
+        assertTrue(budget.getSteps() >= 3);
+
+        assertTrue(matcher.mark(input, MarkingBudget.withSteps(2)).isUndetermined());
+    }
+}
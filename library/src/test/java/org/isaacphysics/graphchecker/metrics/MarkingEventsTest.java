@@ -0,0 +1,117 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import com.google.common.collect.ImmutableList;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.isaacphysics.graphchecker.features.Features;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.isaacphysics.graphchecker.TestHelpers.inputOf;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class MarkingEventsTest {
+
+    @Before
+    public void setUp() {
+        assumeTrue(MarkingEvents.isAvailable());
+    }
+
+    @Test
+    public void testEventsAreDisabledWithoutARecording() {
+        assertFalse(MarkingEvents.isEnabled());
+        assertNull(MarkingEvents.beginFeature());
+    }
+
+    @Test
+    public void testEventsAreRecordedWhenEnabled() throws IOException {
+        List<RecordedEvent> events;
+        Path file = Files.createTempFile("marking", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("org.isaacphysics.graphchecker.Compile");
+            recording.enable("org.isaacphysics.graphchecker.Translate");
+            recording.enable("org.isaacphysics.graphchecker.Feature");
+            recording.start();
+            assertTrue(MarkingEvents.isEnabled());
+
+            new AnswerJsonToInput().read("{\"curves\": [{\"pts\": [[0, 0], [1, 1], [2, 4]]}]}");
+            new Features().matcher("through:topLeft,+Yaxis,topRight\r\nsymmetry:even")
+                .test(inputOf(x -> x * x + 3, -10, 10));
+
+            recording.stop();
+            recording.dump(file);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.delete(file);
+        }
+        assertFalse(MarkingEvents.isEnabled());
+
+        List<RecordedEvent> translations = ofType(events, "org.isaacphysics.graphchecker.Translate");
+        assertEquals(1, translations.size());
+        assertEquals(1, translations.get(0).getInt("lines"));
+        assertEquals(3, translations.get(0).getInt("points"));
+
+        List<RecordedEvent> features = ofType(events, "org.isaacphysics.graphchecker.Feature");
+        assertTrue(features.stream().anyMatch(event -> "through".equals(event.getString("tag"))
+            && event.getBoolean("passed") && event.getInt("lines") == 1));
+        int specificationHash = features.get(0).getInt("specificationHash");
+        assertTrue(features.stream().allMatch(event -> event.getInt("specificationHash") == specificationHash));
+
+        assertTrue(ofType(events, "org.isaacphysics.graphchecker.Solve").isEmpty());
+    }
+
+    @Test
+    public void testRecordingStartedBeforeFirstUseEnablesEvents() throws Exception {
+        // Load a fresh copy of MarkingEvents, as this one has already been loaded by the other tests
+        URL[] classPath = {
+            MarkingEvents.class.getProtectionDomain().getCodeSource().getLocation(),
+            ImmutableList.class.getProtectionDomain().getCodeSource().getLocation()
+        };
+        try (URLClassLoader loader = new URLClassLoader(classPath, null);
+             Recording recording = new Recording()) {
+            recording.enable("org.isaacphysics.graphchecker.Compile");
+            recording.start();
+
+            Class<?> freshMarkingEvents = loader.loadClass(MarkingEvents.class.getName());
+            Method isEnabled = freshMarkingEvents.getMethod("isEnabled");
+            assertNotSame(MarkingEvents.class, freshMarkingEvents);
+            assertTrue((Boolean) isEnabled.invoke(null));
+
+            recording.stop();
+            assertFalse((Boolean) isEnabled.invoke(null));
+        }
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream()
+            .filter(event -> event.getEventType().getName().equals(name))
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.metrics;
+
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.features.Features;
+import org.isaacphysics.graphchecker.settings.SettingsSnapshot;
+import org.isaacphysics.graphchecker.settings.SettingsWrapper;
+import org.isaacphysics.graphchecker.translation.AnswerJsonToInput;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.isaacphysics.graphchecker.TestHelpers.inputOf;
+import static org.junit.Assert.*;
+
+public class SlowMarkLogTest {
+
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("slow-marks");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    private SettingsWrapper capturingEverything(int files) {
+        return new SettingsWrapper() {
+            @Override
+            public Path getSlowMarkDirectory() {
+                return directory;
+            }
+
+            @Override
+            public long getSlowMarkThresholdMillis() {
+                return 0;
+            }
+
+            @Override
+            public int getSlowMarkFiles() {
+                return files;
+            }
+
+            @Override
+            public double getSymmetrySimilarity() {
+                return 0.2;
+            }
+        };
+    }
+
+    private List<Path> captures() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testNothingIsCapturedByDefault() {
+        assertFalse(SettingsWrapper.DEFAULT.getSlowMarkLog().isEnabled());
+        assertFalse(SettingsWrapper.DEFAULT.getSlowMarkLog().isSlow(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testCaptureCanBeReplayed() throws Exception {
+        SettingsWrapper settings = capturingEverything(10);
+        Input input = inputOf(x -> x * x * x, -10, 10);
+        List<String> failingSpecs = new Features(settings)
+            .matcher("through:bottomLeft,origin,topRight\r\nsymmetry:even")
+            .getFailingSpecs(input);
+        settings.getSlowMarkLog().awaitWritten(10, TimeUnit.SECONDS);
+
+        List<Path> files = captures();
+        assertEquals(1, files.size());
+        SlowMarkLog.Capture capture = SlowMarkLog.read(files.get(0));
+        assertEquals("through:bottomLeft,origin,topRight\nsymmetry:even", capture.getSpecification());
+        assertEquals(failingSpecs, capture.getFailingSpecs());
+        assertTrue(capture.getFailingSpecs().contains("symmetry: even"));
+        assertEquals(3, capture.getFeatureTimings().size());
+        assertTrue(capture.getTotalNanos() > 0);
+
+        SettingsSnapshot snapshot = capture.getSettings();
+        assertEquals(0.2, snapshot.getSymmetrySimilarity(), 0);
+        assertEquals(settings.getOrderedSectors().toString(), snapshot.getOrderedSectors().toString());
+        assertFalse(snapshot.getSlowMarkLog().isEnabled());
+
+        Input replayed = new AnswerJsonToInput(snapshot).read(capture.getAnswerJson());
+        assertEquals(input.getLines(), replayed.getLines());
+        Features.Matcher matcher = new Features(snapshot).matcher(capture.getSpecification());
+        assertEquals(failingSpecs, matcher.getFailingSpecs(replayed));
+    }
+
+    @Test
+    public void testCapturesAreARing() throws Exception {
+        SettingsWrapper settings = capturingEverything(2);
+        Features.Matcher matcher = new Features(settings).matcher("through:topLeft,+Yaxis,topRight");
+        for (int i = 0; i < 5; i++) {
+            matcher.getFailingSpecs(inputOf(x -> x * x + 3, -10, 10));
+        }
+        SlowMarkLog slowMarkLog = settings.getSlowMarkLog();
+        slowMarkLog.awaitWritten(10, TimeUnit.SECONDS);
+
+        assertEquals(2, captures().size());
+        assertEquals(5, slowMarkLog.getWritten() + slowMarkLog.getDropped());
+    }
+
+    @Test
+    public void testCapturesThatCannotBeBuiltAreDropped() throws Exception {
+        SettingsWrapper capturing = capturingEverything(10);
+        SettingsWrapper settings = new SettingsWrapper() {
+            @Override
+            public Path getSlowMarkDirectory() {
+                return capturing.getSlowMarkDirectory();
+            }
+
+            @Override
+            public long getSlowMarkThresholdMillis() {
+                return capturing.getSlowMarkThresholdMillis();
+            }
+
+            @Override
+            public double getSymmetrySimilarity() {
+                throw new IllegalStateException("Not available");
+            }
+        };
+        new Features(settings).matcher("through:topLeft,+Yaxis,topRight").getFailingSpecs(
+            inputOf(x -> x * x + 3, -10, 10));
+        SlowMarkLog slowMarkLog = settings.getSlowMarkLog();
+        slowMarkLog.awaitWritten(10, TimeUnit.SECONDS);
+
+        assertEquals(0, slowMarkLog.getWritten());
+        assertEquals(1, slowMarkLog.getDropped());
+        assertTrue(captures().isEmpty());
+    }
+
+    @Test
+    public void testTemporaryFileIsRemovedIfCaptureCannotBeMoved() throws Exception {
+        SettingsWrapper settings = capturingEverything(1);
+        // A non-empty directory where the capture should go, so it cannot be replaced
+        Path blocked = Files.createDirectory(directory.resolve("slow-mark-0000.json"));
+        Path blocker = Files.createFile(blocked.resolve("blocker"));
+        try {
+            new Features(settings).matcher("through:topLeft,+Yaxis,topRight").getFailingSpecs(
+                inputOf(x -> x * x + 3, -10, 10));
+            SlowMarkLog slowMarkLog = settings.getSlowMarkLog();
+            slowMarkLog.awaitWritten(10, TimeUnit.SECONDS);
+
+            assertEquals(0, slowMarkLog.getWritten());
+            assertEquals(1, slowMarkLog.getDropped());
+            assertEquals(Collections.singletonList(blocked), captures());
+        } finally {
+            Files.delete(blocker);
+        }
+    }
+}
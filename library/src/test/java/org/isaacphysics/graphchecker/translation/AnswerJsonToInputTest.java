@@ -0,0 +1,130 @@
+/**
+ * Copyright 2019 University of Cambridge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.isaacphysics.graphchecker.translation;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.isaacphysics.graphchecker.data.Input;
+import org.isaacphysics.graphchecker.data.PointOfInterest;
+import org.isaacphysics.graphchecker.dos.Curve;
+import org.isaacphysics.graphchecker.dos.GraphAnswer;
+import org.isaacphysics.graphchecker.dos.Point;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnswerJsonToInputTest {
+
+    private final ObjectMapper om = new ObjectMapper();
+    private final AnswerJsonToInput answerJsonToInput = new AnswerJsonToInput();
+
+    private List<Point> randomPoints(Random random, int count) {
+        List<Point> points = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // Round some co-ordinates so that points of interest sometimes share an x co-ordinate.
+            points.add(new Point(random.nextInt(5) - 2, random.nextGaussian()));
+        }
+        return points;
+    }
+
+    private Curve randomCurve(Random random) {
+        int size = random.nextInt(300);
+        List<Point> pts = new ArrayList<>();
+        double start = random.nextGaussian();
+        for (int i = 0; i < size; i++) {
+            pts.add(new Point(start + i * 0.01, random.nextGaussian()));
+        }
+        if (random.nextBoolean()) {
+            Collections.reverse(pts);
+        }
+        return new Curve(pts, -1, 1, -1, 1, randomPoints(random, 2), randomPoints(random, 1),
+            randomPoints(random, 1), randomPoints(random, random.nextInt(4)), randomPoints(random, random.nextInt(4)),
+            random.nextInt(3));
+    }
+
+    private void assertSameInput(Input expected, Input actual) {
+        assertEquals(expected, actual);
+        for (int i = 0; i < expected.getLines().size(); i++) {
+            List<PointOfInterest> expectedPoints = expected.getLines().get(i).getPointsOfInterest();
+            List<PointOfInterest> actualPoints = actual.getLines().get(i).getPointsOfInterest();
+            assertEquals(expectedPoints, actualPoints);
+            for (int j = 0; j < expectedPoints.size(); j++) {
+                assertEquals(expectedPoints.get(j).getPointType(), actualPoints.get(j).getPointType());
+            }
+        }
+    }
+
+    @Test
+    public void readsTheSameInputAsAnswerToInput() throws IOException {
+        Random random = new Random(17);
+        for (int i = 0; i < 200; i++) {
+            List<Curve> curves = new ArrayList<>();
+            int count = random.nextInt(4);
+            for (int j = 0; j < count; j++) {
+                curves.add(randomCurve(random));
+            }
+            GraphAnswer answer = new GraphAnswer(1000, 600, curves, Collections.emptyList());
+
+            String json = om.writeValueAsString(answer);
+
+            assertSameInput(new AnswerToInput().apply(om.readValue(json, GraphAnswer.class)),
+                answerJsonToInput.read(json));
+        }
+    }
+
+    @Test
+    public void readsObjectPointsAndSkipsUnknownFields() throws IOException {
+        String json = "{\"extra\": {\"nested\": [1, 2, {\"deep\": true}]}, \"curves\": [{"
+            + "\"pts\": [{\"x\": 3, \"y\": 1}, {\"y\": 2, \"x\": 2}, [1, \"3\"]],"
+            + "\"minima\": [[2, 2]], \"maxima\": null, \"colorIdx\": 0, \"interX\": [[0, 0]]}]}";
+
+        String expected = "{\"curves\": [{\"pts\": [[1, 3], [2, 2], [3, 1]], \"minima\": [[2, 2]], \"maxima\": []}]}";
+
+        assertSameInput(new AnswerToInput().apply(om.readValue(expected, GraphAnswer.class)),
+            answerJsonToInput.read(json));
+    }
+
+    @Test
+    public void readsAnAnswerInsideALargerDocument() throws IOException {
+        JsonParser parser = new JsonFactory().createParser(
+            "{\"answer\": {\"curves\": [{\"pts\": [[0, 0], [1, 1]]}]}, \"after\": 1}");
+        parser.nextToken();
+        parser.nextToken();
+        parser.nextToken();
+
+        Input input = answerJsonToInput.read(parser);
+
+        assertEquals(JsonToken.END_OBJECT, parser.getCurrentToken());
+        assertEquals(JsonToken.FIELD_NAME, parser.nextToken());
+        assertEquals("after", parser.getCurrentName());
+        assertEquals(1, input.getLines().size());
+        assertEquals(2, input.getLines().get(0).size());
+    }
+
+    @Test(expected = JsonParseException.class)
+    public void rejectsMalformedPoints() throws IOException {
+        answerJsonToInput.read("{\"curves\": [{\"pts\": [[0, 0, 0]]}]}");
+    }
+}